@@ -16,6 +16,19 @@ interface MonthlyInvoiceSummaryResponse {
   orderCount: number
 }
 
+export interface PdfJobResponse {
+  jobId: string
+  type: string
+  status: 'PENDING' | 'RUNNING' | 'COMPLETED' | 'FAILED'
+  pdfUrl: string | null
+  reused: boolean
+  submittedAt: string
+  startedAt: string | null
+  finishedAt: string | null
+  errorCode: number | null
+  error: string | null
+}
+
 interface MomoResponse {
   payUrl: string
   requestId: string
@@ -74,10 +87,10 @@ export const payCurrentInvoice = async (accessToken: string): Promise<MomoRespon
   }
 }
 
-// Generate current invoice PDF
-export const generateCurrentInvoice = async (accessToken: string): Promise<string> => {
+// Queue current invoice PDF generation (rendered in the background)
+export const generateCurrentInvoice = async (accessToken: string): Promise<PdfJobResponse> => {
   try {
-    const response = await http.post<ApiResponse<string>>(
+    const response = await http.post<ApiResponse<PdfJobResponse>>(
       '/department-invoices/generate-current-invoice',
       {},
       {
@@ -91,6 +104,41 @@ export const generateCurrentInvoice = async (accessToken: string): Promise<strin
   }
 }
 
+// Fetch PDF job status
+export const getPdfJob = async (accessToken: string, jobId: string): Promise<PdfJobResponse> => {
+  try {
+    const response = await http.get<ApiResponse<PdfJobResponse>>(`/department-invoices/pdf-jobs/${jobId}`, {
+      headers: { Authorization: `Bearer ${accessToken}` }
+    })
+    return response.data.result
+  } catch (error) {
+    const axiosError = error as AxiosError
+    throw new Error(axiosError.response?.data?.message || 'Failed to fetch PDF job')
+  }
+}
+
+// Poll a PDF job until it is COMPLETED (resolves with the job) or FAILED / timed out (rejects)
+export const waitForPdfJob = async (
+  accessToken: string,
+  job: PdfJobResponse,
+  intervalMs = 1500,
+  timeoutMs = 120000
+): Promise<PdfJobResponse> => {
+  const deadline = Date.now() + timeoutMs
+  let current = job
+  while (current.status !== 'COMPLETED') {
+    if (current.status === 'FAILED') {
+      throw new Error(current.error || 'Failed to generate invoice')
+    }
+    if (Date.now() > deadline) {
+      throw new Error('Invoice generation is taking longer than expected. Please check again later.')
+    }
+    await new Promise((resolve) => setTimeout(resolve, intervalMs))
+    current = await getPdfJob(accessToken, current.jobId)
+  }
+  return current
+}
+
 // Check overdue invoices
 export const checkOverdueInvoices = async (accessToken: string): Promise<string[]> => {
   try {
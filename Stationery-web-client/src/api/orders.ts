@@ -1,5 +1,5 @@
 import { AxiosError } from 'axios'
-import { ApiResponse, CreateOrderParams } from '~/types/order'
+import { ApiResponse, CreateOrderParams, PurchaseOrderHistoryApiResponse, PurchaseOrderResponse } from '~/types/order'
 import { ProductDetailResponse } from '~/types/product'
 import { http } from '~/utils/http'
 
@@ -96,17 +96,21 @@ const apiCheckTransactionStatus = async ({
 
 const apiGetUserOrders = async ({
   accessToken,
-  status
+  status,
+  cursor,
+  size
 }: {
   accessToken: string
   status: string
-}): Promise<ApiResponse> => {
+  cursor?: string | null
+  size?: number
+}): Promise<PurchaseOrderHistoryApiResponse> => {
   try {
     const config = {
       headers: {
         Authorization: `Bearer ${accessToken}`
       },
-      params: { status }
+      params: { status, cursor: cursor || undefined, size }
     }
     const response = await http.get('/purchase-orders/user/orders', config)
     return response.data
@@ -118,6 +122,27 @@ const apiGetUserOrders = async ({
   }
 }
 
+// Đọc hết các trang (size tối đa 50) cho màn cần toàn bộ đơn
+const apiGetAllUserOrders = async ({
+  accessToken,
+  status
+}: {
+  accessToken: string
+  status: string
+}): Promise<PurchaseOrderResponse[]> => {
+  const orders: PurchaseOrderResponse[] = []
+  let cursor: string | null = null
+  do {
+    const response = await apiGetUserOrders({ accessToken, status, cursor, size: 50 })
+    if (response.code !== 200 || !response.result) {
+      throw new Error(response.message || 'Không thể tải danh sách đơn hàng')
+    }
+    orders.push(...response.result.orders)
+    cursor = response.result.hasMore ? response.result.nextCursor : null
+  } while (cursor)
+  return orders
+}
+
 const apiGetProductDetailsByOrder = async ({
   purchaseOrderId,
   accessToken
@@ -359,6 +384,7 @@ export {
   apiCreateOrderWithPayment,
   apiCheckTransactionStatus,
   apiGetUserOrders,
+  apiGetAllUserOrders,
   apiGetProductDetailsByOrder,
   apiGetOrderStatusStatistics,
   apiCancelOrder,
@@ -68,15 +68,9 @@ const RequestHistory: React.FC = () => {
   useEffect(() => {
     const fetchOrders = async () => {
       try {
-        const response = await apiGetUserOrders({ accessToken, status: 'ALL' })
-        const fetchedOrders = response.result || []
-        // Sort orders by createdAt in descending order and take the first 7
-        const sortedOrders = fetchedOrders
-          .sort(
-            (a: PurchaseOrderResponse, b: PurchaseOrderResponse) =>
-              new Date(b.createdAt).getTime() - new Date(a.createdAt).getTime()
-          )
-          .slice(0, 7)
+        // API trả đơn theo createdAt giảm dần: trang đầu 7 đơn là 7 đơn mới nhất
+        const response = await apiGetUserOrders({ accessToken, status: 'ALL', size: 7 })
+        const sortedOrders: PurchaseOrderResponse[] = response.result?.orders || []
         setOrders(sortedOrders)
 
         const detailsMap: { [orderId: string]: string[] } = {}
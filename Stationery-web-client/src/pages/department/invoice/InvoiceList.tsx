@@ -6,6 +6,7 @@ import {
   getCurrentMonthInvoiceSummary,
   payCurrentInvoice,
   generateCurrentInvoice,
+  waitForPdfJob,
   checkOverdueInvoices
 } from '~/api/invoice'
 
@@ -210,6 +211,7 @@ const InvoiceList: React.FC<InvoiceListProps> = ({ selectedYear, selectedMonth,
     if (resultCode === '0' && accessToken) {
       setLoading(true)
       generateCurrentInvoice(accessToken)
+        .then((job) => waitForPdfJob(accessToken, job))
         .then(() => {
           // Refresh invoices
           getAllInvoices(accessToken)
@@ -9,7 +9,7 @@ import {
   apiGetProductDetailsByProductId
 } from '~/api/product'
 import {
-  apiGetUserOrders,
+  apiGetAllUserOrders,
   apiGetProductDetailsByOrder,
   apiCreateOrderWithPayment,
   apiCancelOrder,
@@ -166,12 +166,9 @@ const CreateRequest: React.FC = () => {
 
         setProducts(productsWithDetails)
 
-        const orderResponse = await apiGetUserOrders({ accessToken, status: 'ALL' })
-        if (orderResponse.code !== 200 || !orderResponse.result) {
-          throw new Error('Không thể tải danh sách đơn hàng')
-        }
+        const userOrders = await apiGetAllUserOrders({ accessToken, status: 'ALL' })
 
-        const fetchedOrders: ExtendedPurchaseOrderResponse[] = orderResponse.result.map((order: any) => ({
+        const fetchedOrders: ExtendedPurchaseOrderResponse[] = userOrders.map((order: any) => ({
           purchaseOrderId: order.purchaseOrderId,
           createdAt: order.createdAt || null,
           pdfUrl: order.pdfUrl || null,
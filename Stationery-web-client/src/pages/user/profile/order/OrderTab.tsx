@@ -9,7 +9,9 @@ import { apiGetUserOrders } from '~/api/orders'
 const OrderTabs: React.FC = () => {
   const [activeTab, setActiveTab] = useState('Đang chuẩn bị hàng')
   const [orders, setOrders] = useState<PurchaseOrderResponse[]>([])
+  const [nextCursor, setNextCursor] = useState<string | null>(null)
   const [loading, setLoading] = useState(true)
+  const [loadingMore, setLoadingMore] = useState(false)
   const [error, setError] = useState<string | null>(null)
   const { accessToken } = useAppSelector((state) => state.user)
 
@@ -46,6 +48,22 @@ const OrderTabs: React.FC = () => {
     }
   ]
 
+  // Lấy trang tiếp theo của tab hiện tại và nối vào danh sách
+  const loadMore = async () => {
+    const selectedTab = tabs.find((tab) => tab.name === activeTab)
+    if (!selectedTab || !nextCursor) return
+    setLoadingMore(true)
+    try {
+      const response = await apiGetUserOrders({ accessToken, status: selectedTab.apiStatus, cursor: nextCursor })
+      setOrders((prev) => [...prev, ...(response.result?.orders || [])])
+      setNextCursor(response.result?.hasMore ? response.result.nextCursor : null)
+    } catch (err) {
+      setError('Không thể tải thêm đơn hàng. Vui lòng thử lại.')
+    } finally {
+      setLoadingMore(false)
+    }
+  }
+
   useEffect(() => {
     const fetchOrders = async () => {
       setLoading(true)
@@ -56,7 +74,8 @@ const OrderTabs: React.FC = () => {
         if (!selectedTab) return
 
         const response = await apiGetUserOrders({ accessToken, status: selectedTab.apiStatus })
-        setOrders(response.result || [])
+        setOrders(response.result?.orders || [])
+        setNextCursor(response.result?.hasMore ? response.result.nextCursor : null)
       } catch (err) {
         setError('Không thể tải đơn hàng. Vui lòng thử lại.')
       } finally {
@@ -121,6 +140,17 @@ const OrderTabs: React.FC = () => {
           {orders.map((order) => (
             <OrderItem key={order.purchaseOrderId} order={order} />
           ))}
+          {nextCursor && (
+            <div className='text-center'>
+              <button
+                onClick={loadMore}
+                disabled={loadingMore}
+                className='bg-white text-blue-600 border border-blue-200 py-2 px-6 rounded-full shadow-sm hover:bg-blue-50 transition-all disabled:opacity-50'
+              >
+                {loadingMore ? 'Đang tải...' : 'Xem thêm đơn hàng'}
+              </button>
+            </div>
+          )}
         </div>
       ) : (
         <div className='text-center py-16 bg-white rounded-2xl shadow-sm'>
@@ -52,4 +52,17 @@ export interface ApiResponse {
   result: PurchaseOrderResponse[]
 }
 
+// Một trang lịch sử đơn (keyset): truyền nextCursor vào lần gọi sau để lấy trang kế tiếp, null khi đã hết
+export interface PurchaseOrderHistoryResponse {
+  orders: PurchaseOrderResponse[]
+  nextCursor: string | null
+  hasMore: boolean
+}
+
+export interface PurchaseOrderHistoryApiResponse {
+  code: number
+  message: string
+  result: PurchaseOrderHistoryResponse
+}
+
 export type { OrderDetails, CreateOrderParams, UserInfoOrder }
@@ -0,0 +1,112 @@
+package com.project.stationery_be_server.benchmark;
+
+import com.project.stationery_be_server.pdf.StreamingInvoiceRenderer;
+import com.project.stationery_be_server.service.PdfGenerationService.CurrentInvoice;
+import com.project.stationery_be_server.service.PdfGenerationService.InvoiceLine;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render hóa đơn tháng của phòng ban với nhiều dòng: cách cũ (dựng cả chuỗi HTML rồi Flying Saucer layout + tạo PDF
+ * trong bộ nhớ) so với StreamingInvoiceRenderer (iText large table, flush dần ra stream).
+ * Dòng hàng sinh ra tại chỗ như cursor DB, không giữ danh sách. Chạy kèm -prof gc để so lượng cấp phát,
+ * hoặc giảm heap (-jvmArgs -Xmx256m) để thấy cách cũ cần heap tăng theo số dòng.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class InvoiceRenderBenchmark {
+    @Param({"50000"})
+    int lines;
+
+    StreamingInvoiceRenderer streamingRenderer;
+    String htmlTemplate;
+    CurrentInvoice invoice;
+
+    @Setup
+    public void setup() throws IOException {
+        streamingRenderer = new StreamingInvoiceRenderer();
+        htmlTemplate = new String(new ClassPathResource("templates/monthly_invoice_template.html")
+                .getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        long total = 0;
+        int items = 0;
+        for (int i = 0; i < lines; i++) {
+            InvoiceLine line = line(i);
+            total += line.quantity() * line.unitPrice();
+            items += line.quantity();
+        }
+        invoice = new CurrentInvoice("USER1", "Phong Ke Toan", "Ke Toan",
+                LocalDateTime.now().minusMonths(1), LocalDateTime.now(), lines / 5, items, lines, total,
+                "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef");
+    }
+
+    @Benchmark
+    public int baselineHtmlRenderer() throws Exception {
+        DecimalFormat formatter = new DecimalFormat("#,###");
+        StringBuilder orderRows = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            InvoiceLine line = line(i);
+            orderRows.append("<tr>")
+                    .append("<td class=\"order-id\">").append(line.orderId()).append("</td>")
+                    .append("<td class=\"product-name\">").append(line.productName()).append("</td>")
+                    .append("<td class=\"text-center\">").append(line.quantity()).append("</td>")
+                    .append("<td class=\"text-right\">").append(formatter.format(line.unitPrice())).append(" VND</td>")
+                    .append("</tr>");
+        }
+        String html = htmlTemplate
+                .replace("${userName}", invoice.userName())
+                .replace("${orderCount}", String.valueOf(invoice.orderCount()))
+                .replace("${totalItems}", String.valueOf(invoice.totalItems()))
+                .replace("${subtotal}", formatter.format(invoice.totalAmount()))
+                .replace("${totalAmount}", formatter.format(invoice.totalAmount()))
+                .replace("${orderRows}", orderRows.toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ITextRenderer renderer = new ITextRenderer();
+        renderer.setDocumentFromString(html);
+        renderer.layout();
+        renderer.createPDF(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public long streamingRenderer() {
+        CountingOutputStream out = new CountingOutputStream();
+        streamingRenderer.render(invoice, action -> {
+            for (int i = 0; i < lines; i++) {
+                action.accept(line(i));
+            }
+        }, out);
+        return out.count;
+    }
+
+    private static InvoiceLine line(int i) {
+        return new InvoiceLine("PO" + (i / 5), "Product detail " + (i % 997), 1 + i % 7, 5_000L + (i % 50) * 1_000L);
+    }
+
+    // Chỉ đếm byte, không giữ PDF trong bộ nhớ (giống ghi ra file tạm)
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
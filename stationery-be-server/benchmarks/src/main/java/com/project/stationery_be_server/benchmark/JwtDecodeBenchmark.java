@@ -0,0 +1,100 @@
+package com.project.stationery_be_server.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.project.stationery_be_server.configuration.CustomJwtDecoder;
+import com.project.stationery_be_server.repository.InvalidatedTokenRepository;
+import com.project.stationery_be_server.security.TokenRevocationList;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí xác thực JWT trên mỗi request: giải mã + verify HS256 mỗi lần (cách cũ, không kiểm tra thu hồi)
+ * so với CustomJwtDecoder (cache token đã verify + Bloom filter thu hồi). tokens = số user khác nhau đang hoạt động.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtDecodeBenchmark {
+    static final String SIGNER_KEY = "benchmark-signer-key-0123456789abcdef0123456789abcdef";
+
+    @Param({"1", "1000"})
+    int tokens;
+
+    NimbusJwtDecoder nimbusJwtDecoder;
+    CustomJwtDecoder customJwtDecoder;
+    String[] issued;
+
+    @Setup
+    public void setup() throws JOSEException {
+        nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(new SecretKeySpec(SIGNER_KEY.getBytes(), "HS256"))
+                .macAlgorithm(MacAlgorithm.HS256)
+                .build();
+        // bảng invalidated_token rỗng, không cần DB
+        TokenRevocationList revocationList = new TokenRevocationList(emptyRevocationRepository(), 100_000, 0.01);
+        revocationList.reload();
+        customJwtDecoder = new CustomJwtDecoder(SIGNER_KEY, revocationList, 10_000, 300);
+
+        MACSigner signer = new MACSigner(SIGNER_KEY.getBytes());
+        issued = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                    .subject("USER" + i)
+                    .issuer("ltn.com")
+                    .issueTime(new Date())
+                    .jwtID(UUID.randomUUID().toString())
+                    .claim("scope", "USER")
+                    .expirationTime(Date.from(Instant.now().plus(1, ChronoUnit.DAYS)))
+                    .build();
+            SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+            jwt.sign(signer);
+            issued[i] = jwt.serialize();
+        }
+    }
+
+    @Benchmark
+    public Jwt baselineDecodePerRequest() {
+        return nimbusJwtDecoder.decode(nextToken());
+    }
+
+    @Benchmark
+    public Jwt customJwtDecoder() {
+        return customJwtDecoder.decode(nextToken());
+    }
+
+    private String nextToken() {
+        return issued[ThreadLocalRandom.current().nextInt(tokens)];
+    }
+
+    private static InvalidatedTokenRepository emptyRevocationRepository() {
+        return (InvalidatedTokenRepository) Proxy.newProxyInstance(
+                InvalidatedTokenRepository.class.getClassLoader(),
+                new Class<?>[]{InvalidatedTokenRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findActiveIds" -> List.of();
+                    case "existsById" -> false;
+                    case "deleteExpired" -> 0;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,70 @@
+package com.project.stationery_be_server.benchmark;
+
+import com.project.stationery_be_server.gateway.MomoSigner;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ký HMAC-SHA256 chuỗi tạo giao dịch MoMo: cách cũ (Mac.getInstance + init + ghép chuỗi mỗi lần)
+ * so với MomoSigner. Chạy với -prof gc để so sánh gc.alloc.rate.norm (byte cấp phát mỗi lần ký).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class MomoSignatureBenchmark {
+    static final String ACCESS_KEY = "benchmarkAccessKey";
+    static final String SECRET_KEY = "benchmark-secret-key-0123456789ab";
+    static final String PARTNER_CODE = "MOMO";
+    static final String IPN_URL = "https://example.com/ipn";
+    static final String REDIRECT_URL = "https://example.com/return";
+    static final String REQUEST_TYPE = "captureWallet";
+    static final String EXTRA_DATA = "hello ae";
+    static final long AMOUNT = 135_000;
+
+    MomoSigner signer;
+    String orderId;
+    String orderInfo;
+    String requestId;
+
+    @Setup
+    public void setup() {
+        signer = new MomoSigner(ACCESS_KEY, SECRET_KEY, PARTNER_CODE, IPN_URL, REDIRECT_URL, REQUEST_TYPE);
+        orderId = UUID.randomUUID().toString().replace("-", "").toUpperCase();
+        orderInfo = "Order information " + orderId;
+        requestId = UUID.randomUUID().toString();
+        if (!baselineNewMacPerCall().equals(momoSigner())) {
+            throw new IllegalStateException("MomoSigner signature differs from the baseline implementation");
+        }
+    }
+
+    // Cách ký trước khi có MomoSigner (giữ lại làm mốc so sánh)
+    @Benchmark
+    public String baselineNewMacPerCall() {
+        String rawSignature = "accessKey=" + ACCESS_KEY + "&amount=" + AMOUNT + "&extraData=" + EXTRA_DATA
+                + "&ipnUrl=" + IPN_URL + "&orderId=" + orderId + "&orderInfo=" + orderInfo
+                + "&partnerCode=" + PARTNER_CODE + "&redirectUrl=" + REDIRECT_URL + "&requestId=" + requestId
+                + "&requestType=" + REQUEST_TYPE;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(rawSignature.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public String momoSigner() {
+        return signer.signCreatePayment(AMOUNT, EXTRA_DATA, orderId, orderInfo, requestId);
+    }
+}
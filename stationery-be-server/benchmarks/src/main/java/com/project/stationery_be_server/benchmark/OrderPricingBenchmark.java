@@ -0,0 +1,70 @@
+package com.project.stationery_be_server.benchmark;
+
+import com.project.stationery_be_server.entity.Promotion;
+import com.project.stationery_be_server.utils.PromotionPricing;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tính tiền một đơn N dòng như handleRequestPurchaseOrder: mỗi dòng có thể có voucher sản phẩm
+ * (giảm % có trần / giảm %, không trần / giảm cố định), sau đó áp voucher của user trên tổng đơn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderPricingBenchmark {
+    @Param({"1", "10", "100"})
+    int lines;
+
+    int[] prices;
+    int[] quantities;
+    Promotion[] linePromotions;
+    Promotion orderPromotion;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        Promotion[] pool = {
+                null,
+                promotion(Promotion.DiscountType.PERCENTAGE, 10, 20_000),
+                promotion(Promotion.DiscountType.PERCENTAGE, 15, null),
+                promotion(Promotion.DiscountType.VALUE, 5_000, null)
+        };
+        prices = new int[lines];
+        quantities = new int[lines];
+        linePromotions = new Promotion[lines];
+        for (int i = 0; i < lines; i++) {
+            prices[i] = 5_000 + random.nextInt(500_000);
+            quantities[i] = 1 + random.nextInt(5);
+            linePromotions[i] = pool[i % pool.length];
+        }
+        orderPromotion = promotion(Promotion.DiscountType.PERCENTAGE, 5, 50_000);
+    }
+
+    @Benchmark
+    public long priceOrder() {
+        long total = 0;
+        for (int i = 0; i < lines; i++) {
+            int price = prices[i];
+            Promotion promotion = linePromotions[i];
+            if (promotion != null) {
+                price -= PromotionPricing.lineDiscount(price, promotion);
+            }
+            total += (long) price * quantities[i];
+        }
+        return total - PromotionPricing.orderDiscount(total, orderPromotion);
+    }
+
+    private static Promotion promotion(Promotion.DiscountType type, int value, Integer maxValue) {
+        Promotion promotion = new Promotion();
+        promotion.setDiscountType(type);
+        promotion.setDiscountValue(value);
+        promotion.setMaxValue(maxValue);
+        return promotion;
+    }
+}
@@ -0,0 +1,89 @@
+package com.project.stationery_be_server.benchmark;
+
+import com.project.stationery_be_server.cache.PromotionUsageCounter;
+import com.project.stationery_be_server.repository.PromotionRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Throughput checkout khi mọi đơn dùng chung một mã voucher: PromotionUsageCounter (CAS trên stripe trong bộ nhớ)
+ * so với một MÔ PHỎNG khóa dòng của cách cũ (UPDATE trên dòng promotion, các checkout xếp hàng tới khi commit).
+ * simulatedRowLock không chạm DB: nó chỉ là một ReentrantLock giữ trong commitWork đơn vị CPU, nên không có
+ * round-trip JDBC, chi phí khóa của InnoDB hay log flush lúc commit. Kết quả của nó là cận trên cho cách cũ,
+ * không phải số đo UPDATE thật. Mỗi lần gọi mở/đóng đồng bộ hóa transaction như một checkout thật.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class PromotionClaimBenchmark {
+    static final String PROMOTION_ID = "shared-promo";
+
+    // số đơn vị Blackhole.consumeCPU giữa lúc trừ lượt và commit (phần còn lại của transaction checkout)
+    @Param({"0", "2000"})
+    long commitWork;
+
+    PromotionUsageCounter counter;
+    ReentrantLock rowLock;
+    long remainingInRow;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        // đủ lượt cho cả iteration để luôn đo đường giữ lượt thành công
+        counter = new PromotionUsageCounter(stubRepository(), 0);
+        rowLock = new ReentrantLock();
+        remainingInRow = Integer.MAX_VALUE;
+    }
+
+    @Benchmark
+    public boolean simulatedRowLock() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // mô phỏng UPDATE promotion SET temp_usage_limit = temp_usage_limit - 1 WHERE ... AND temp_usage_limit > 0:
+            // khóa dòng giữ tới commit
+            rowLock.lock();
+            try {
+                if (remainingInRow <= 0) return false;
+                remainingInRow--;
+                Blackhole.consumeCPU(commitWork);
+                return true;
+            } finally {
+                rowLock.unlock();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Benchmark
+    public boolean stripedCounter() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            boolean claimed = counter.claim(PROMOTION_ID);
+            // phần còn lại của transaction chạy song song, không giữ khóa chung
+            Blackhole.consumeCPU(commitWork);
+            return claimed;
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static PromotionRepository stubRepository() {
+        return (PromotionRepository) Proxy.newProxyInstance(
+                PromotionRepository.class.getClassLoader(),
+                new Class<?>[]{PromotionRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findTempUsageLimitById" -> Integer.MAX_VALUE;
+                    case "addTempUsageLimit", "reduceUsageCountBy" -> 1;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,67 @@
+package com.project.stationery_be_server.benchmark;
+
+import com.project.stationery_be_server.dto.response.PurchaseOrderDetailResponse;
+import com.project.stationery_be_server.dto.response.PurchaseOrderResponse;
+import com.project.stationery_be_server.entity.PurchaseOrder;
+import com.project.stationery_be_server.repository.projection.OrderHistoryRow;
+import com.project.stationery_be_server.service.impl.PurchaseOrderServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Map danh sách đơn (mỗi đơn vài dòng) sang PurchaseOrderResponse như màn lịch sử đơn hàng của user
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PurchaseOrderResponseBenchmark {
+    @Param({"10", "100", "1000"})
+    int orders;
+
+    @Param({"3"})
+    int linesPerOrder;
+
+    List<OrderHistoryRow> purchaseOrders;
+    List<List<PurchaseOrderDetailResponse>> orderLines;
+
+    @Setup
+    public void setup() {
+        LocalDateTime now = LocalDateTime.now();
+        purchaseOrders = new ArrayList<>(orders);
+        orderLines = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            String orderId = "ORDER" + i;
+            List<PurchaseOrderDetailResponse> details = new ArrayList<>(linesPerOrder);
+            for (int j = 0; j < linesPerOrder; j++) {
+                details.add(PurchaseOrderDetailResponse.builder()
+                        .productDetailId("PD" + j)
+                        .quantity(j + 1)
+                        .build());
+            }
+            purchaseOrders.add(new OrderHistoryRow(orderId,
+                    now.minusHours(i),
+                    i % 2 == 0 ? now.plusMinutes(2) : null,
+                    null,
+                    null,
+                    PurchaseOrder.Status.values()[i % PurchaseOrder.Status.values().length],
+                    "Giao giờ hành chính",
+                    null,
+                    135_000L * (i + 1)));
+            orderLines.add(details);
+        }
+    }
+
+    @Benchmark
+    public List<PurchaseOrderResponse> buildResponses() {
+        List<PurchaseOrderResponse> responses = new ArrayList<>(purchaseOrders.size());
+        for (int i = 0; i < purchaseOrders.size(); i++) {
+            responses.add(PurchaseOrderServiceImpl.toOrderResponse(purchaseOrders.get(i), orderLines.get(i)));
+        }
+        return responses;
+    }
+}
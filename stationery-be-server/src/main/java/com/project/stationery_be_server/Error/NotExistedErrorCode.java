@@ -38,13 +38,17 @@ public enum NotExistedErrorCode implements BaseErrorCode {
     //
     IN_ORDER_NOT_FOUND(1043, "In order not found", HttpStatus.BAD_REQUEST),
     PURCHASE_ORDER_NOT_EXISTED(1044, "Purchase order not existed", HttpStatus.BAD_REQUEST),
+    INVALID_ORDER_CURSOR(1045, "Invalid order history cursor", HttpStatus.BAD_REQUEST),
 
     // user promotion
     USER_PROMOTION_NOT_FOUND(1050, "User promotion not found", HttpStatus.BAD_REQUEST),
+    PROMOTION_USAGE_LIMIT_REACHED(1051, "Promotion usage limit reached", HttpStatus.BAD_REQUEST),
+    PROMOTION_FAN_OUT_NOT_FOUND(1052, "No fan-out job found for promotion", HttpStatus.BAD_REQUEST),
 
     //payment
     PAYMENT_NOT_FOUND(1060, "Payment not found", HttpStatus.BAD_REQUEST),
     PAYMENT_EXISTS(1061, "Payment already exists", HttpStatus.BAD_REQUEST),
+    PAYMENT_GATEWAY_UNAVAILABLE(1062, "Payment gateway unavailable, please try again later", HttpStatus.SERVICE_UNAVAILABLE),
 
     //category
     CATEGORY_NOT_EXISTED(1070, "Category not existed", HttpStatus.BAD_REQUEST),
@@ -56,7 +60,15 @@ public enum NotExistedErrorCode implements BaseErrorCode {
 
     //role
     ROLE_NOT_EXISTED(1100, "Role not existed", HttpStatus.BAD_REQUEST),
-    USER_NOT_ADMIN(1101, "User is not admin", HttpStatus.BAD_REQUEST)
+    USER_NOT_ADMIN(1101, "User is not admin", HttpStatus.BAD_REQUEST),
+
+    // pdf
+    PDF_JOB_NOT_FOUND(1110, "PDF job not found", HttpStatus.BAD_REQUEST),
+    PDF_JOB_QUEUE_FULL(1111, "Too many PDF jobs in progress, please try again later", HttpStatus.SERVICE_UNAVAILABLE),
+    PDF_GENERATION_FAILED(1112, "Failed to generate invoice PDF, please try again later", HttpStatus.INTERNAL_SERVER_ERROR),
+
+    // upload
+    IMAGE_UPLOAD_FAILED(1120, "Failed to upload image", HttpStatus.BAD_GATEWAY)
     ;
     private final int code;
     private final String message;
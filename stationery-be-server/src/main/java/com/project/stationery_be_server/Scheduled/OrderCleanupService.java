@@ -1,20 +1,23 @@
 package com.project.stationery_be_server.Scheduled;
 
-import com.project.stationery_be_server.entity.InOrder;
-import com.project.stationery_be_server.entity.Promotion;
-import com.project.stationery_be_server.entity.PurchaseOrder;
-import com.project.stationery_be_server.entity.PurchaseOrderDetail;
+import com.project.stationery_be_server.cache.ProductDetailCache;
+import com.project.stationery_be_server.cache.PromotionUsageCounter;
 import com.project.stationery_be_server.repository.*;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
@@ -24,30 +27,88 @@ public class OrderCleanupService {
     PurchaseOrderDetailRepository purchaseOrderDetailRepository;
     ProductDetailRepository productDetailRepository;
     PromotionRepository promotionRepository;
+    PromotionUsageCounter promotionUsageCounter;
+    ProductDetailCache productDetailCache;
+    TransactionTemplate transactionTemplate;
+    AtomicReference<RunStats> lastRun = new AtomicReference<>();
+
+    @Value("${order-cleanup.batch-size:200}")
+    @NonFinal
+    int batchSize;
+    @Value("${order-cleanup.max-batches-per-run:50}")
+    @NonFinal
+    int maxBatchesPerRun;
 
     @Scheduled(fixedRate = 60*1000) // mỗi 60,000ms = 1 phút
-    @Transactional
     public void checkExpiredOrders() {
-        List<InOrder> expiredOrders = inOrderRepository.findByExpiredTimeBefore(LocalDateTime.now());
-        for (InOrder inOrder : expiredOrders){
-            String orderId = inOrder.getOrderId();
-            PurchaseOrder purchaseOrder = purchaseOrderRepository.findById(orderId)
-                    .orElseThrow(() -> new RuntimeException("Purchase order not found for ID: " + orderId));
-            if(purchaseOrder.getUserPromotion() != null){
-                Promotion currentPromotion = purchaseOrder.getUserPromotion().getPromotion();
-                promotionRepository.increaseUsageCountByPromotionId(currentPromotion.getPromotionId());
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        int ordersExpired = 0;
+        int rowsTouched = 0;
+        int batches = 0;
+        // mỗi lô một transaction ngắn, không giữ khóa product_detail cho cả backlog
+        while (batches < maxBatchesPerRun) {
+            int[] result = transactionTemplate.execute(status -> expireBatch(now));
+            batches++;
+            ordersExpired += result[0];
+            rowsTouched += result[1];
+            if (result[0] < batchSize) {
+                break;
             }
-            List<PurchaseOrderDetail> details = purchaseOrderDetailRepository.findByPurchaseOrder_PurchaseOrderId(orderId);
-            for (PurchaseOrderDetail detail : details) {
-                String productDetailId = detail.getProductDetail().getProductDetailId();
-                productDetailRepository.restoreQuantity(productDetailId, detail.getQuantity());
-                if(detail.getProductPromotion()!= null){
-                    promotionRepository.increaseUsageCountByPromotionId(detail.getProductPromotion().getPromotion().getPromotionId());
-                }
+        }
+        RunStats stats = new RunStats(now, ordersExpired, rowsTouched, batches, (System.nanoTime() - start) / 1_000_000);
+        lastRun.set(stats);
+        if (ordersExpired > 0) {
+            log.info("Expired orders run: {}", stats);
+        }
+    }
+
+    public RunStats getLastRun() {
+        return lastRun.get();
+    }
+
+    /**
+     * Hủy ngay các đơn chưa thanh toán (vd: gọi cổng MoMo thất bại) thay vì đợi hết hạn.
+     * Xóa in_order trước để giữ khóa dòng, đơn nào job hết hạn đã xử lý thì bỏ qua.
+     */
+    public void discardUnpaidOrders(List<String> orderIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (inOrderRepository.deleteByOrderIds(orderIds) > 0) {
+                releaseOrders(orderIds);
             }
-            purchaseOrderDetailRepository.deleteAll(details);
-            purchaseOrderRepository.deleteById(orderId);
-            inOrderRepository.deleteById(orderId);
+        });
+    }
+
+    // trả về {số đơn hết hạn, số dòng bị tác động}
+    private int[] expireBatch(LocalDateTime now) {
+        List<String> orderIds = inOrderRepository.claimExpiredOrderIds(now, batchSize);
+        if (orderIds.isEmpty()) {
+            return new int[]{0, 0};
+        }
+        int rows = releaseOrders(orderIds);
+        rows += inOrderRepository.deleteByOrderIds(orderIds);
+        return new int[]{orderIds.size(), rows};
+    }
+
+    // trả hàng + lượt voucher rồi xóa đơn, trả về số dòng bị tác động
+    private int releaseOrders(List<String> orderIds) {
+        int rows = 0;
+        int restored = productDetailRepository.restoreQuantityForOrders(orderIds);
+        if (restored > 0) {
+            // số lượng còn lại hiển thị trên trang chi tiết; cả lô nhiều sản phẩm nên xóa toàn bộ sau commit
+            productDetailCache.invalidateAll();
         }
+        rows += restored;
+        // lượt voucher trả về bộ đếm, bộ đếm ghi xuống promotion khi reconcile
+        for (Object[] row : promotionRepository.countPromotionUsageForOrders(orderIds)) {
+            promotionUsageCounter.release((String) row[0], ((Number) row[1]).intValue());
+            rows++;
+        }
+        rows += purchaseOrderDetailRepository.deleteByPurchaseOrderIds(orderIds);
+        rows += purchaseOrderRepository.deleteByPurchaseOrderIds(orderIds);
+        return rows;
+    }
+
+    public record RunStats(LocalDateTime startedAt, int ordersExpired, int rowsTouched, int batches, long durationMs) {
     }
 }
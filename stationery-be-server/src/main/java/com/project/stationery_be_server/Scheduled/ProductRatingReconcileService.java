@@ -0,0 +1,38 @@
+package com.project.stationery_be_server.Scheduled;
+
+import com.project.stationery_be_server.cache.ProductDetailCache;
+import com.project.stationery_be_server.repository.ProductRatingRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ProductRatingReconcileService {
+    ProductRatingRepository productRatingRepository;
+    ProductDetailCache productDetailCache;
+
+    // lần đầu thêm cột rating_count / rating_sum thì tính ngay từ bảng review
+    @PostConstruct
+    void ensureColumns() {
+        if (productRatingRepository.addColumnsIfMissing()) {
+            log.info("Added product rating aggregate columns, backfilled {} products", productRatingRepository.reconcileAll());
+        }
+    }
+
+    // tính lại rating_count / rating_sum / total_rating từ review để sửa lệch (ghi lỗi giữa chừng, sửa tay trên DB...)
+    @Scheduled(cron = "${product-rating.reconcile-cron:0 30 3 * * *}")
+    public void reconcileRatings() {
+        int drifted = productRatingRepository.reconcileAll();
+        if (drifted > 0) {
+            log.warn("Reconciled rating aggregates of {} products", drifted);
+            productDetailCache.invalidateAll();
+        }
+    }
+}
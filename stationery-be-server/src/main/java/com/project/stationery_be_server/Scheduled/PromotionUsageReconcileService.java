@@ -0,0 +1,32 @@
+package com.project.stationery_be_server.Scheduled;
+
+import com.project.stationery_be_server.cache.PromotionUsageCounter;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PromotionUsageReconcileService {
+    PromotionUsageCounter promotionUsageCounter;
+
+    // ghi lượt dùng đã gom xuống temp_usage_limit / usage_limit
+    @Scheduled(fixedDelayString = "${promotion-usage.flush-interval-ms:1000}")
+    public void flushUsageCounters() {
+        int updated = promotionUsageCounter.flush();
+        if (updated > 0) {
+            log.debug("Flushed usage counters of {} promotions", updated);
+        }
+    }
+
+    // nạp lại số lượt từ DB để bắt kịp thay đổi không đi qua bộ đếm
+    @Scheduled(fixedDelayString = "${promotion-usage.resync-interval-ms:300000}")
+    public void resyncUsageCounters() {
+        promotionUsageCounter.resync();
+    }
+}
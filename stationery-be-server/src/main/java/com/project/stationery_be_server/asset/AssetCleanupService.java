@@ -0,0 +1,177 @@
+package com.project.stationery_be_server.asset;
+
+import com.project.stationery_be_server.dto.response.AssetCleanupStatsResponse;
+import com.project.stationery_be_server.repository.PendingAssetDeletionRepository;
+import com.project.stationery_be_server.repository.PendingAssetDeletionRepository.PendingDeletion;
+import com.project.stationery_be_server.utils.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Xóa asset (ảnh) không còn dùng khỏi nơi lưu. Yêu cầu xóa được ghi vào bảng pending_asset_deletion trong transaction
+ * của caller, sau commit một thread dọn duy nhất (hàng đợi 1 chỗ, yêu cầu dồn lại thành một lượt) đọc các dòng tới hạn
+ * và gom thành lệnh xóa nhiều asset một lần (tối đa maxDeleteBatch). Lỗi thì hẹn lại theo backoff lũy thừa,
+ * quá max-attempts thì dừng và để lại dòng cho người xem. Ngoài ra quét định kỳ để nhận dòng đến hạn retry
+ * và dòng còn sót từ lần chạy trước.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AssetCleanupService {
+    AssetStorage assetStorage;
+    PendingAssetDeletionRepository pendingAssetDeletionRepository;
+    Executor drainExecutor;
+    int maxAttempts;
+    Duration baseBackoff;
+    Duration maxBackoff;
+    LongAdder deleted = new LongAdder();
+    LongAdder failedAttempts = new LongAdder();
+    LongAdder deleteCalls = new LongAdder();
+    @NonFinal
+    volatile LocalDateTime lastFailureAt;
+    @NonFinal
+    volatile String lastError;
+
+    @Autowired
+    public AssetCleanupService(AssetStorage assetStorage,
+                               PendingAssetDeletionRepository pendingAssetDeletionRepository,
+                               @Value("${asset.cleanup.max-attempts:10}") int maxAttempts,
+                               @Value("${asset.cleanup.base-backoff-ms:30000}") long baseBackoffMs,
+                               @Value("${asset.cleanup.max-backoff-ms:21600000}") long maxBackoffMs) {
+        this(assetStorage, pendingAssetDeletionRepository,
+                // một lượt đang chạy + tối đa một lượt chờ; yêu cầu thêm bị bỏ vì lượt chờ sẽ thấy dòng của nó
+                new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                        Thread.ofPlatform().name("asset-cleanup").daemon(true).factory(),
+                        new ThreadPoolExecutor.DiscardPolicy()),
+                maxAttempts, Duration.ofMillis(baseBackoffMs), Duration.ofMillis(maxBackoffMs));
+    }
+
+    AssetCleanupService(AssetStorage assetStorage, PendingAssetDeletionRepository pendingAssetDeletionRepository,
+                        Executor drainExecutor, int maxAttempts, Duration baseBackoff, Duration maxBackoff) {
+        this.assetStorage = assetStorage;
+        this.pendingAssetDeletionRepository = pendingAssetDeletionRepository;
+        this.drainExecutor = drainExecutor;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    @PostConstruct
+    void createTable() {
+        pendingAssetDeletionRepository.createTableIfMissing();
+    }
+
+    // Gọi trong transaction xóa/thay ảnh: dòng chờ xóa commit cùng thay đổi đó, rollback thì asset được giữ lại
+    public void scheduleDeletion(Collection<String> publicIds) {
+        if (publicIds.isEmpty()) return;
+        pendingAssetDeletionRepository.enqueue(publicIds, LocalDateTime.now());
+        TransactionUtils.afterCommit(this::requestDrain);
+    }
+
+    @Scheduled(initialDelayString = "${asset.cleanup.poll-interval-ms:60000}",
+            fixedDelayString = "${asset.cleanup.poll-interval-ms:60000}")
+    public void requestDrain() {
+        drainExecutor.execute(this::drain);
+    }
+
+    public AssetCleanupStatsResponse stats() {
+        return AssetCleanupStatsResponse.builder()
+                .pending(pendingAssetDeletionRepository.countPending(maxAttempts))
+                .abandoned(pendingAssetDeletionRepository.countAbandoned(maxAttempts))
+                .deleted(deleted.sum())
+                .failedAttempts(failedAttempts.sum())
+                .deleteCalls(deleteCalls.sum())
+                .lastFailureAt(lastFailureAt)
+                .lastError(lastError)
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (drainExecutor instanceof ThreadPoolExecutor executor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void drain() {
+        try {
+            drainDue(LocalDateTime.now());
+        } catch (RuntimeException e) {
+            // lỗi DB: dòng vẫn còn trong bảng, lượt quét sau làm tiếp
+            log.warn("Draining pending asset deletions failed", e);
+        }
+    }
+
+    // Xử lý hết dòng tới hạn tại thời điểm now; mỗi dòng sau đó hoặc bị xóa hoặc được hẹn sau now nên vòng lặp dừng
+    synchronized void drainDue(LocalDateTime now) {
+        int batchSize = assetStorage.maxDeleteBatch();
+        while (true) {
+            List<PendingDeletion> due = pendingAssetDeletionRepository.findDue(now, maxAttempts, batchSize);
+            if (due.isEmpty()) return;
+            deleteBatch(due, now);
+        }
+    }
+
+    private void deleteBatch(List<PendingDeletion> batch, LocalDateTime now) {
+        List<String> publicIds = batch.stream().map(PendingDeletion::publicId).toList();
+        Set<String> done;
+        String error;
+        try {
+            deleteCalls.increment();
+            done = assetStorage.deleteAll(publicIds);
+            error = "Not deleted by storage";
+        } catch (Exception e) {
+            log.warn("Deleting {} assets failed", publicIds.size(), e);
+            done = Set.of();
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        if (!done.isEmpty()) {
+            pendingAssetDeletionRepository.deleteAll(done);
+            deleted.add(done.size());
+        }
+        List<PendingDeletion> failed = new ArrayList<>();
+        for (PendingDeletion pending : batch) {
+            if (!done.contains(pending.publicId())) failed.add(pending);
+        }
+        if (failed.isEmpty()) return;
+
+        failedAttempts.add(failed.size());
+        lastFailureAt = now;
+        lastError = error;
+        String storedError = error.length() > 500 ? error.substring(0, 500) : error;
+        for (PendingDeletion pending : failed) {
+            int attempts = pending.attempts() + 1;
+            pendingAssetDeletionRepository.recordFailure(pending.publicId(), attempts,
+                    now.plus(backoff(attempts)), storedError);
+            if (attempts >= maxAttempts) {
+                log.error("Giving up deleting asset {} after {} attempts: {}", pending.publicId(), attempts, error);
+            }
+        }
+    }
+
+    // base * 2^(attempts-1), tối đa maxBackoff
+    Duration backoff(int attempts) {
+        Duration delay = baseBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+}
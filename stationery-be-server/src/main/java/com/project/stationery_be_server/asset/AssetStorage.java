@@ -0,0 +1,18 @@
+package com.project.stationery_be_server.asset;
+
+import com.project.stationery_be_server.gateway.ImageUploader.UploadedImage;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Nơi lưu ảnh (Cloudinary khi chạy thật, LocalAssetStorage khi chạy/test không có mạng).
+ */
+public interface AssetStorage {
+    UploadedImage upload(byte[] bytes) throws Exception;
+
+    // Xóa nhiều asset trong một lần gọi (tối đa maxDeleteBatch); trả về các publicId đã xóa hoặc vốn không tồn tại
+    Set<String> deleteAll(List<String> publicIds) throws Exception;
+
+    int maxDeleteBatch();
+}
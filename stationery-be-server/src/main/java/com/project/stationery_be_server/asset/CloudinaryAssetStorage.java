@@ -0,0 +1,53 @@
+package com.project.stationery_be_server.asset;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.api.ApiResponse;
+import com.cloudinary.utils.ObjectUtils;
+import com.project.stationery_be_server.gateway.ImageUploader.UploadedImage;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Component
+@ConditionalOnProperty(name = "asset.storage.type", havingValue = "cloudinary", matchIfMissing = true)
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CloudinaryAssetStorage implements AssetStorage {
+    // Giới hạn của Admin API delete_resources
+    static final int MAX_DELETE_BATCH = 100;
+
+    Cloudinary cloudinary;
+
+    @Override
+    public UploadedImage upload(byte[] bytes) throws Exception {
+        Map<?, ?> result = cloudinary.uploader().upload(bytes, ObjectUtils.emptyMap());
+        return new UploadedImage(result.get("secure_url").toString(), result.get("public_id").toString());
+    }
+
+    @Override
+    public Set<String> deleteAll(List<String> publicIds) throws Exception {
+        ApiResponse response = cloudinary.api().deleteResources(publicIds, ObjectUtils.emptyMap());
+        Set<String> done = new HashSet<>();
+        if (response.get("deleted") instanceof Map<?, ?> deleted) {
+            // "not_found" cũng coi là xong: asset đã không còn
+            deleted.forEach((publicId, status) -> {
+                if ("deleted".equals(status) || "not_found".equals(status)) {
+                    done.add(publicId.toString());
+                }
+            });
+        }
+        return done;
+    }
+
+    @Override
+    public int maxDeleteBatch() {
+        return MAX_DELETE_BATCH;
+    }
+}
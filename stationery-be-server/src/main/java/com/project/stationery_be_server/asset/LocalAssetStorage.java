@@ -0,0 +1,75 @@
+package com.project.stationery_be_server.asset;
+
+import com.project.stationery_be_server.gateway.ImageUploader.UploadedImage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AssetStorage giả trong bộ nhớ (asset.storage.type = local) để chạy và test upload/dọn ảnh khi không có Cloudinary.
+ * Chỉ nhớ publicId + kích thước; URL có dạng .../upload/<publicId>.img như Cloudinary nên extractPublicIdFromUrl vẫn đúng.
+ * failNextDeletes giả lập Cloudinary lỗi để thử retry.
+ */
+@Component
+@ConditionalOnProperty(name = "asset.storage.type", havingValue = "local")
+public class LocalAssetStorage implements AssetStorage {
+    static final String BASE_URL = "http://localhost/local-assets/upload/";
+
+    private final ConcurrentHashMap<String, Integer> assets = new ConcurrentHashMap<>();
+    private final AtomicInteger failingDeletes = new AtomicInteger();
+    private final AtomicInteger deleteCalls = new AtomicInteger();
+    private final int maxDeleteBatch;
+
+    public LocalAssetStorage() {
+        this(100);
+    }
+
+    LocalAssetStorage(int maxDeleteBatch) {
+        this.maxDeleteBatch = maxDeleteBatch;
+    }
+
+    @Override
+    public UploadedImage upload(byte[] bytes) {
+        String publicId = UUID.randomUUID().toString().replace("-", "");
+        assets.put(publicId, bytes.length);
+        return new UploadedImage(BASE_URL + publicId + ".img", publicId);
+    }
+
+    @Override
+    public Set<String> deleteAll(List<String> publicIds) throws IOException {
+        if (publicIds.size() > maxDeleteBatch) {
+            throw new IllegalArgumentException("At most " + maxDeleteBatch + " public ids per call");
+        }
+        deleteCalls.incrementAndGet();
+        if (failingDeletes.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            throw new IOException("Simulated storage failure");
+        }
+        publicIds.forEach(assets::remove);
+        return new HashSet<>(publicIds);
+    }
+
+    @Override
+    public int maxDeleteBatch() {
+        return maxDeleteBatch;
+    }
+
+    public boolean contains(String publicId) {
+        return assets.containsKey(publicId);
+    }
+
+    public int deleteCalls() {
+        return deleteCalls.get();
+    }
+
+    // n lần deleteAll kế tiếp sẽ ném lỗi
+    public void failNextDeletes(int n) {
+        failingDeletes.set(n);
+    }
+}
@@ -0,0 +1,206 @@
+package com.project.stationery_be_server.cache;
+
+import com.project.stationery_be_server.entity.Promotion;
+import com.project.stationery_be_server.repository.ProductPromotionRepository;
+import com.project.stationery_be_server.repository.PromotionRepository;
+import com.project.stationery_be_server.repository.UserPromotionRepository;
+import com.project.stationery_be_server.repository.projection.PromotionAssignmentRow;
+import com.project.stationery_be_server.utils.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chỉ mục trong bộ nhớ các promotion đang hiệu lực theo productDetailId và userId, để báo giá giỏ hàng
+ * không phải truy vấn start_date/end_date mỗi dòng.
+ * <p>
+ * Giữ mọi promotion chưa hết hạn (kể cả chưa tới startDate) cùng các dòng gán của nó; từ đó dựng một snapshot
+ * chỉ gồm promotion đang hiệu lực. Một thread duy nhất làm mọi thay đổi: nạp lại khi admin tạo/sửa/xóa promotion
+ * (sau commit), hẹn giờ dựng lại snapshot đúng lúc promotion gần nhất bắt đầu hoặc hết hạn, và nạp lại toàn bộ
+ * định kỳ để bắt kịp usage_limit. Đây chỉ là dữ liệu hiển thị: khi đặt hàng, promotion vẫn được kiểm tra lại trên DB.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ActivePromotionIndex {
+    PromotionRepository promotionRepository;
+    ProductPromotionRepository productPromotionRepository;
+    UserPromotionRepository userPromotionRepository;
+    ScheduledExecutorService executor;
+    // chỉ thread của executor đọc/ghi (sau @PostConstruct)
+    Map<String, Entry> promotions = new HashMap<>();
+    @NonFinal
+    ScheduledFuture<?> nextBoundary;
+    @NonFinal
+    volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public ActivePromotionIndex(PromotionRepository promotionRepository,
+                                ProductPromotionRepository productPromotionRepository,
+                                UserPromotionRepository userPromotionRepository) {
+        this.promotionRepository = promotionRepository;
+        this.productPromotionRepository = productPromotionRepository;
+        this.userPromotionRepository = userPromotionRepository;
+        this.executor = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("promotion-index").daemon(true).factory());
+    }
+
+    // assignmentId là productPromotionId hoặc userPromotionId
+    public record ActivePromotion(String assignmentId, Promotion promotion) {
+    }
+
+    record Entry(Promotion promotion, List<PromotionAssignmentRow> productDetails, List<PromotionAssignmentRow> users) {
+    }
+
+    record Snapshot(Map<String, List<ActivePromotion>> byProductDetail, Map<String, List<ActivePromotion>> byUser) {
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of());
+    }
+
+    // Nạp đồng bộ lúc khởi động để request đầu tiên đã có khuyến mãi
+    @PostConstruct
+    void load() {
+        reloadAll();
+    }
+
+    public List<ActivePromotion> forProductDetail(String productDetailId, LocalDateTime now) {
+        return activeAt(snapshot.byProductDetail().get(productDetailId), now);
+    }
+
+    public List<ActivePromotion> forUser(String userId, LocalDateTime now) {
+        return activeAt(snapshot.byUser().get(userId), now);
+    }
+
+    // Gọi trong transaction ghi promotion / dòng gán: nạp lại promotion đó sau khi commit
+    public void refresh(String promotionId) {
+        TransactionUtils.afterCommit(() -> executor.execute(() -> reload(promotionId)));
+    }
+
+    @Scheduled(initialDelayString = "${promotion-index.reload-interval-ms:60000}",
+            fixedDelayString = "${promotion-index.reload-interval-ms:60000}")
+    public void requestReloadAll() {
+        executor.execute(this::reloadAll);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void reloadAll() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Map<String, List<PromotionAssignmentRow>> productDetails =
+                    groupByPromotion(productPromotionRepository.findAssignmentsOfUnexpiredPromotions(now));
+            Map<String, List<PromotionAssignmentRow>> users =
+                    groupByPromotion(userPromotionRepository.findAssignmentsOfUnexpiredPromotions(now));
+            promotions.clear();
+            for (Promotion promotion : promotionRepository.findUnexpired(now)) {
+                String promotionId = promotion.getPromotionId();
+                promotions.put(promotionId, new Entry(promotion,
+                        productDetails.getOrDefault(promotionId, List.of()),
+                        users.getOrDefault(promotionId, List.of())));
+            }
+            rebuild();
+        } catch (RuntimeException e) {
+            // giữ snapshot cũ, lần nạp định kỳ sau thử lại
+            log.warn("Reloading active promotion index failed", e);
+        }
+    }
+
+    private void reload(String promotionId) {
+        try {
+            Promotion promotion = promotionRepository.findById(promotionId).orElse(null);
+            if (promotion == null || promotion.getEndDate().isBefore(LocalDateTime.now())) {
+                promotions.remove(promotionId);
+            } else {
+                promotions.put(promotionId, new Entry(promotion,
+                        productPromotionRepository.findAssignmentsByPromotionId(promotionId),
+                        userPromotionRepository.findAssignmentsByPromotionId(promotionId)));
+            }
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Reloading promotion {} into index failed", promotionId, e);
+        }
+    }
+
+    // Dựng snapshot cho thời điểm hiện tại, bỏ promotion đã hết hạn và hẹn lần dựng kế tiếp
+    private void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        promotions.values().removeIf(entry -> entry.promotion().getEndDate().isBefore(now));
+
+        Map<String, List<ActivePromotion>> byProductDetail = new HashMap<>();
+        Map<String, List<ActivePromotion>> byUser = new HashMap<>();
+        LocalDateTime next = null;
+        for (Entry entry : promotions.values()) {
+            Promotion promotion = entry.promotion();
+            if (promotion.getStartDate().isAfter(now)) {
+                next = earliest(next, promotion.getStartDate());
+                continue;
+            }
+            // end_date tính cả thời điểm bằng nên hết hiệu lực ngay sau đó
+            next = earliest(next, promotion.getEndDate().plusNanos(1));
+            if (promotion.getUsageLimit() != null && promotion.getUsageLimit() <= 0) continue;
+            for (PromotionAssignmentRow row : entry.productDetails()) {
+                byProductDetail.computeIfAbsent(row.targetId(), k -> new ArrayList<>())
+                        .add(new ActivePromotion(row.assignmentId(), promotion));
+            }
+            for (PromotionAssignmentRow row : entry.users()) {
+                byUser.computeIfAbsent(row.targetId(), k -> new ArrayList<>())
+                        .add(new ActivePromotion(row.assignmentId(), promotion));
+            }
+        }
+        // thứ tự ổn định như ORDER BY id của truy vấn cũ
+        byProductDetail.values().forEach(list -> list.sort((a, b) -> a.assignmentId().compareTo(b.assignmentId())));
+        byUser.values().forEach(list -> list.sort((a, b) -> a.assignmentId().compareTo(b.assignmentId())));
+        snapshot = new Snapshot(byProductDetail, byUser);
+
+        if (nextBoundary != null) {
+            nextBoundary.cancel(false);
+            nextBoundary = null;
+        }
+        if (next != null) {
+            long delayMs = Math.max(Duration.between(now, next).toMillis(), 0) + 1;
+            nextBoundary = executor.schedule(this::rebuild, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Snapshot có thể trễ vài ms so với mốc; kiểm tra lại thời gian khi đọc
+    private static List<ActivePromotion> activeAt(List<ActivePromotion> candidates, LocalDateTime now) {
+        if (candidates == null) return List.of();
+        List<ActivePromotion> active = new ArrayList<>(candidates.size());
+        for (ActivePromotion candidate : candidates) {
+            Promotion promotion = candidate.promotion();
+            if (!promotion.getStartDate().isAfter(now) && !promotion.getEndDate().isBefore(now)) {
+                active.add(candidate);
+            }
+        }
+        return active;
+    }
+
+    private static Map<String, List<PromotionAssignmentRow>> groupByPromotion(List<PromotionAssignmentRow> rows) {
+        Map<String, List<PromotionAssignmentRow>> grouped = new HashMap<>();
+        for (PromotionAssignmentRow row : rows) {
+            grouped.computeIfAbsent(row.promotionId(), k -> new ArrayList<>()).add(row);
+        }
+        return grouped;
+    }
+
+    private static LocalDateTime earliest(LocalDateTime current, LocalDateTime candidate) {
+        return current == null || candidate.isBefore(current) ? candidate : current;
+    }
+}
@@ -0,0 +1,114 @@
+package com.project.stationery_be_server.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.project.stationery_be_server.dto.response.CacheStatsResponse;
+import com.project.stationery_be_server.dto.response.ColorSizeSlugResponse;
+import com.project.stationery_be_server.dto.response.product.ProductResponse;
+import com.project.stationery_be_server.utils.TransactionUtils;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Cache đọc xuyên (read-through) cho trang chi tiết sản phẩm, key là slug.
+ * Mỗi entry nhớ productId để có thể xóa đúng các slug của một sản phẩm khi admin sửa.
+ * Sửa sản phẩm, giữ/trả hàng khi đặt/hủy đơn và ghi promotion đều xóa cache sau commit; thay đổi không đi qua
+ * các đường đó (sửa tay trên DB, lượt dùng promotion giảm khi khách đặt hàng) cũ tối đa cache.product-detail.ttl-seconds.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ProductDetailCache {
+    Cache<String, Entry<ProductResponse>> productBySlug;
+    Cache<String, Entry<List<ColorSizeSlugResponse>>> colorSizeBySlug;
+
+    public ProductDetailCache(@Value("${cache.product-detail.max-size:2000}") long maxSize,
+                              @Value("${cache.product-detail.ttl-seconds:60}") long ttlSeconds) {
+        this.productBySlug = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.colorSizeBySlug = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public ProductResponse getProduct(String slug, Function<String, ProductResponse> loader) {
+        return productBySlug.get(slug, key -> {
+            ProductResponse response = loader.apply(key);
+            return new Entry<>(response.getProductId(), response);
+        }).value();
+    }
+
+    public List<ColorSizeSlugResponse> getColorSize(String slug,
+                                                    Function<String, String> productIdLoader,
+                                                    Function<String, List<ColorSizeSlugResponse>> loader) {
+        return colorSizeBySlug.get(slug, key -> new Entry<>(productIdLoader.apply(key), List.copyOf(loader.apply(key)))).value();
+    }
+
+    // Trong transaction thì đợi commit xong mới xóa, tránh request khác nạp lại dữ liệu cũ vào cache
+    public void invalidateSlug(String slug) {
+        if (slug == null) return;
+        TransactionUtils.afterCommit(() -> {
+            productBySlug.invalidate(slug);
+            colorSizeBySlug.invalidate(slug);
+        });
+    }
+
+    // Xóa mọi slug thuộc product (màu/size/ảnh của 1 PD xuất hiện trên trang của các PD cùng product)
+    public void invalidateProduct(String productId) {
+        if (productId == null) return;
+        TransactionUtils.afterCommit(() -> {
+            productBySlug.asMap().values().removeIf(entry -> productId.equals(entry.productId()));
+            colorSizeBySlug.asMap().values().removeIf(entry -> productId.equals(entry.productId()));
+        });
+    }
+
+    public void invalidateProducts(Collection<String> productIds) {
+        if (productIds.isEmpty()) return;
+        Set<String> ids = Set.copyOf(productIds);
+        TransactionUtils.afterCommit(() -> {
+            productBySlug.asMap().values().removeIf(entry -> ids.contains(entry.productId()));
+            colorSizeBySlug.asMap().values().removeIf(entry -> ids.contains(entry.productId()));
+        });
+    }
+
+    public void invalidateAll() {
+        TransactionUtils.afterCommit(() -> {
+            productBySlug.invalidateAll();
+            colorSizeBySlug.invalidateAll();
+        });
+    }
+
+    public List<CacheStatsResponse> stats() {
+        return List.of(
+                toStats("productBySlug", productBySlug),
+                toStats("colorSizeBySlug", colorSizeBySlug)
+        );
+    }
+
+    private static CacheStatsResponse toStats(String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return CacheStatsResponse.builder()
+                .name(name)
+                .size(cache.estimatedSize())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .evictionCount(stats.evictionCount())
+                .build();
+    }
+
+    record Entry<T>(String productId, T value) {
+    }
+}
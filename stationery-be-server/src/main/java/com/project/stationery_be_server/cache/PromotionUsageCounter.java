@@ -0,0 +1,308 @@
+package com.project.stationery_be_server.cache;
+
+import com.project.stationery_be_server.repository.PromotionRepository;
+import com.project.stationery_be_server.utils.TransactionUtils;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bộ đếm lượt dùng voucher chia thành nhiều stripe trong bộ nhớ, để checkout không phải tranh nhau
+ * khóa cùng một dòng promotion. Thay đổi được gom lại và ghi xuống temp_usage_limit / usage_limit
+ * định kỳ bởi PromotionUsageReconcileService.
+ * <p>
+ * Mỗi stripe là một long: 32 bit cao = số lượt còn lại, 32 bit thấp = delta chưa ghi xuống DB,
+ * nên giữ lượt và ghi nhận delta là một CAS duy nhất.
+ * <p>
+ * Số lượt còn lại chỉ nằm trong bộ nhớ của JVM này: chạy nhiều instance cùng lúc thì mỗi instance tự
+ * nạp temp_usage_limit và cấp lượt riêng, voucher sẽ bị dùng quá giới hạn. Ứng dụng phải chạy
+ * một instance (xem promotion-usage trong application.yaml).
+ * <p>
+ * Nạp slot từ DB, ghi delta xuống DB và bỏ slot đều chạy dưới khóa riêng của từng promotion (không
+ * nằm trong compute của ConcurrentHashMap), để lần nạp lại không đọc temp_usage_limit thiếu các lượt
+ * vừa lấy ra mà chưa ghi xong.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PromotionUsageCounter {
+    static final int CLOSED = Integer.MIN_VALUE;
+    // mỗi stripe chiếm một cache line (8 long) để tránh false sharing
+    static final int PAD = 8;
+
+    PromotionRepository promotionRepository;
+    int stripes;
+    ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+    // khóa theo promotion cho các thao tác có I/O: nạp slot, ghi delta, bỏ slot
+    ConcurrentHashMap<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    // delta temp_usage_limit ghi xuống DB bị lỗi, thử lại ở lần flush sau
+    ConcurrentHashMap<String, AtomicInteger> unflushedTemp = new ConcurrentHashMap<>();
+    // số lượt đã thanh toán, chưa trừ vào usage_limit
+    ConcurrentHashMap<String, AtomicInteger> pendingConsumed = new ConcurrentHashMap<>();
+
+    public PromotionUsageCounter(PromotionRepository promotionRepository,
+                                 @Value("${promotion-usage.stripes:0}") int stripes) {
+        this.promotionRepository = promotionRepository;
+        this.stripes = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Giữ một lượt dùng voucher. Trả về false nếu đã hết lượt.
+     * Nếu transaction hiện tại rollback thì lượt được trả lại.
+     */
+    public boolean claim(String promotionId) {
+        // lượt chỉ được trả lại qua afterRollback: không có transaction thì lỗi sẽ giữ lượt mãi
+        if (!TransactionUtils.isActive()) {
+            throw new IllegalStateException("Claiming usage of promotion " + promotionId + " requires an active transaction");
+        }
+        while (true) {
+            Slot slot = slotFor(promotionId);
+            if (slot.unlimited) {
+                return true;
+            }
+            int result = slot.tryAdd(-1);
+            if (result == Slot.CLOSED_RESULT) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (result == Slot.OK) {
+                TransactionUtils.afterRollback(() -> addNow(promotionId, 1));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    // Trả lại lượt (hủy đơn, đơn hết hạn...), áp dụng sau khi transaction commit
+    public void release(String promotionId, int count) {
+        if (count <= 0) return;
+        TransactionUtils.afterCommit(() -> addNow(promotionId, count));
+    }
+
+    // Đơn đã thanh toán: trừ usage_limit ở lần reconcile kế tiếp
+    public void consume(String promotionId) {
+        TransactionUtils.afterCommit(() ->
+                pendingConsumed.computeIfAbsent(promotionId, k -> new AtomicInteger()).incrementAndGet());
+    }
+
+    // Admin sửa/xóa promotion: bỏ trạng thái trong bộ nhớ, lần claim sau đọc lại từ DB
+    public void reset(String promotionId) {
+        TransactionUtils.afterCommit(() -> withLock(promotionId, () -> {
+            // admin đã ghi lại temp_usage_limit, delta chưa ghi không còn ý nghĩa
+            Slot slot = slots.remove(promotionId);
+            if (slot != null) {
+                slot.close();
+            }
+            unflushedTemp.remove(promotionId);
+        }));
+    }
+
+    /**
+     * Ghi các delta đang gom xuống DB. Trả về số promotion đã được cập nhật.
+     */
+    public int flush() {
+        int[] updated = new int[1];
+        for (String promotionId : slots.keySet()) {
+            // lấy delta rồi ghi xuống DB dưới khóa của promotion: reset()/slotFor() không chen vào giữa
+            // để đọc lại temp_usage_limit thiếu các lượt vừa lấy ra
+            withLock(promotionId, () -> {
+                Slot slot = slots.get(promotionId);
+                if (slot == null) return;
+                int delta = slot.drain();
+                if (delta != 0 && writeTemp(promotionId, delta)) {
+                    updated[0]++;
+                }
+            });
+        }
+        for (String promotionId : unflushedTemp.keySet()) {
+            withLock(promotionId, () -> {
+                AtomicInteger pending = unflushedTemp.remove(promotionId);
+                if (pending != null && pending.get() != 0) {
+                    writeTemp(promotionId, pending.get());
+                }
+            });
+        }
+        for (var entry : pendingConsumed.entrySet()) {
+            int count = entry.getValue().getAndSet(0);
+            if (count == 0) continue;
+            try {
+                promotionRepository.reduceUsageCountBy(entry.getKey(), count);
+                updated[0]++;
+            } catch (RuntimeException e) {
+                entry.getValue().addAndGet(count);
+                log.warn("Failed to reduce usage_limit of promotion {} by {}", entry.getKey(), count, e);
+            }
+        }
+        return updated[0];
+    }
+
+    /**
+     * Đối soát với DB: ghi hết delta rồi đóng mọi slot, lần claim sau nạp lại số lượt từ DB
+     * (bắt kịp các thay đổi không đi qua bộ đếm).
+     */
+    public void resync() {
+        flush();
+        for (String promotionId : slots.keySet()) {
+            withLock(promotionId, () -> {
+                Slot slot = slots.remove(promotionId);
+                if (slot == null) return;
+                int delta = slot.close();
+                if (delta != 0) {
+                    writeTemp(promotionId, delta);
+                }
+            });
+        }
+    }
+
+    private void addNow(String promotionId, int count) {
+        while (true) {
+            Slot slot = slotFor(promotionId);
+            if (slot.unlimited) return;
+            if (slot.tryAdd(count) != Slot.CLOSED_RESULT) return;
+            Thread.onSpinWait();
+        }
+    }
+
+    private boolean writeTemp(String promotionId, int delta) {
+        try {
+            promotionRepository.addTempUsageLimit(promotionId, delta);
+            return true;
+        } catch (RuntimeException e) {
+            unflushedTemp.computeIfAbsent(promotionId, k -> new AtomicInteger()).addAndGet(delta);
+            log.warn("Failed to apply temp_usage_limit delta {} to promotion {}", delta, promotionId, e);
+            return false;
+        }
+    }
+
+    // đường nhanh không khóa; slot chưa có thì nạp từ DB dưới khóa của promotion
+    private Slot slotFor(String promotionId) {
+        Slot slot = slots.get(promotionId);
+        if (slot != null) {
+            return slot;
+        }
+        ReentrantLock lock = locks.computeIfAbsent(promotionId, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            slot = slots.get(promotionId);
+            if (slot == null) {
+                slot = load(promotionId);
+                slots.put(promotionId, slot);
+            }
+            return slot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void withLock(String promotionId, Runnable action) {
+        ReentrantLock lock = locks.computeIfAbsent(promotionId, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Slot load(String promotionId) {
+        Integer remaining = promotionRepository.findTempUsageLimitById(promotionId);
+        if (remaining == null) {
+            return new Slot(stripes, 0, true);
+        }
+        AtomicInteger unflushed = unflushedTemp.get(promotionId);
+        return new Slot(stripes, remaining + (unflushed != null ? unflushed.get() : 0), false);
+    }
+
+    static final class Slot {
+        static final int OK = 1;
+        static final int EXHAUSTED = 0;
+        static final int CLOSED_RESULT = -1;
+
+        final AtomicLongArray cells;
+        final int stripes;
+        final boolean unlimited;
+
+        Slot(int stripes, int remaining, boolean unlimited) {
+            this.stripes = stripes;
+            this.unlimited = unlimited;
+            this.cells = new AtomicLongArray(stripes * PAD);
+            int base = Math.max(remaining, 0) / stripes;
+            int extra = Math.max(remaining, 0) % stripes;
+            for (int i = 0; i < stripes; i++) {
+                cells.set(i * PAD, pack(base + (i < extra ? 1 : 0), 0));
+            }
+        }
+
+        // delta < 0: giữ lượt (thử lần lượt các stripe), delta > 0: trả lượt vào stripe của thread
+        int tryAdd(int delta) {
+            int start = (int) (Thread.currentThread().threadId() % stripes);
+            int attempts = delta < 0 ? stripes : 1;
+            for (int k = 0; k < attempts; k++) {
+                int index = ((start + k) % stripes) * PAD;
+                while (true) {
+                    long word = cells.get(index);
+                    int remaining = remaining(word);
+                    if (remaining == CLOSED) {
+                        return CLOSED_RESULT;
+                    }
+                    if (remaining + delta < 0) {
+                        break;
+                    }
+                    if (cells.compareAndSet(index, word, pack(remaining + delta, pending(word) + delta))) {
+                        return OK;
+                    }
+                }
+            }
+            return EXHAUSTED;
+        }
+
+        // lấy delta chưa ghi của mọi stripe, giữ nguyên số lượt còn lại
+        int drain() {
+            int total = 0;
+            for (int i = 0; i < stripes; i++) {
+                int index = i * PAD;
+                while (true) {
+                    long word = cells.get(index);
+                    if (remaining(word) == CLOSED) break;
+                    if (pending(word) == 0) break;
+                    if (cells.compareAndSet(index, word, pack(remaining(word), 0))) {
+                        total += pending(word);
+                        break;
+                    }
+                }
+            }
+            return total;
+        }
+
+        // đóng slot, trả về delta chưa ghi; thread nào đang dùng slot này sẽ thử lại với slot mới
+        int close() {
+            int total = 0;
+            for (int i = 0; i < stripes; i++) {
+                long word = cells.getAndSet(i * PAD, pack(CLOSED, 0));
+                if (remaining(word) != CLOSED) {
+                    total += pending(word);
+                }
+            }
+            return total;
+        }
+
+        static long pack(int remaining, int pending) {
+            return ((long) remaining << 32) | (pending & 0xFFFFFFFFL);
+        }
+
+        static int remaining(long word) {
+            return (int) (word >> 32);
+        }
+
+        static int pending(long word) {
+            return (int) word;
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.project.stationery_be_server.configuration;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.stationery_be_server.security.TokenRevocationList;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.BadJwtException;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
@@ -11,25 +15,53 @@ import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.spec.SecretKeySpec;
-import java.util.Objects;
+import java.time.Duration;
+import java.time.Instant;
 
-@FieldDefaults(level = AccessLevel.PRIVATE)
+/**
+ * Giải mã JWT cho resource server. Token đã kiểm tra chữ ký được nhớ (kèm claims đã parse) trong cache có giới hạn,
+ * request sau với cùng token chỉ còn tra cache + kiểm tra hạn + Bloom filter thu hồi.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @Component
 public class CustomJwtDecoder implements JwtDecoder {
-    @Value("${jwt.signerKey}")
-    String signerKey;
+    NimbusJwtDecoder nimbusJwtDecoder;
+    TokenRevocationList tokenRevocationList;
+    Cache<String, Jwt> verifiedTokens;
 
-    NimbusJwtDecoder nimbusJwtDecoder = null;
+    public CustomJwtDecoder(@Value("${jwt.signerKey}") String signerKey,
+                            TokenRevocationList tokenRevocationList,
+                            @Value("${jwt.verified-cache.max-size:10000}") long maxSize,
+                            @Value("${jwt.verified-cache.ttl-seconds:300}") long ttlSeconds) {
+        // dựng một lần trong constructor: bản cũ khởi tạo lười không đồng bộ, nhiều request đầu cùng dựng decoder
+        SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS256");
+        this.nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
+                .macAlgorithm(MacAlgorithm.HS256)
+                .build();
+        this.tokenRevocationList = tokenRevocationList;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
 
     @Override
     public Jwt decode(String token) throws JwtException {
-
-        if (Objects.isNull(nimbusJwtDecoder)) {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS256");
-            nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
-                    .macAlgorithm(MacAlgorithm.HS256)
-                    .build();
+        Jwt jwt = verifiedTokens.getIfPresent(token);
+        if (jwt == null || isExpired(jwt)) {
+            // kiểm tra chữ ký + exp/nbf; token hết hạn ném lỗi tại đây
+            jwt = nimbusJwtDecoder.decode(token);
+            verifiedTokens.put(token, jwt);
+        }
+        // không cache kết quả thu hồi: logout có hiệu lực ngay cả với token đang nằm trong cache
+        if (tokenRevocationList.isRevoked(jwt.getId())) {
+            verifiedTokens.invalidate(token);
+            throw new BadJwtException("Token has been revoked");
         }
-        return nimbusJwtDecoder.decode(token);
+        return jwt;
+    }
+
+    private static boolean isExpired(Jwt jwt) {
+        return jwt.getExpiresAt() != null && !jwt.getExpiresAt().isAfter(Instant.now());
     }
 }
@@ -49,7 +49,7 @@ public class OAuth2SuccessHandler implements AuthenticationSuccessHandler {
                 .orElseGet(() -> userService.createUserFromGoogle(email, name, avatar));
 
         // Tạo JWT token
-        String token = jwtUtils.generateToken(userResponse.getUserId());
+        String token = jwtUtils.generateToken(userResponse.getUserId(), userResponse.getRole());
         if (token == null || token.isEmpty()) {
             throw new IllegalStateException("Failed to generate JWT token");
         }
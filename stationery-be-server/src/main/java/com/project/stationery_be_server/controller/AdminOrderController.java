@@ -1,6 +1,7 @@
 package com.project.stationery_be_server.controller;
 
 import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.Scheduled.OrderCleanupService;
 import com.project.stationery_be_server.dto.request.UpdateStatusRequest;
 import com.project.stationery_be_server.dto.response.ApiResponse;
 import com.project.stationery_be_server.dto.response.PurchaseOrderResponse;
@@ -26,12 +27,14 @@ public class AdminOrderController {
     private final PurchaseOrderService purchaseOrderService;
     private final UserRepository userRepository;
     private final UserService userService;
+    private final OrderCleanupService orderCleanupService;
 
     public AdminOrderController(PurchaseOrderService purchaseOrderService, UserRepository userRepository,
-                                UserService userService) {
+                                UserService userService, OrderCleanupService orderCleanupService) {
         this.purchaseOrderService = purchaseOrderService;
         this.userRepository = userRepository;
         this.userService = userService;
+        this.orderCleanupService = orderCleanupService;
     }
 
     @GetMapping("/pending")
@@ -48,7 +51,8 @@ public class AdminOrderController {
             throw new AppException(NotExistedErrorCode.USER_NOT_ADMIN);
         }
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+        // thêm purchaseOrderId để thứ tự ổn định khi nhiều đơn trùng createdAt, trang sau không lặp/sót đơn
+        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt", "purchaseOrderId"));
         Page<PurchaseOrderResponse> orders = purchaseOrderService.getAllPendingOrders(roleName, pageable);
         String message = orders.isEmpty()
                 ? "Không có đơn hàng đang chờ xử lý"
@@ -75,7 +79,8 @@ public class AdminOrderController {
             throw new AppException(NotExistedErrorCode.USER_NOT_ADMIN);
         }
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+        // thêm purchaseOrderId để thứ tự ổn định khi nhiều đơn trùng createdAt, trang sau không lặp/sót đơn
+        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt", "purchaseOrderId"));
         Page<PurchaseOrderResponse> orders = purchaseOrderService.getAllNonPendingOrders(roleName, status, pageable);
         String message = orders.isEmpty()
                 ? "Không có đơn hàng đã xử lý"
@@ -124,4 +129,21 @@ public class AdminOrderController {
                 .message("Cập nhật trạng thái đơn hàng thành công")
                 .build();
     }
-}
\ No newline at end of file
+
+    @GetMapping("/order-cleanup/last-run")
+    public ApiResponse<OrderCleanupService.RunStats> getLastOrderCleanupRun() {
+        String authUserId = SecurityContextHolder.getContext().getAuthentication().getName();
+        if (!userRepository.existsById(authUserId)) {
+            throw new AppException(NotExistedErrorCode.USER_NOT_EXISTED);
+        }
+        UserResponse user = userService.getUserInfo();
+        if (!user.getRole().getRoleId().equals("111")) {
+            throw new AppException(NotExistedErrorCode.USER_NOT_ADMIN);
+        }
+
+        return ApiResponse.<OrderCleanupService.RunStats>builder()
+                .code(200)
+                .result(orderCleanupService.getLastRun())
+                .build();
+    }
+}
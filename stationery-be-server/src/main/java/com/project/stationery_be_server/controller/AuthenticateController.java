@@ -11,9 +11,7 @@ import com.project.stationery_be_server.dto.response.ApiResponse;
 import com.project.stationery_be_server.dto.response.LoginGoogleResponse;
 import com.project.stationery_be_server.dto.response.LoginResponse;
 import com.project.stationery_be_server.dto.response.UserResponse;
-import com.project.stationery_be_server.entity.InvalidatedToken;
 import com.project.stationery_be_server.mapper.UserMapper;
-import com.project.stationery_be_server.repository.InvalidatedTokenRepository;
 import com.project.stationery_be_server.repository.UserRepository;
 import com.project.stationery_be_server.service.AuthenticateService;
 import com.project.stationery_be_server.service.UserService;
@@ -25,7 +23,6 @@ import org.springframework.security.oauth2.client.authentication.OAuth2Authentic
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.Map;
 
@@ -35,7 +32,6 @@ public class AuthenticateController {
     private final AuthenticateService authenticateService;
     private final UserRepository userRepository;
     private final UserService userService;
-    private final InvalidatedTokenRepository invalidatedTokenRepository;
     private final UserMapper userMapper;
     private final JwtUtils jwtUtils;
     private final String googleClientId;
@@ -44,14 +40,12 @@ public class AuthenticateController {
             AuthenticateService authenticateService,
             UserRepository userRepository,
             UserService userService,
-            InvalidatedTokenRepository invalidatedTokenRepository,
             UserMapper userMapper,
             JwtUtils jwtUtils,
             @Value("${google.client.id}") String googleClientId) {
         this.authenticateService = authenticateService;
         this.userRepository = userRepository;
         this.userService = userService;
-        this.invalidatedTokenRepository = invalidatedTokenRepository;
         this.userMapper = userMapper;
         this.jwtUtils = jwtUtils;
         this.googleClientId = googleClientId;
@@ -103,7 +97,7 @@ public class AuthenticateController {
                     .orElseGet(() -> userService.createUserFromGoogle(email, name != null ? name : "Unknown", avatar != null ? avatar : ""));
 
             // Tạo JWT token
-            String token = jwtUtils.generateToken(userResponse.getUserId());
+            String token = jwtUtils.generateToken(userResponse.getUserId(), userResponse.getRole());
             if (token == null || token.isEmpty()) {
                 throw new IllegalStateException("Failed to generate JWT token");
             }
@@ -149,7 +143,7 @@ public class AuthenticateController {
                 .orElseGet(() -> userService.createUserFromGoogle(email, name, avatar));
 
         // Tạo JWT token
-        String token = jwtUtils.generateToken(userResponse.getUserId());
+        String token = jwtUtils.generateToken(userResponse.getUserId(), userResponse.getRole());
         if (token == null || token.isEmpty()) {
             throw new IllegalStateException("Failed to generate JWT token");
         }
@@ -191,15 +185,14 @@ public class AuthenticateController {
         if (token.startsWith("Bearer ")) {
             token = token.substring(7);
         }
-        if (invalidatedTokenRepository.existsById(token)) {
+        // Thu hồi theo jti, giữ tới khi token hết hạn (sau đó bị xóa định kỳ)
+        if (!jwtUtils.revokeToken(token)) {
             return ResponseEntity.badRequest().body(
                     ApiResponse.<String>builder()
                             .message("Token already blacklisted")
                             .build()
             );
         }
-        InvalidatedToken invalidatedToken = new InvalidatedToken(token, LocalDateTime.now());
-        invalidatedTokenRepository.save(invalidatedToken);
         return ResponseEntity.ok(
                 ApiResponse.<String>builder()
                         .message("Logout successful")
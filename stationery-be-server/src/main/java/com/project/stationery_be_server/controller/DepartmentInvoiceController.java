@@ -3,6 +3,7 @@ package com.project.stationery_be_server.controller;
 import com.project.stationery_be_server.dto.response.ApiResponse;
 import com.project.stationery_be_server.dto.response.InvoiceResponse;
 import com.project.stationery_be_server.dto.response.MonthlyInvoiceSummaryResponse;
+import com.project.stationery_be_server.dto.response.PdfJobResponse;
 import com.project.stationery_be_server.dto.response.momo.MomoResponse;
 import com.project.stationery_be_server.service.DepartmentInvoiceService;
 import lombok.RequiredArgsConstructor;
@@ -47,13 +48,21 @@ public class DepartmentInvoiceController {
     }
 
     @PostMapping("/generate-current-invoice")
-    public ApiResponse<String> generateCurrentInvoice() {
+    public ApiResponse<PdfJobResponse> generateCurrentInvoice() {
         String userId = SecurityContextHolder.getContext().getAuthentication().getName();
-        String pdfUrl = departmentInvoiceService.generateCurrentInvoicePdf(userId);
-        return ApiResponse.<String>builder()
+        PdfJobResponse job = departmentInvoiceService.generateCurrentInvoicePdf(userId);
+        return ApiResponse.<PdfJobResponse>builder()
                 .code(200)
-                .message("Current period invoice PDF generated and uploaded successfully")
-                .result(pdfUrl)
+                .message("Current period invoice PDF generation queued")
+                .result(job)
+                .build();
+    }
+
+    @GetMapping("/pdf-jobs/{jobId}")
+    public ApiResponse<PdfJobResponse> getPdfJob(@PathVariable String jobId) {
+        String userId = SecurityContextHolder.getContext().getAuthentication().getName();
+        return ApiResponse.<PdfJobResponse>builder()
+                .result(departmentInvoiceService.getPdfJob(userId, jobId))
                 .build();
     }
 
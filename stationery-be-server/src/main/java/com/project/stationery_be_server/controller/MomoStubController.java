@@ -0,0 +1,71 @@
+package com.project.stationery_be_server.controller;
+
+import com.project.stationery_be_server.dto.request.MomoRequest;
+import com.project.stationery_be_server.dto.response.momo.MomoResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Cổng MoMo giả cho test tích hợp / load test, chỉ bật với profile momo-stub
+@RestController
+@Profile("momo-stub")
+@RequestMapping("/momo-stub")
+public class MomoStubController {
+    private final long latencyMs;
+    private final double failureRate;
+    private final int queryResultCode;
+
+    public MomoStubController(@Value("${momo-stub.latency-ms:100}") long latencyMs,
+                              @Value("${momo-stub.failure-rate:0.0}") double failureRate,
+                              @Value("${momo-stub.query-result-code:0}") int queryResultCode) {
+        this.latencyMs = latencyMs;
+        this.failureRate = failureRate;
+        this.queryResultCode = queryResultCode;
+    }
+
+    @PostMapping("/create")
+    public Mono<ResponseEntity<MomoResponse>> create(@RequestBody MomoRequest request) {
+        String payUrl = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/momo-stub/pay/{orderId}")
+                .buildAndExpand(request.getOrderId())
+                .toUriString();
+        return respond(MomoResponse.builder()
+                .partnerCode(request.getPartnerCode())
+                .requestId(request.getRequestId())
+                .orderId(request.getOrderId())
+                .amount(request.getAmount())
+                .responseTime(System.currentTimeMillis())
+                .message("Thành công.")
+                .resultCode(0)
+                .payUrl(payUrl)
+                .build());
+    }
+
+    @PostMapping("/query")
+    public Mono<ResponseEntity<MomoResponse>> query(@RequestBody MomoRequest request) {
+        return respond(MomoResponse.builder()
+                .partnerCode(request.getPartnerCode())
+                .requestId(request.getRequestId())
+                .orderId(request.getOrderId())
+                .responseTime(System.currentTimeMillis())
+                .message(queryResultCode == 0 ? "Thành công." : "Giao dịch chưa thành công.")
+                .resultCode(queryResultCode)
+                .build());
+    }
+
+    // Mono.delay để độ trễ giả lập không chiếm thread servlet khi load test
+    private Mono<ResponseEntity<MomoResponse>> respond(MomoResponse body) {
+        boolean fail = failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate;
+        ResponseEntity<MomoResponse> response = fail
+                ? ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build()
+                : ResponseEntity.ok(body);
+        return Mono.delay(Duration.ofMillis(latencyMs)).thenReturn(response);
+    }
+}
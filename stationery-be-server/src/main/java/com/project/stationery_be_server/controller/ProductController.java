@@ -3,7 +3,11 @@ package com.project.stationery_be_server.controller;
 import com.project.stationery_be_server.dto.request.DeleteProductRequest;
 import com.project.stationery_be_server.dto.request.ProductFilterRequest;
 import com.project.stationery_be_server.dto.request.UpdateProductRequest;
+import com.project.stationery_be_server.cache.ProductDetailCache;
+import com.project.stationery_be_server.asset.AssetCleanupService;
 import com.project.stationery_be_server.dto.response.ApiResponse;
+import com.project.stationery_be_server.dto.response.AssetCleanupStatsResponse;
+import com.project.stationery_be_server.dto.response.CacheStatsResponse;
 import com.project.stationery_be_server.dto.response.ColorSizeSlugResponse;
 import com.project.stationery_be_server.dto.response.product.CreateProductRequest;
 import com.project.stationery_be_server.dto.response.product.ProductDetailResponse;
@@ -34,6 +38,8 @@ import java.util.Map;
 public class ProductController {
     ProductService productService;
     SearchHistoryService searchHistoryService;
+    ProductDetailCache productDetailCache;
+    AssetCleanupService assetCleanupService;
 
     @GetMapping
     public ApiResponse<Page<ProductResponse>> getAllProductsWithDefaultPD(@RequestParam(defaultValue = "0") int page,
@@ -211,6 +217,20 @@ public class ProductController {
                 .result(productService.updateHiddenProduct(productId, isHidden))
                 .build();
     }
+    @PreAuthorize("hasAuthority('admin')")
+    @GetMapping("/admin/cache-stats")
+    public ApiResponse<List<CacheStatsResponse>> getProductCacheStats() {
+        return ApiResponse.<List<CacheStatsResponse>>builder()
+                .result(productDetailCache.stats())
+                .build();
+    }
+    @PreAuthorize("hasAuthority('admin')")
+    @GetMapping("/admin/asset-cleanup-stats")
+    public ApiResponse<AssetCleanupStatsResponse> getAssetCleanupStats() {
+        return ApiResponse.<AssetCleanupStatsResponse>builder()
+                .result(assetCleanupService.stats())
+                .build();
+    }
     @GetMapping("/get-all-products-for-chatbot")
     public ApiResponse<List<ProductResponse>> getAllProductsForChatbot() {
         return ApiResponse.<List<ProductResponse>>builder()
@@ -4,12 +4,15 @@ import com.project.stationery_be_server.dto.request.DeletePromotionRequest;
 import com.project.stationery_be_server.dto.request.PromotionRequest;
 import com.project.stationery_be_server.dto.request.UpdatePromotionRequest;
 import com.project.stationery_be_server.dto.response.ApiResponse;
+import com.project.stationery_be_server.dto.response.promotion.PromotionAssignmentResponse;
+import com.project.stationery_be_server.dto.response.promotion.PromotionFanOutResponse;
 import com.project.stationery_be_server.dto.response.promotion.PromotionResponse;
 import com.project.stationery_be_server.entity.ProductPromotion;
 import com.project.stationery_be_server.entity.Promotion;
 import com.project.stationery_be_server.entity.UserPromotion;
 import com.project.stationery_be_server.dto.response.ColorResponse;
 import com.project.stationery_be_server.entity.ProductPromotion;
+import com.project.stationery_be_server.service.PromotionFanOutService;
 import com.project.stationery_be_server.service.PromotionService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -33,6 +36,7 @@ import org.springframework.web.bind.annotation.*;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class PromotionController {
     final PromotionService promotionService;
+    final PromotionFanOutService promotionFanOutService;
 
     @DeleteMapping
     public ApiResponse<String> deletePromotion(@RequestBody DeletePromotionRequest request){
@@ -43,10 +47,10 @@ public class PromotionController {
     }
 
     @PostMapping()
-    public ApiResponse<String> createPromotion(@RequestBody PromotionRequest request) {
-        promotionService.createPromotion(request);
-        return ApiResponse.<String>builder()
-                .result("Promotion created successfully" )
+    public ApiResponse<PromotionAssignmentResponse> createPromotion(@RequestBody PromotionRequest request) {
+        return ApiResponse.<PromotionAssignmentResponse>builder()
+                .message("Promotion created successfully")
+                .result(promotionService.createPromotion(request))
                 .build();
     }
     @PutMapping("/update")
@@ -94,6 +98,14 @@ public class PromotionController {
                 .result(pagePP)
                 .build();
     }
+    @PreAuthorize("hasAuthority('admin')")
+    @GetMapping("/{promotionId}/fan-out")
+    public ApiResponse<PromotionFanOutResponse> getFanOutProgress(@PathVariable String promotionId) {
+        return ApiResponse.<PromotionFanOutResponse>builder()
+                .result(promotionFanOutService.getProgress(promotionId))
+                .build();
+    }
+
     @GetMapping("/{promotionId}")
     public ApiResponse<Promotion> getPromotion(@PathVariable String promotionId) {
         Promotion promo = promotionService.getPromotionById(promotionId);
@@ -5,6 +5,7 @@ import com.project.stationery_be_server.dto.request.CancelOrderRequest;
 import com.project.stationery_be_server.dto.request.order.PurchaseOrderRequest;
 import com.project.stationery_be_server.dto.response.ApiResponse;
 import com.project.stationery_be_server.dto.response.momo.MomoResponse;
+import com.project.stationery_be_server.dto.response.PurchaseOrderHistoryResponse;
 import com.project.stationery_be_server.dto.response.PurchaseOrderResponse;
 import com.project.stationery_be_server.dto.response.product.ProductDetailResponse;
 import com.project.stationery_be_server.entity.PurchaseOrder;
@@ -57,14 +58,16 @@ public class PurchaseOrderController {
     }
 
     @GetMapping("/user/orders")
-    public ApiResponse<List<PurchaseOrderResponse>> getUserOrdersByStatus(
-            @RequestParam(defaultValue = "ALL") String status) {
+    public ApiResponse<PurchaseOrderHistoryResponse> getUserOrdersByStatus(
+            @RequestParam(defaultValue = "ALL") String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
         String userId = SecurityContextHolder.getContext().getAuthentication().getName();
-        List<PurchaseOrderResponse> orders = purchaseOrderService.getUserOrdersByStatus(userId, status);
-        String message = orders.isEmpty()
+        PurchaseOrderHistoryResponse orders = purchaseOrderService.getUserOrdersByStatus(userId, status, cursor, size);
+        String message = orders.getOrders().isEmpty()
                 ? "Không tìm thấy đơn hàng với trạng thái " + status.toUpperCase()
                 : "Lấy danh sách đơn hàng với trạng thái " + status.toUpperCase() + " thành công";
-        return ApiResponse.<List<PurchaseOrderResponse>>builder()
+        return ApiResponse.<PurchaseOrderHistoryResponse>builder()
                 .message(message)
                 .result(orders)
                 .build();
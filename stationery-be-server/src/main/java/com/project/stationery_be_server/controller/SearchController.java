@@ -2,11 +2,13 @@ package com.project.stationery_be_server.controller;
 
 import com.project.stationery_be_server.dto.response.ApiResponse;
 import com.project.stationery_be_server.dto.response.CategoryResponse;
+import com.project.stationery_be_server.dto.response.SuggestionResponse;
 import com.project.stationery_be_server.service.SearchHistoryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -38,4 +40,12 @@ public class SearchController {
                 .result(searchHistoryService.getTop24HotCategories())
                 .build();
     }
+
+    @GetMapping("/suggest")
+    public ApiResponse<List<SuggestionResponse>> suggest(@RequestParam String prefix,
+                                                         @RequestParam(defaultValue = "8") int limit) {
+        return ApiResponse.<List<SuggestionResponse>>builder()
+                .result(searchHistoryService.suggest(prefix, limit))
+                .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.project.stationery_be_server.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AssetCleanupStatsResponse {
+    long pending;
+    long abandoned;
+    long deleted;
+    long failedAttempts;
+    long deleteCalls;
+    LocalDateTime lastFailureAt;
+    String lastError;
+}
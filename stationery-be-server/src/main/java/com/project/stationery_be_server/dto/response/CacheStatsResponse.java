@@ -0,0 +1,17 @@
+package com.project.stationery_be_server.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CacheStatsResponse {
+    String name;
+    long size;
+    long hitCount;
+    long missCount;
+    long evictionCount;
+}
@@ -0,0 +1,24 @@
+package com.project.stationery_be_server.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PdfJobResponse {
+    String jobId;
+    String type;
+    String status; // PENDING, RUNNING, COMPLETED, FAILED
+    String pdfUrl;
+    boolean reused; // nội dung không đổi so với lần render trước, dùng lại file cũ
+    LocalDateTime submittedAt;
+    LocalDateTime startedAt;
+    LocalDateTime finishedAt;
+    Integer errorCode; // mã lỗi (như ApiResponse.code) khi FAILED
+    String error;
+}
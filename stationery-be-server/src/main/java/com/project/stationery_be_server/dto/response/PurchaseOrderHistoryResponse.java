@@ -0,0 +1,19 @@
+package com.project.stationery_be_server.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PurchaseOrderHistoryResponse {
+    private List<PurchaseOrderResponse> orders;
+    // truyền lại qua tham số cursor để lấy trang kế tiếp, null khi đã hết
+    private String nextCursor;
+    private boolean hasMore;
+}
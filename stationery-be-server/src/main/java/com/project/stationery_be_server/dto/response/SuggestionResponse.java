@@ -0,0 +1,17 @@
+package com.project.stationery_be_server.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SuggestionResponse {
+    private String text;
+    // PRODUCT (kèm slug để mở trang sản phẩm) hoặc KEYWORD (từ khóa tìm nhiều)
+    private String type;
+    private String slug;
+}
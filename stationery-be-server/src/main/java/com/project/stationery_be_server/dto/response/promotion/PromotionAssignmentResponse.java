@@ -0,0 +1,19 @@
+package com.project.stationery_be_server.dto.response.promotion;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PromotionAssignmentResponse {
+    String promotionId;
+    String voucherType;
+    long requested;
+    long assigned;
+    long alreadyAssigned;
+    // ALL_USERS gán nền, tiến độ xem ở GET /promotions/{promotionId}/fan-out
+    boolean fanOutStarted;
+}
@@ -0,0 +1,24 @@
+package com.project.stationery_be_server.dto.response.promotion;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PromotionFanOutResponse {
+    String promotionId;
+    String status; // PENDING, RUNNING, COMPLETED, FAILED
+    long totalUsers;
+    long usersAssigned;
+    long pushQueued;
+    long pushSent;
+    long pushFailed;
+    LocalDateTime startedAt;
+    LocalDateTime finishedAt;
+    String error;
+}
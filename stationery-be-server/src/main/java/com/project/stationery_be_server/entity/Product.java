@@ -41,9 +41,17 @@ public class Product {
     @JsonManagedReference
     private List<Review> reviews;
 
-    @Column(name = "total_rating")
+    // total_rating, rating_count, rating_sum chỉ được ghi bằng UPDATE nguyên tử (ProductRatingRepository),
+    // lưu entity không ghi đè các cột này bằng giá trị cũ
+    @Column(name = "total_rating", updatable = false)
     private Double totalRating;
 
+    @Column(name = "rating_count", insertable = false, updatable = false)
+    private Integer ratingCount;
+
+    @Column(name = "rating_sum", insertable = false, updatable = false)
+    private Long ratingSum;
+
     @Column(name="sold_quantity")
     private Integer soldQuantity;
 
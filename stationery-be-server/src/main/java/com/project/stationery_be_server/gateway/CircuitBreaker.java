@@ -0,0 +1,46 @@
+package com.project.stationery_be_server.gateway;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker tối giản: sau N lỗi liên tiếp thì mở mạch trong một khoảng thời gian,
+ * hết thời gian cho đúng một request thử (half-open); thành công thì đóng mạch lại.
+ */
+public class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // 0 = mạch đóng, khác 0 = thời điểm (ms) được thử lại
+    private final AtomicLong openUntil = new AtomicLong();
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    public boolean tryAcquire() {
+        long until = openUntil.get();
+        if (until == 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        // CAS để chỉ một thread được làm request thử, các thread khác vẫn bị chặn thêm một chu kỳ
+        return now >= until && openUntil.compareAndSet(until, now + openMillis);
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        openUntil.set(0);
+    }
+
+    public void onFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntil.set(System.currentTimeMillis() + openMillis);
+        }
+    }
+
+    public boolean isOpen() {
+        return openUntil.get() != 0;
+    }
+}
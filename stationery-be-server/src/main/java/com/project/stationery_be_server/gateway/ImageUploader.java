@@ -0,0 +1,143 @@
+package com.project.stationery_be_server.gateway;
+
+import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.asset.AssetCleanupService;
+import com.project.stationery_be_server.asset.AssetStorage;
+import com.project.stationery_be_server.exception.AppException;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Upload ảnh lên nơi lưu (Cloudinary) song song trên virtual thread, tối đa max-concurrency request cùng lúc cho cả ứng dụng.
+ * Service gọi uploadAll trước khi mở transaction, chỉ ghi DB khi mọi ảnh đã lên; ghi DB lỗi thì gọi discard
+ * để xóa các ảnh vừa upload (qua AssetCleanupService), không để lại file mồ côi trên Cloudinary.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ImageUploader {
+    AssetStorage assetStorage;
+    AssetCleanupService assetCleanupService;
+    Semaphore permits;
+    ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("image-upload-", 0).factory());
+
+    public ImageUploader(AssetStorage assetStorage,
+                         AssetCleanupService assetCleanupService,
+                         @Value("${upload.max-concurrency:8}") int maxConcurrency) {
+        this.assetStorage = assetStorage;
+        this.assetCleanupService = assetCleanupService;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    public record UploadedImage(String url, String publicId) {
+    }
+
+    // Kết quả cùng thứ tự với files; file null/rỗng cho kết quả null. Một file lỗi thì xóa các ảnh đã lên rồi ném lỗi
+    public List<UploadedImage> uploadAll(List<MultipartFile> files) {
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<UploadedImage>> futures = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            if (file == null || file.isEmpty()) {
+                futures.add(null);
+                continue;
+            }
+            byte[] bytes;
+            try {
+                // đọc trên thread request, MultipartFile có thể bị dọn khi request kết thúc
+                bytes = file.getBytes();
+            } catch (IOException e) {
+                failed.set(true);
+                log.warn("Reading upload {} failed", file.getOriginalFilename(), e);
+                break;
+            }
+            futures.add(executor.submit(() -> upload(bytes, failed)));
+        }
+
+        List<UploadedImage> uploaded = new ArrayList<>(futures.size());
+        boolean interrupted = false;
+        for (Future<UploadedImage> future : futures) {
+            if (future == null) {
+                uploaded.add(null);
+                continue;
+            }
+            try {
+                uploaded.add(future.get());
+            } catch (ExecutionException e) {
+                failed.set(true);
+                uploaded.add(null);
+                log.warn("Uploading image failed", e.getCause());
+            } catch (InterruptedException e) {
+                failed.set(true);
+                interrupted = true;
+                // vẫn chờ các upload đang chạy để biết ảnh nào cần xóa
+                uploaded.add(awaitUninterruptibly(future));
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failed.get()) {
+            discard(uploaded);
+            throw new AppException(NotExistedErrorCode.IMAGE_UPLOAD_FAILED);
+        }
+        return uploaded;
+    }
+
+    // Ảnh đã upload nhưng không được lưu (ghi DB lỗi): chuyển cho AssetCleanupService xóa, có retry
+    public void discard(List<UploadedImage> uploaded) {
+        List<String> publicIds = uploaded.stream()
+                .filter(Objects::nonNull)
+                .map(UploadedImage::publicId)
+                .toList();
+        try {
+            assetCleanupService.scheduleDeletion(publicIds);
+        } catch (RuntimeException e) {
+            // không che lỗi gốc của request
+            log.error("Scheduling deletion of orphaned images {} failed", publicIds, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private UploadedImage upload(byte[] bytes, AtomicBoolean failed) throws Exception {
+        permits.acquire();
+        try {
+            // file khác đã lỗi thì cả lô bị hủy, không upload tiếp phần còn chờ
+            if (failed.get()) return null;
+            return assetStorage.upload(bytes);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static UploadedImage awaitUninterruptibly(Future<UploadedImage> future) {
+        while (true) {
+            try {
+                return future.get();
+            } catch (InterruptedException ignored) {
+                // thử lại, cờ interrupt được đặt lại ở uploadAll
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+}
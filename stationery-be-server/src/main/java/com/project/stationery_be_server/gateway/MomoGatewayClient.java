@@ -0,0 +1,139 @@
+package com.project.stationery_be_server.gateway;
+
+import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.dto.request.MomoRequest;
+import com.project.stationery_be_server.dto.response.momo.MomoResponse;
+import com.project.stationery_be_server.exception.AppException;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * Client gọi cổng MoMo: pool kết nối riêng, timeout connect/read, retry có backoff và circuit breaker.
+ * Trả về Mono; service chỉ block() sau khi transaction DB đã commit, không giữ transaction trong lúc chờ MoMo.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class MomoGatewayClient {
+    ConnectionProvider connectionProvider;
+    WebClient webClient;
+    CircuitBreaker circuitBreaker;
+    String createUrl;
+    String queryUrl;
+    int maxRetries;
+    Duration retryBackoff;
+
+    public MomoGatewayClient(WebClient.Builder webClientBuilder,
+                             @Value("${momo.endpoint}") String createUrl,
+                             @Value("${momo.urlCheckTransaction}") String queryUrl,
+                             @Value("${momo.client.max-connections:50}") int maxConnections,
+                             @Value("${momo.client.pending-acquire-timeout-ms:2000}") long pendingAcquireTimeoutMs,
+                             @Value("${momo.client.connect-timeout-ms:2000}") int connectTimeoutMs,
+                             @Value("${momo.client.read-timeout-ms:5000}") long readTimeoutMs,
+                             @Value("${momo.client.max-retries:2}") int maxRetries,
+                             @Value("${momo.client.retry-backoff-ms:200}") long retryBackoffMs,
+                             @Value("${momo.client.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                             @Value("${momo.client.circuit-breaker.open-ms:30000}") long openMs) {
+        this.connectionProvider = ConnectionProvider.builder("momo")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .evictInBackground(Duration.ofSeconds(60))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs));
+        this.webClient = webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openMs);
+        this.createUrl = createUrl;
+        this.queryUrl = queryUrl;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+    }
+
+    // Tạo giao dịch: chỉ retry khi chắc chắn request chưa tới MoMo (lỗi connect), tránh tạo trùng giao dịch
+    public Mono<MomoResponse> createPayment(MomoRequest request) {
+        return exchange(createUrl, request, MomoGatewayClient::isConnectFailure);
+    }
+
+    // Tra cứu trạng thái là idempotent nên retry mọi lỗi tạm thời
+    public Mono<MomoResponse> queryTransaction(MomoRequest request) {
+        return exchange(queryUrl, request, MomoGatewayClient::isTransient);
+    }
+
+    public boolean isCircuitOpen() {
+        return circuitBreaker.isOpen();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        connectionProvider.dispose();
+    }
+
+    private Mono<MomoResponse> exchange(String url, MomoRequest body, Predicate<Throwable> retryable) {
+        return Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquire()) {
+                return Mono.error(new AppException(NotExistedErrorCode.PAYMENT_GATEWAY_UNAVAILABLE));
+            }
+            return webClient.post()
+                    .uri(url)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(body)
+                    .retrieve()
+                    .bodyToMono(MomoResponse.class)
+                    .retryWhen(Retry.backoff(maxRetries, retryBackoff).filter(retryable))
+                    .doOnSuccess(response -> circuitBreaker.onSuccess())
+                    .onErrorMap(error -> onFailure(url, error));
+        });
+    }
+
+    private Throwable onFailure(String url, Throwable error) {
+        Throwable cause = Exceptions.isRetryExhausted(error) ? error.getCause() : error;
+        if (!isTransient(cause)) {
+            // MoMo vẫn trả lời (vd: 4xx) nên không tính là cổng lỗi
+            circuitBreaker.onSuccess();
+            return cause;
+        }
+        circuitBreaker.onFailure();
+        log.warn("MoMo call to {} failed: {}", url, cause.toString());
+        return new AppException(NotExistedErrorCode.PAYMENT_GATEWAY_UNAVAILABLE);
+    }
+
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException;
+    }
+
+    private static boolean isConnectFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,133 @@
+package com.project.stationery_be_server.gateway;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * Ký HMAC-SHA256 cho request MoMo, dùng chung cho đặt hàng và hóa đơn phòng ban.
+ * Mỗi thread giữ sẵn một Mac đã init key + buffer để ghép chuỗi, phần đầu cố định của chuỗi ký
+ * ("accessKey=...&amount=") được mã hóa UTF-8 một lần lúc khởi tạo.
+ */
+@Component
+public class MomoSigner {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final byte[] createPrefix;
+    private final byte[] queryPrefix;
+    private final String ipnUrl;
+    private final String partnerCode;
+    private final String redirectUrl;
+    private final String requestType;
+    private final ThreadLocal<Signer> signers;
+
+    public MomoSigner(@Value("${momo.accessKey}") String accessKey,
+                      @Value("${momo.secretKey}") String secretKey,
+                      @Value("${momo.partnerCode}") String partnerCode,
+                      @Value("${momo.ipnUrl}") String ipnUrl,
+                      @Value("${momo.redirectUrl}") String redirectUrl,
+                      @Value("${momo.requestType}") String requestType) {
+        this.createPrefix = ("accessKey=" + accessKey + "&amount=").getBytes(StandardCharsets.UTF_8);
+        this.queryPrefix = ("accessKey=" + accessKey + "&orderId=").getBytes(StandardCharsets.UTF_8);
+        this.ipnUrl = ipnUrl;
+        this.partnerCode = partnerCode;
+        this.redirectUrl = redirectUrl;
+        this.requestType = requestType;
+        SecretKeySpec key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        // thử init một lần để lỗi cấu hình lộ ra lúc khởi động thay vì lúc thanh toán
+        newMac(key);
+        this.signers = ThreadLocal.withInitial(() -> new Signer(newMac(key)));
+    }
+
+    // Chữ ký request tạo giao dịch (captureWallet...), các trường theo thứ tự alphabet như MoMo yêu cầu
+    public String signCreatePayment(long amount, String extraData, String orderId, String orderInfo, String requestId) {
+        Signer signer = signers.get();
+        StringBuilder sb = signer.reset();
+        sb.append(amount)
+                .append("&extraData=").append(extraData)
+                .append("&ipnUrl=").append(ipnUrl)
+                .append("&orderId=").append(orderId)
+                .append("&orderInfo=").append(orderInfo)
+                .append("&partnerCode=").append(partnerCode)
+                .append("&redirectUrl=").append(redirectUrl)
+                .append("&requestId=").append(requestId)
+                .append("&requestType=").append(requestType);
+        return signer.sign(createPrefix);
+    }
+
+    // Chữ ký request tra cứu trạng thái giao dịch
+    public String signQuery(String orderId, String requestId) {
+        Signer signer = signers.get();
+        signer.reset()
+                .append(orderId)
+                .append("&partnerCode=").append(partnerCode)
+                .append("&requestId=").append(requestId);
+        return signer.sign(queryPrefix);
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize HmacSHA256 for MoMo signing", e);
+        }
+    }
+
+    private static final class Signer {
+        final Mac mac;
+        final StringBuilder sb = new StringBuilder(512);
+        // thay ký tự lỗi giống String.getBytes để chữ ký khớp với cách ký cũ
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        Signer(Mac mac) {
+            this.mac = mac;
+        }
+
+        StringBuilder reset() {
+            sb.setLength(0);
+            return sb;
+        }
+
+        // mã hóa phần còn lại của chuỗi thẳng vào buffer của thread (không tạo String/byte[] trung gian)
+        String sign(byte[] prefix) {
+            mac.reset();
+            mac.update(prefix);
+            CharBuffer chars = CharBuffer.wrap(sb);
+            encoder.reset();
+            while (true) {
+                buffer.clear();
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isUnderflow()) {
+                    result = encoder.flush(buffer);
+                }
+                buffer.flip();
+                mac.update(buffer);
+                if (result.isUnderflow()) {
+                    break;
+                }
+                // overflow: phần đã mã hóa đã đưa vào mac, lặp tiếp với phần còn lại
+            }
+            byte[] digest = mac.doFinal();
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        }
+    }
+}
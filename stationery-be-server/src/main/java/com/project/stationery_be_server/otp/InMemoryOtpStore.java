@@ -0,0 +1,143 @@
+package com.project.stationery_be_server.otp;
+
+import com.project.stationery_be_server.dto.request.RegisterRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OtpStore trong bộ nhớ (mặc định, một instance). ConcurrentHashMap cho truy cập đồng thời; hạn của mỗi entry
+ * được xếp vào timing wheel, một thread nền quay bánh xe mỗi tick và xóa entry tới hạn, không quét cả map.
+ * Mỗi loại giữ tối đa max-entries, vượt quá thì bỏ entry sắp hết hạn nhất.
+ */
+@Component
+@ConditionalOnProperty(name = "otp.store.type", havingValue = "memory", matchIfMissing = true)
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class InMemoryOtpStore implements OtpStore {
+    static final int WHEEL_SIZE = 512;
+
+    ExpiringMap<OtpEntry> otps;
+    ExpiringMap<RegisterRequest> pendingRegistrations;
+    ScheduledExecutorService ticker;
+    long tickMs;
+
+    public InMemoryOtpStore(@Value("${otp.store.otp-ttl-seconds:600}") long otpTtlSeconds,
+                            @Value("${otp.store.registration-ttl-seconds:1800}") long registrationTtlSeconds,
+                            @Value("${otp.store.max-entries:10000}") int maxEntries,
+                            @Value("${otp.store.tick-ms:1000}") long tickMs) {
+        this.otps = new ExpiringMap<>(TimeUnit.SECONDS.toMillis(otpTtlSeconds), maxEntries, tickMs);
+        this.pendingRegistrations = new ExpiringMap<>(TimeUnit.SECONDS.toMillis(registrationTtlSeconds), maxEntries, tickMs);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("otp-store-expiry").daemon(true).factory());
+        this.tickMs = tickMs;
+    }
+
+    @PostConstruct
+    void start() {
+        ticker.scheduleAtFixedRate(this::expire, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void putOtp(String email, OtpEntry otp) {
+        otps.put(email, otp);
+    }
+
+    @Override
+    public Optional<OtpEntry> getOtp(String email) {
+        return otps.get(email);
+    }
+
+    @Override
+    public void removeOtp(String email) {
+        otps.remove(email);
+    }
+
+    @Override
+    public void putPendingRegistration(RegisterRequest request) {
+        pendingRegistrations.put(request.getEmail(), request);
+    }
+
+    @Override
+    public Optional<RegisterRequest> getPendingRegistration(String email) {
+        return pendingRegistrations.get(email);
+    }
+
+    @Override
+    public void removePendingRegistration(String email) {
+        pendingRegistrations.remove(email);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    private void expire() {
+        long now = System.currentTimeMillis();
+        otps.expire(now);
+        pendingRegistrations.expire(now);
+    }
+
+    static final class ExpiringMap<V> {
+        final ConcurrentHashMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+        final TimingWheel<Expiry<V>> wheel;
+        final long ttlMs;
+        final int maxEntries;
+
+        ExpiringMap(long ttlMs, int maxEntries, long tickMs) {
+            this.ttlMs = ttlMs;
+            this.maxEntries = maxEntries;
+            this.wheel = new TimingWheel<>(tickMs, WHEEL_SIZE, System.currentTimeMillis());
+        }
+
+        void put(String key, V value) {
+            Entry<V> entry = new Entry<>(value, System.currentTimeMillis() + ttlMs);
+            entries.put(key, entry);
+            wheel.schedule(new Expiry<>(key, entry), entry.expiresAt());
+            while (entries.size() > maxEntries) {
+                List<Expiry<V>> earliest = wheel.pollEarliest(entries.size() - maxEntries);
+                if (earliest.isEmpty()) break;
+                earliest.forEach(this::removeIfCurrent);
+            }
+        }
+
+        // Kiểm tra hạn khi đọc chỉ là một phép so sánh, phòng entry tới hạn mà tick chưa chạy tới
+        Optional<V> get(String key) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null || entry.expiresAt() <= System.currentTimeMillis()) {
+                return Optional.empty();
+            }
+            return Optional.of(entry.value());
+        }
+
+        void remove(String key) {
+            entries.remove(key);
+        }
+
+        void expire(long now) {
+            wheel.advance(now).forEach(this::removeIfCurrent);
+        }
+
+        // Entry đã bị ghi đè hoặc xóa thì hạn cũ trong wheel không còn tác dụng
+        private void removeIfCurrent(Expiry<V> expiry) {
+            entries.remove(expiry.key(), expiry.entry());
+        }
+    }
+
+    record Entry<V>(V value, long expiresAt) {
+    }
+
+    record Expiry<V>(String key, Entry<V> entry) {
+    }
+}
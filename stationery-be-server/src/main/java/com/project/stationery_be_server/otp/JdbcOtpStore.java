@@ -0,0 +1,84 @@
+package com.project.stationery_be_server.otp;
+
+import com.project.stationery_be_server.dto.request.RegisterRequest;
+import com.project.stationery_be_server.repository.OtpStoreRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * OtpStore dùng chung giữa các instance qua DB: OTP gửi ở node này xác nhận được ở node khác.
+ * Hạn nằm trong cột expires_at (đọc tự lọc), dòng hết hạn được xóa định kỳ.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "otp.store.type", havingValue = "jdbc")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class JdbcOtpStore implements OtpStore {
+    OtpStoreRepository otpStoreRepository;
+    long otpTtlSeconds;
+    long registrationTtlSeconds;
+
+    public JdbcOtpStore(OtpStoreRepository otpStoreRepository,
+                        @Value("${otp.store.otp-ttl-seconds:600}") long otpTtlSeconds,
+                        @Value("${otp.store.registration-ttl-seconds:1800}") long registrationTtlSeconds) {
+        this.otpStoreRepository = otpStoreRepository;
+        this.otpTtlSeconds = otpTtlSeconds;
+        this.registrationTtlSeconds = registrationTtlSeconds;
+    }
+
+    @PostConstruct
+    void createTables() {
+        otpStoreRepository.createTablesIfMissing();
+    }
+
+    @Override
+    public void putOtp(String email, OtpEntry otp) {
+        otpStoreRepository.upsertOtp(email, otp, LocalDateTime.now().plusSeconds(otpTtlSeconds));
+    }
+
+    @Override
+    public Optional<OtpEntry> getOtp(String email) {
+        return otpStoreRepository.findOtp(email, LocalDateTime.now());
+    }
+
+    @Override
+    public void removeOtp(String email) {
+        otpStoreRepository.deleteOtp(email);
+    }
+
+    @Override
+    public void putPendingRegistration(RegisterRequest request) {
+        otpStoreRepository.upsertPendingRegistration(request, LocalDateTime.now().plusSeconds(registrationTtlSeconds));
+    }
+
+    @Override
+    public Optional<RegisterRequest> getPendingRegistration(String email) {
+        return otpStoreRepository.findPendingRegistration(email, LocalDateTime.now());
+    }
+
+    @Override
+    public void removePendingRegistration(String email) {
+        otpStoreRepository.deletePendingRegistration(email);
+    }
+
+    @Scheduled(fixedDelayString = "${otp.store.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        try {
+            int deleted = otpStoreRepository.deleteExpired(LocalDateTime.now());
+            if (deleted > 0) {
+                log.debug("Purged {} expired OTP rows", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Purging expired OTP rows failed", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.project.stationery_be_server.otp;
+
+import com.project.stationery_be_server.dto.request.RegisterRequest;
+
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Nơi giữ OTP và đăng ký đang chờ xác nhận theo email. Mọi entry có hạn (TTL cấu hình trong otp.store.*),
+ * hết hạn thì get trả về rỗng. Mặc định giữ trong bộ nhớ (otp.store.type = memory); chạy nhiều instance thì
+ * dùng otp.store.type = jdbc để mọi node thấy cùng dữ liệu.
+ */
+public interface OtpStore {
+    void putOtp(String email, OtpEntry otp);
+
+    Optional<OtpEntry> getOtp(String email);
+
+    void removeOtp(String email);
+
+    // Mật khẩu trong request phải được mã hóa trước khi lưu
+    void putPendingRegistration(RegisterRequest request);
+
+    Optional<RegisterRequest> getPendingRegistration(String email);
+
+    void removePendingRegistration(String email);
+
+    record OtpEntry(int otp, Date createdAt) {
+    }
+}
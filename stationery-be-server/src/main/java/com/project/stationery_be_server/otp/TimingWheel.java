@@ -0,0 +1,83 @@
+package com.project.stationery_be_server.otp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: phần tử hết hạn ở tick t nằm trong ô t % số ô (hạn xa hơn một vòng thì nằm chờ, tới vòng
+ * của nó mới được lấy ra). Thêm là O(1), mỗi tick chỉ xét một ô thay vì quét toàn bộ phần tử.
+ * Đồng bộ bằng synchronized; lớp gọi tự xử lý phần tử trả về ngoài khóa.
+ */
+final class TimingWheel<T> {
+    private final long tickMs;
+    private final ArrayDeque<Timeout<T>>[] slots;
+    // tick cuối cùng đã xử lý
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMs, int wheelSize, long nowMs) {
+        this.tickMs = tickMs;
+        this.slots = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.currentTick = nowMs / tickMs;
+    }
+
+    synchronized void schedule(T item, long deadlineMs) {
+        // làm tròn lên: không bao giờ lấy ra trước deadline
+        long deadlineTick = Math.max(currentTick + 1, (deadlineMs + tickMs - 1) / tickMs);
+        slots[slot(deadlineTick)].add(new Timeout<>(item, deadlineTick));
+        size++;
+    }
+
+    // Xử lý các tick tới nowMs, trả về phần tử đã tới hạn
+    synchronized List<T> advance(long nowMs) {
+        List<T> due = new ArrayList<>();
+        long targetTick = nowMs / tickMs;
+        // bị trễ quá một vòng (GC, máy ngủ) thì chỉ cần quét một vòng cuối là gặp đủ mọi ô
+        if (targetTick - currentTick > slots.length) {
+            currentTick = targetTick - slots.length;
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            drain(currentTick, due, Integer.MAX_VALUE);
+        }
+        return due;
+    }
+
+    // Lấy sớm các phần tử sắp tới hạn nhất (theo thứ tự hạn), dùng khi nơi chứa đầy
+    synchronized List<T> pollEarliest(int max) {
+        List<T> earliest = new ArrayList<>();
+        for (long tick = currentTick + 1; earliest.size() < max && size > 0; tick++) {
+            drain(tick, earliest, max);
+        }
+        return earliest;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void drain(long tick, List<T> out, int max) {
+        Iterator<Timeout<T>> it = slots[slot(tick)].iterator();
+        while (it.hasNext() && out.size() < max) {
+            Timeout<T> timeout = it.next();
+            if (timeout.deadlineTick() <= tick) {
+                it.remove();
+                size--;
+                out.add(timeout.item());
+            }
+        }
+    }
+
+    private int slot(long tick) {
+        return (int) (tick % slots.length);
+    }
+
+    private record Timeout<T>(T item, long deadlineTick) {
+    }
+}
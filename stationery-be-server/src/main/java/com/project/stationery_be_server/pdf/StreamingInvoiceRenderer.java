@@ -0,0 +1,198 @@
+package com.project.stationery_be_server.pdf;
+
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.colors.DeviceRgb;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.font.PdfFontFactory.EmbeddingStrategy;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.borders.Border;
+import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.properties.TextAlignment;
+import com.itextpdf.layout.properties.UnitValue;
+import com.project.stationery_be_server.service.PdfGenerationService.CurrentInvoice;
+import com.project.stationery_be_server.service.PdfGenerationService.InvoiceLine;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
+
+/**
+ * Render hóa đơn tháng của phòng ban bằng layout API của iText, ghi thẳng ra OutputStream.
+ * Bảng dòng hàng là "large table": cứ FLUSH_ROWS dòng thì flush, trang đã đầy được ghi ra và giải phóng,
+ * nên bộ nhớ không tăng theo số dòng (khác với dựng cả chuỗi HTML rồi để Flying Saucer giữ DOM + PDF).
+ * Dòng hàng được đẩy vào qua LineCursor (thường là cursor DB), renderer không giữ danh sách dòng.
+ */
+@Component
+public class StreamingInvoiceRenderer {
+    static final int FLUSH_ROWS = 100;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DeviceRgb HEADER_COLOR = new DeviceRgb(0x2c, 0x3e, 0x50);
+
+    private static final String REGULAR_FONT = "fonts/OpenSans-Regular.ttf";
+    private static final String BOLD_FONT = "fonts/OpenSans-Bold.ttf";
+
+    // Font program nạp một lần; PdfFont gắn với từng PdfDocument nên tạo lại mỗi lần render.
+    // bold = null khi không đóng gói OpenSans-Bold.ttf: dùng font thường và giả lập đậm
+    private final FontProgram regular;
+    private final FontProgram bold;
+
+    // Nguồn dòng hàng theo thứ tự hiển thị
+    @FunctionalInterface
+    public interface LineCursor {
+        void forEach(Consumer<InvoiceLine> action);
+    }
+
+    public StreamingInvoiceRenderer() throws IOException {
+        this.regular = loadFont(new ClassPathResource(REGULAR_FONT));
+        ClassPathResource boldResource = new ClassPathResource(BOLD_FONT);
+        this.bold = boldResource.exists() ? loadFont(boldResource) : null;
+    }
+
+    private static FontProgram loadFont(ClassPathResource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return FontProgramFactory.createFont(in.readAllBytes());
+        }
+    }
+
+    // Identity-H + nhúng font: tên khách hàng / sản phẩm tiếng Việt giữ nguyên dấu (font chuẩn WinAnsi làm mất dấu)
+    private static PdfFont embed(FontProgram program) {
+        return PdfFontFactory.createFont(program, PdfEncodings.IDENTITY_H, EmbeddingStrategy.PREFER_EMBEDDED);
+    }
+
+    public void render(CurrentInvoice invoice, LineCursor lines, OutputStream out) {
+        PdfFont font = embed(regular);
+        PdfFont boldFont = bold != null ? embed(bold) : font;
+        DecimalFormat formatter = new DecimalFormat("#,###");
+        String currentDate = LocalDate.now().format(DATE_FORMAT);
+
+        try (Document document = new Document(new PdfDocument(new PdfWriter(out)), PageSize.A4)) {
+            document.setFont(font).setFontSize(9);
+
+            document.add(strong(new Paragraph("MONTHLY INVOICE"), boldFont).setFontSize(20)
+                    .setTextAlignment(TextAlignment.CENTER).setFontColor(HEADER_COLOR));
+            document.add(new Paragraph("Stationery P\nAddress: 97 ManTech, Hiep Phu, Thu Duc City, Vietnam\nPhone: +84 922 888 999")
+                    .setTextAlignment(TextAlignment.CENTER));
+            document.add(strong(new Paragraph("Department: " + invoice.userName()), boldFont).setFontSize(11));
+
+            Table meta = new Table(UnitValue.createPercentArray(new float[]{25, 25, 25, 25})).useAllAvailableWidth();
+            addMeta(meta, "Period:", invoice.startDate().format(DATE_FORMAT) + " - " + invoice.endDate().format(DATE_FORMAT), boldFont);
+            addMeta(meta, "Total Orders:", invoice.orderCount() + " orders", boldFont);
+            addMeta(meta, "Issue Date:", currentDate, boldFont);
+            addMeta(meta, "Total Items:", invoice.totalItems() + " items", boldFont);
+            addMeta(meta, "Invoice ID:", "INV-" + invoice.contentHash().substring(0, 12).toUpperCase(), boldFont);
+            addMeta(meta, "Tax:", "Tax ID: 123456789 | VAT: 0%", boldFont);
+            document.add(meta.setMarginTop(10).setMarginBottom(10));
+
+            // Header lặp lại ở mỗi trang; bảng được thêm vào document trước rồi mới đổ dòng và flush dần
+            Table items = new Table(UnitValue.createPercentArray(new float[]{22, 44, 10, 24}), true).useAllAvailableWidth();
+            for (String header : new String[]{"Order ID", "Product", "Qty", "Unit Price"}) {
+                items.addHeaderCell(new Cell().add(strong(new Paragraph(header), boldFont).setFontColor(ColorConstants.WHITE))
+                        .setBackgroundColor(HEADER_COLOR));
+            }
+            document.add(items);
+            int[] rows = {0};
+            lines.forEach(line -> {
+                items.addCell(new Cell().add(new Paragraph(line.orderId())));
+                items.addCell(new Cell().add(new Paragraph(line.productName())));
+                items.addCell(new Cell().add(new Paragraph(String.valueOf(line.quantity())))
+                        .setTextAlignment(TextAlignment.CENTER));
+                items.addCell(new Cell().add(new Paragraph(formatter.format(line.unitPrice()) + " VND"))
+                        .setTextAlignment(TextAlignment.RIGHT));
+                if (++rows[0] % FLUSH_ROWS == 0) {
+                    items.flush();
+                }
+            });
+            items.complete();
+
+            Table summary = new Table(UnitValue.createPercentArray(new float[]{70, 30})).useAllAvailableWidth().setMarginTop(10);
+            addSummary(summary, new Paragraph("Subtotal:"), new Paragraph(formatter.format(invoice.totalAmount()) + " VND"));
+            addSummary(summary, new Paragraph("VAT (0%):"), new Paragraph("0 VND"));
+            addSummary(summary, new Paragraph("Discount:"), new Paragraph("0 VND"));
+            addSummary(summary, strong(new Paragraph("TOTAL:"), boldFont),
+                    strong(new Paragraph(formatter.format(invoice.totalAmount()) + " VND"), boldFont));
+            document.add(summary);
+            document.add(new Paragraph("(" + numberToEnglishWords(invoice.totalAmount()) + ")")
+                    .setTextAlignment(TextAlignment.RIGHT).setItalic());
+
+            document.add(strong(new Paragraph("Thank you for your purchase!"), boldFont).setFontSize(11)
+                    .setTextAlignment(TextAlignment.CENTER).setMarginTop(20));
+            document.add(new Paragraph("This invoice was generated automatically on " + currentDate
+                    + ".\nFor inquiries, contact: support@stationeryp.com | +84 922 888 999")
+                    .setFontSize(8).setTextAlignment(TextAlignment.CENTER));
+        }
+    }
+
+    // Chữ đậm: font bold nếu có, không thì font thường + giả lập đậm
+    private Paragraph strong(Paragraph paragraph, PdfFont boldFont) {
+        paragraph.setFont(boldFont);
+        return bold != null ? paragraph : paragraph.setBold();
+    }
+
+    private void addMeta(Table table, String label, String value, PdfFont boldFont) {
+        table.addCell(new Cell().add(strong(new Paragraph(label), boldFont)).setBorder(Border.NO_BORDER));
+        table.addCell(new Cell().add(new Paragraph(value)).setBorder(Border.NO_BORDER));
+    }
+
+    private static void addSummary(Table table, Paragraph label, Paragraph value) {
+        table.addCell(new Cell().add(label).setTextAlignment(TextAlignment.RIGHT).setBorder(Border.NO_BORDER));
+        table.addCell(new Cell().add(value).setTextAlignment(TextAlignment.RIGHT).setBorder(Border.NO_BORDER));
+    }
+
+    // Chuyển đổi số thành chữ tiếng Anh
+    static String numberToEnglishWords(long number) {
+        if (number == 0) return "Zero VND";
+
+        String[] units = {"", "thousand", "million", "billion"};
+        String[] digits = {"zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine"};
+        String[] teens = {"ten", "eleven", "twelve", "thirteen", "fourteen", "fifteen", "sixteen", "seventeen", "eighteen", "nineteen"};
+        String[] tens = {"", "", "twenty", "thirty", "forty", "fifty", "sixty", "seventy", "eighty", "ninety"};
+
+        StringBuilder result = new StringBuilder();
+        int unitIndex = 0;
+
+        while (number > 0) {
+            if (number % 1000 != 0) {
+                StringBuilder part = new StringBuilder();
+                int hundreds = (int) (number % 1000);
+                if (hundreds >= 100) {
+                    part.append(digits[hundreds / 100]).append(" hundred");
+                    hundreds %= 100;
+                    if (hundreds > 0) part.append(" and ");
+                }
+                if (hundreds >= 10 && hundreds < 20) {
+                    part.append(teens[hundreds - 10]);
+                } else if (hundreds >= 20) {
+                    part.append(tens[hundreds / 10]);
+                    if (hundreds % 10 > 0) part.append("-").append(digits[hundreds % 10]);
+                } else if (hundreds > 0) {
+                    part.append(digits[hundreds]);
+                }
+                if (part.length() > 0) {
+                    if (result.length() > 0) result.insert(0, ", ");
+                    result.insert(0, part.append(" ").append(units[unitIndex]));
+                }
+            }
+            number /= 1000;
+            unitIndex++;
+        }
+
+        result.append(" VND");
+        result.setCharAt(0, Character.toUpperCase(result.charAt(0)));
+        return result.toString();
+    }
+}
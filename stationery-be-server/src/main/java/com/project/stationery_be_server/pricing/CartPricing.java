@@ -0,0 +1,77 @@
+package com.project.stationery_be_server.pricing;
+
+import com.project.stationery_be_server.cache.ActivePromotionIndex;
+import com.project.stationery_be_server.cache.ActivePromotionIndex.ActivePromotion;
+import com.project.stationery_be_server.dto.response.CartResponse;
+import com.project.stationery_be_server.entity.ProductPromotion;
+import com.project.stationery_be_server.entity.Promotion;
+import com.project.stationery_be_server.repository.projection.CartLineRow;
+import com.project.stationery_be_server.utils.PromotionPricing;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tính giá các dòng giỏ hàng trong bộ nhớ: khuyến mãi đang hiệu lực lấy từ ActivePromotionIndex,
+ * không truy vấn khuyến mãi nào khi báo giá. Đặt hàng vẫn kiểm tra lại khuyến mãi trên DB.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartPricing {
+    ActivePromotionIndex activePromotionIndex;
+
+    public List<CartResponse> price(List<CartLineRow> lines) {
+        LocalDateTime now = LocalDateTime.now();
+        List<CartResponse> priced = new ArrayList<>(lines.size());
+        for (CartLineRow line : lines) {
+            ActivePromotion promotion = firstApplicable(
+                    activePromotionIndex.forProductDetail(line.productDetailId(), now), line.discountPrice());
+            priced.add(toResponse(line, promotion));
+        }
+        return priced;
+    }
+
+    // Khuyến mãi đầu tiên có min_order_value <= giá bán của dòng (NULL không khớp, như điều kiện SQL trước đây)
+    private static ActivePromotion firstApplicable(List<ActivePromotion> candidates, int price) {
+        for (ActivePromotion candidate : candidates) {
+            Integer minOrderValue = candidate.promotion().getMinOrderValue();
+            if (minOrderValue != null && minOrderValue <= price) return candidate;
+        }
+        return null;
+    }
+
+    private static CartResponse toResponse(CartLineRow line, ActivePromotion promotion) {
+        int discountValue = 0;
+        List<ProductPromotion> productPromotion = List.of();
+        if (promotion != null) {
+            Promotion currentPromotion = promotion.promotion();
+            discountValue = PromotionPricing.lineDiscount(line.discountPrice(), currentPromotion);
+            productPromotion = List.of(ProductPromotion.builder()
+                    .productPromotionId(promotion.assignmentId())
+                    .promotion(currentPromotion)
+                    .build());
+        }
+        return CartResponse.builder()
+                .userId(line.userId())
+                .productId(line.productId())
+                .productDetailId(line.productDetailId())
+                .productName(line.productName())
+                .productPromotion(productPromotion)
+                .colorName(line.colorName())
+                .sizeName(line.sizeName())
+                .quantity(line.quantity())
+                .originalPrice(line.originalPrice())
+                .discountPrice(line.discountPrice() - discountValue)
+                .discountValue(discountValue)
+                .createdAt(line.createdAt())
+                .imageUrl(line.thumbnail())
+                .slug(line.slug())
+                .build();
+    }
+}
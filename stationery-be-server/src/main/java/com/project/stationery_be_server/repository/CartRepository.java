@@ -4,6 +4,7 @@ import com.project.stationery_be_server.entity.Cart;
 import com.project.stationery_be_server.entity.CartId;
 import com.project.stationery_be_server.entity.ProductDetail;
 import com.project.stationery_be_server.entity.User;
+import com.project.stationery_be_server.repository.projection.CartLineRow;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,6 +16,31 @@ import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, CartId> {
+    // Một dòng giỏ hàng + thông tin hiển thị trong một truy vấn, không nạp entity (tránh lazy/eager từng dòng)
+    String CART_LINE_SELECT = """
+            SELECT new com.project.stationery_be_server.repository.projection.CartLineRow(
+                c.cartId.userId, p.productId, pd.productDetailId, p.name, col.name, s.name, c.quantity,
+                pd.originalPrice, pd.discountPrice, c.createdAt, pd.thumbnail, pd.slug)
+            FROM Cart c
+            JOIN c.productDetail pd
+            JOIN pd.product p
+            LEFT JOIN pd.color col
+            LEFT JOIN pd.size s
+            """;
+
+    @Query(CART_LINE_SELECT + " WHERE c.cartId.userId = :userId")
+    List<CartLineRow> findLinesByUserId(@Param("userId") String userId);
+
+    @Query(CART_LINE_SELECT)
+    List<CartLineRow> findAllLines();
+
+    // Tổng theo giá bán hiện tại (chưa áp khuyến mãi)
+    @Query("""
+            SELECT COALESCE(SUM(pd.discountPrice * c.quantity), 0) FROM Cart c
+            JOIN c.productDetail pd
+            WHERE c.cartId.userId = :userId
+            """)
+    long sumDiscountPriceByUserId(@Param("userId") String userId);
 
     @Query("SELECT c FROM Cart c WHERE c.user.userId = :userId")
     List<Cart> findByUserId(@Param("userId") String userId);
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ImageRepository  extends JpaRepository<Image, String> {
@@ -18,6 +19,22 @@ public interface ImageRepository  extends JpaRepository<Image, String> {
 
     long countByProduct_ProductId(String productId);
 
+    // Ảnh có priority nhỏ nhất của từng cặp (product, color) trong trang: [productId, colorId, url]
+    @Query(value = """
+            SELECT ranked.product_id, ranked.color_id, ranked.url
+            FROM (
+                SELECT
+                    i.product_id,
+                    i.color_id,
+                    i.url,
+                    ROW_NUMBER() OVER (PARTITION BY i.product_id, i.color_id ORDER BY i.priority ASC) AS rn
+                FROM image i
+                WHERE i.product_id IN (:productIds)
+            ) AS ranked
+            WHERE ranked.rn = 1
+            """, nativeQuery = true)
+    List<Object[]> findFirstImagesByProductIds(@Param("productIds") Collection<String> productIds);
+
     @Modifying
     @Transactional
     @Query(
@@ -3,12 +3,36 @@ package com.project.stationery_be_server.repository;
 import com.project.stationery_be_server.entity.Image;
 import com.project.stationery_be_server.entity.InOrder;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface InOrderRepository  extends JpaRepository<InOrder, String> {
 
     List<InOrder> findByExpiredTimeBefore(LocalDateTime time);
 
+    // Giữ khóa một lô đơn hết hạn, bỏ qua các đơn đang bị transaction khác khóa (vd: đang thanh toán)
+    @Query(value = """
+            SELECT io.id FROM in_order io
+            WHERE io.expried_time < :now
+            ORDER BY io.expried_time
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<String> claimExpiredOrderIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM InOrder io WHERE io.orderId IN :orderIds")
+    int deleteByOrderIds(@Param("orderIds") Collection<String> orderIds);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE InOrder io SET io.paymentUrl = :paymentUrl WHERE io.orderId = :orderId")
+    int updatePaymentUrl(@Param("orderId") String orderId, @Param("paymentUrl") String paymentUrl);
+
 }
@@ -2,14 +2,26 @@ package com.project.stationery_be_server.repository;
 
 import com.project.stationery_be_server.entity.InvalidatedToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Date;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedToken, String> {
     boolean existsById(String id);
     Optional<InvalidatedToken> findById(String id);
-}
 
+    @Query("SELECT t.id FROM InvalidatedToken t WHERE t.expiredTime > :now")
+    List<String> findActiveIds(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM InvalidatedToken t WHERE t.expiredTime <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
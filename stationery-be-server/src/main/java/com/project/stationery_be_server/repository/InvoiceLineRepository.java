@@ -0,0 +1,68 @@
+package com.project.stationery_be_server.repository;
+
+import com.project.stationery_be_server.service.PdfGenerationService.InvoiceLine;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Dòng hóa đơn phòng ban trong kỳ, đọc bằng một truy vấn JOIN có thứ tự thay vì nạp từng đơn rồi từng chi tiết.
+ * streamLines đọc theo kiểu streaming của MySQL (fetch size Integer.MIN_VALUE): driver trả từng dòng,
+ * không giữ cả result set trong bộ nhớ, nên số dòng trong kỳ không ảnh hưởng tới heap.
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class InvoiceLineRepository {
+    // Chỉ đơn PROCESSING (chưa thanh toán theo hóa đơn tháng) có chi tiết mới được tính tiền
+    private static final String TOTALS_SQL = """
+            SELECT COUNT(*),
+                   COALESCE(SUM(CASE WHEN po.status = 'PROCESSING' AND EXISTS (
+                       SELECT 1 FROM purchase_order_detail pod WHERE pod.purchase_order_id = po.purchase_order_id
+                   ) THEN po.amount END), 0)
+            FROM purchase_order po
+            WHERE po.user_id = ? AND po.created_at BETWEEN ? AND ?
+            """;
+    private static final String LINES_SQL = """
+            SELECT po.purchase_order_id, pd.name, pod.quantity, pod.discount_price
+            FROM purchase_order po
+            JOIN purchase_order_detail pod ON pod.purchase_order_id = po.purchase_order_id
+            JOIN product_detail pd ON pd.product_detail_id = pod.product_detail_id
+            WHERE po.user_id = ? AND po.created_at BETWEEN ? AND ? AND po.status = 'PROCESSING'
+            ORDER BY po.created_at, po.purchase_order_id, pod.product_detail_id
+            """;
+
+    JdbcTemplate jdbcTemplate;
+
+    public record InvoiceTotals(int orderCount, long totalAmount) {
+    }
+
+    public InvoiceTotals findTotals(String userId, LocalDateTime startDate, LocalDateTime endDate) {
+        return jdbcTemplate.queryForObject(TOTALS_SQL,
+                (rs, rowNum) -> new InvoiceTotals(rs.getInt(1), rs.getLong(2)),
+                userId, Timestamp.valueOf(startDate), Timestamp.valueOf(endDate));
+    }
+
+    // Gọi action cho từng dòng theo thứ tự; action không được chạy truy vấn khác trên cùng connection khi đang stream
+    public void streamLines(String userId, LocalDateTime startDate, LocalDateTime endDate, Consumer<InvoiceLine> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(LINES_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setString(1, userId);
+            ps.setTimestamp(2, Timestamp.valueOf(startDate));
+            ps.setTimestamp(3, Timestamp.valueOf(endDate));
+            return ps;
+        }, rs -> {
+            action.accept(new InvoiceLine(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getLong(4)));
+        });
+    }
+}
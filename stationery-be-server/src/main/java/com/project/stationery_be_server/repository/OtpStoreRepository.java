@@ -0,0 +1,106 @@
+package com.project.stationery_be_server.repository;
+
+import com.project.stationery_be_server.dto.request.RegisterRequest;
+import com.project.stationery_be_server.otp.OtpStore.OtpEntry;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Bảng otp_code và pending_registration cho JdbcOtpStore (otp.store.type = jdbc).
+ * Đọc luôn lọc expires_at nên dòng hết hạn chưa kịp xóa cũng không được dùng.
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OtpStoreRepository {
+    // ddl-auto = none và repo chưa có công cụ migration nên tự tạo bảng nếu chưa có
+    private static final String CREATE_OTP_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS otp_code (
+                email VARCHAR(255) NOT NULL PRIMARY KEY,
+                otp INT NOT NULL,
+                created_at DATETIME(3) NOT NULL,
+                expires_at DATETIME(3) NOT NULL,
+                INDEX idx_otp_code_expires_at (expires_at)
+            )
+            """;
+    private static final String CREATE_REGISTRATION_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS pending_registration (
+                email VARCHAR(255) NOT NULL PRIMARY KEY,
+                first_name VARCHAR(255),
+                last_name VARCHAR(255),
+                password_hash VARCHAR(255) NOT NULL,
+                expires_at DATETIME(3) NOT NULL,
+                INDEX idx_pending_registration_expires_at (expires_at)
+            )
+            """;
+
+    JdbcTemplate jdbcTemplate;
+
+    public void createTablesIfMissing() {
+        jdbcTemplate.execute(CREATE_OTP_TABLE_SQL);
+        jdbcTemplate.execute(CREATE_REGISTRATION_TABLE_SQL);
+    }
+
+    public void upsertOtp(String email, OtpEntry otp, LocalDateTime expiresAt) {
+        jdbcTemplate.update("""
+                        INSERT INTO otp_code (email, otp, created_at, expires_at) VALUES (?, ?, ?, ?)
+                        ON DUPLICATE KEY UPDATE otp = VALUES(otp), created_at = VALUES(created_at), expires_at = VALUES(expires_at)
+                        """,
+                email, otp.otp(), new Timestamp(otp.createdAt().getTime()), Timestamp.valueOf(expiresAt));
+    }
+
+    public Optional<OtpEntry> findOtp(String email, LocalDateTime now) {
+        return jdbcTemplate.query("SELECT otp, created_at FROM otp_code WHERE email = ? AND expires_at > ?",
+                        (rs, rowNum) -> new OtpEntry(rs.getInt(1), new Date(rs.getTimestamp(2).getTime())),
+                        email, Timestamp.valueOf(now))
+                .stream().findFirst();
+    }
+
+    public void deleteOtp(String email) {
+        jdbcTemplate.update("DELETE FROM otp_code WHERE email = ?", email);
+    }
+
+    public void upsertPendingRegistration(RegisterRequest request, LocalDateTime expiresAt) {
+        jdbcTemplate.update("""
+                        INSERT INTO pending_registration (email, first_name, last_name, password_hash, expires_at)
+                        VALUES (?, ?, ?, ?, ?)
+                        ON DUPLICATE KEY UPDATE first_name = VALUES(first_name), last_name = VALUES(last_name),
+                            password_hash = VALUES(password_hash), expires_at = VALUES(expires_at)
+                        """,
+                request.getEmail(), request.getFirstName(), request.getLastName(), request.getPassword(),
+                Timestamp.valueOf(expiresAt));
+    }
+
+    public Optional<RegisterRequest> findPendingRegistration(String email, LocalDateTime now) {
+        return jdbcTemplate.query("""
+                                SELECT email, first_name, last_name, password_hash FROM pending_registration
+                                WHERE email = ? AND expires_at > ?
+                                """,
+                        (rs, rowNum) -> RegisterRequest.builder()
+                                .email(rs.getString(1))
+                                .firstName(rs.getString(2))
+                                .lastName(rs.getString(3))
+                                .password(rs.getString(4))
+                                .build(),
+                        email, Timestamp.valueOf(now))
+                .stream().findFirst();
+    }
+
+    public void deletePendingRegistration(String email) {
+        jdbcTemplate.update("DELETE FROM pending_registration WHERE email = ?", email);
+    }
+
+    public int deleteExpired(LocalDateTime now) {
+        Timestamp cutoff = Timestamp.valueOf(now);
+        return jdbcTemplate.update("DELETE FROM otp_code WHERE expires_at <= ?", cutoff)
+                + jdbcTemplate.update("DELETE FROM pending_registration WHERE expires_at <= ?", cutoff);
+    }
+}
@@ -0,0 +1,89 @@
+package com.project.stationery_be_server.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bảng pending_asset_deletion: asset cần xóa khỏi nơi lưu ảnh. Ghi trong cùng transaction với thay đổi DB
+ * (xóa/thay ảnh) nên không mất yêu cầu xóa khi ứng dụng dừng hay Cloudinary lỗi; AssetCleanupService xóa dòng
+ * khi asset đã bị xóa, lỗi thì tăng attempts và hẹn lần sau.
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PendingAssetDeletionRepository {
+    // ddl-auto = none và repo chưa có công cụ migration nên tự tạo bảng nếu chưa có
+    private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS pending_asset_deletion (
+                public_id VARCHAR(255) NOT NULL PRIMARY KEY,
+                attempts INT NOT NULL DEFAULT 0,
+                next_attempt_at DATETIME(3) NOT NULL,
+                last_error VARCHAR(500),
+                created_at DATETIME(3) NOT NULL,
+                INDEX idx_pending_asset_deletion_next_attempt_at (next_attempt_at)
+            )
+            """;
+
+    JdbcTemplate jdbcTemplate;
+
+    public record PendingDeletion(String publicId, int attempts) {
+    }
+
+    public void createTableIfMissing() {
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+    }
+
+    // publicId đã có trong bảng thì giữ nguyên dòng cũ
+    public void enqueue(Collection<String> publicIds, LocalDateTime now) {
+        Timestamp at = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate("""
+                        INSERT IGNORE INTO pending_asset_deletion (public_id, attempts, next_attempt_at, created_at)
+                        VALUES (?, 0, ?, ?)
+                        """,
+                publicIds.stream().map(id -> new Object[]{id, at, at}).toList());
+    }
+
+    // Dòng tới hạn, chưa vượt số lần thử
+    public List<PendingDeletion> findDue(LocalDateTime now, int maxAttempts, int limit) {
+        return jdbcTemplate.query("""
+                        SELECT public_id, attempts FROM pending_asset_deletion
+                        WHERE next_attempt_at <= ? AND attempts < ?
+                        ORDER BY next_attempt_at
+                        LIMIT ?
+                        """,
+                (rs, rowNum) -> new PendingDeletion(rs.getString(1), rs.getInt(2)),
+                Timestamp.valueOf(now), maxAttempts, limit);
+    }
+
+    public void deleteAll(Collection<String> publicIds) {
+        jdbcTemplate.batchUpdate("DELETE FROM pending_asset_deletion WHERE public_id = ?",
+                publicIds.stream().map(id -> new Object[]{id}).toList());
+    }
+
+    public void recordFailure(String publicId, int attempts, LocalDateTime nextAttemptAt, String error) {
+        jdbcTemplate.update("""
+                        UPDATE pending_asset_deletion SET attempts = ?, next_attempt_at = ?, last_error = ?
+                        WHERE public_id = ?
+                        """,
+                attempts, Timestamp.valueOf(nextAttemptAt), error, publicId);
+    }
+
+    public long countPending(int maxAttempts) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pending_asset_deletion WHERE attempts < ?", Long.class, maxAttempts);
+    }
+
+    // Dòng đã thử hết số lần, cần xem tay (last_error)
+    public long countAbandoned(int maxAttempts) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pending_asset_deletion WHERE attempts >= ?", Long.class, maxAttempts);
+    }
+}
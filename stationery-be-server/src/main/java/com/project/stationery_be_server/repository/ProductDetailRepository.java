@@ -11,6 +11,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -82,6 +83,25 @@ public interface ProductDetailRepository extends JpaRepository<ProductDetail, St
             """, nativeQuery = true)
     List<ColorSlugResponse> findDistinctColorsWithAnySlug(String productId);
 
+    // Giống findDistinctColorsWithAnySlug nhưng cho cả trang sản phẩm: [productId, colorId, hex, slug]
+    @Query(value = """
+            SELECT
+                pd.product_id AS productId,
+                pd.color_id AS colorId,
+                c.hex AS hex,
+                MIN(pd.slug) AS slug
+            FROM
+                product_detail pd
+            JOIN
+                color c ON pd.color_id = c.color_id
+            WHERE
+                pd.product_id IN (:productIds)
+                AND pd.hidden = false
+            GROUP BY
+                pd.product_id, pd.color_id, c.hex
+            """, nativeQuery = true)
+    List<Object[]> findDistinctColorsWithAnySlugByProductIds(@Param("productIds") Collection<String> productIds);
+
 
     @Modifying
     @Query("UPDATE ProductDetail pd " +
@@ -89,8 +109,6 @@ public interface ProductDetailRepository extends JpaRepository<ProductDetail, St
            "WHERE pd.productDetailId = :productDetailId AND pd.stockQuantity >= :amount")
     int reduceQuantity(@Param("productDetailId") String productDetailId, @Param("amount") int amount);
 
-    @Query("SELECT pd FROM ProductDetail pd WHERE pd.name LIKE %:keyword% OR pd.slug LIKE %:keyword%")
-    List<ProductDetail> findByKeyword(String keyword);
     long countByProduct_ProductId(String productId);
 
     boolean existsByName(String name);
@@ -104,4 +122,18 @@ public interface ProductDetailRepository extends JpaRepository<ProductDetail, St
            "WHERE pd.productDetailId = :productDetailId ")
     int restoreQuantity(@Param("productDetailId") String productDetailId, @Param("amount") int amount);
 
+    // Hoàn kho cho cả lô đơn: cộng dồn số lượng theo từng product_detail rồi update một lần
+    @Modifying
+    @Query(value = """
+            UPDATE product_detail pd
+            JOIN (
+                SELECT pod.product_detail_id, SUM(pod.quantity) AS amount
+                FROM purchase_order_detail pod
+                WHERE pod.purchase_order_id IN (:orderIds)
+                GROUP BY pod.product_detail_id
+            ) restored ON restored.product_detail_id = pd.product_detail_id
+            SET pd.available_quantity = pd.available_quantity + restored.amount
+            """, nativeQuery = true)
+    int restoreQuantityForOrders(@Param("orderIds") Collection<String> orderIds);
+
 }
@@ -3,6 +3,7 @@ package com.project.stationery_be_server.repository;
 import com.project.stationery_be_server.entity.ProductDetail;
 import com.project.stationery_be_server.entity.ProductPromotion;
 import com.project.stationery_be_server.entity.Promotion;
+import com.project.stationery_be_server.repository.projection.PromotionAssignmentRow;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -10,22 +11,11 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface ProductPromotionRepository extends JpaRepository<ProductPromotion, String>, JpaSpecificationExecutor<ProductPromotion> {
-    @Query(value = """
-            SELECT pp.* from product_promotion pp
-            JOIN promotion p ON pp.promotion_id = p.promotion_id
-            where pp.product_detail_id = :productDetailId
-            and p.start_date <= NOW()
-            and p.end_date >= NOW()
-            and p.min_order_value <= :price
-            AND (p.usage_limit IS NULL OR p.usage_limit > 0)
-            LIMIT 1
-            """, nativeQuery = true)
-    List<ProductPromotion> findValidPromotionForProductDetail(String productDetailId, String price);
-
     @Query(value = """
     SELECT pp.* FROM product_promotion pp
     JOIN promotion p ON pp.promotion_id = p.promotion_id
@@ -39,6 +29,24 @@ public interface ProductPromotionRepository extends JpaRepository<ProductPromoti
             @Param("productPromotionId") String productPromotionId,
             @Param("price") Integer price
     );
+
+    // Nạp ActivePromotionIndex: mọi gán product detail của promotion chưa hết hạn
+    @Query("""
+            SELECT new com.project.stationery_be_server.repository.projection.PromotionAssignmentRow(
+                pp.promotion.promotionId, pp.productPromotionId, pp.productDetail.productDetailId)
+            FROM ProductPromotion pp
+            WHERE pp.promotion.endDate >= :now
+            """)
+    List<PromotionAssignmentRow> findAssignmentsOfUnexpiredPromotions(@Param("now") LocalDateTime now);
+
+    @Query("""
+            SELECT new com.project.stationery_be_server.repository.projection.PromotionAssignmentRow(
+                pp.promotion.promotionId, pp.productPromotionId, pp.productDetail.productDetailId)
+            FROM ProductPromotion pp
+            WHERE pp.promotion.promotionId = :promotionId
+            """)
+    List<PromotionAssignmentRow> findAssignmentsByPromotionId(@Param("promotionId") String promotionId);
+
     long countByProductDetail_ProductDetailId(String productDetailId);
     boolean existsByPromotion(Promotion promotion);
     boolean existsByProductDetailAndPromotion(ProductDetail productDetail, Promotion promotion);
@@ -0,0 +1,77 @@
+package com.project.stationery_be_server.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * rating_count / rating_sum của product được cộng dồn bằng một UPDATE nguyên tử mỗi lần review có rating được
+ * tạo/sửa/xóa, total_rating tính lại từ hai cột này trong cùng câu lệnh. reconcileAll tính lại toàn bộ từ bảng review
+ * để sửa lệch (ProductRatingReconcileService).
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ProductRatingRepository {
+    // MySQL gán lần lượt từ trái sang phải trong UPDATE một bảng nên total_rating dùng giá trị vừa cộng
+    private static final String ADD_SQL = """
+            UPDATE product
+            SET rating_count = rating_count + ?,
+                rating_sum = rating_sum + ?,
+                total_rating = IF(rating_count > 0, rating_sum / rating_count, 0)
+            WHERE product_id = ?
+            """;
+    // chỉ ghi những product bị lệch
+    private static final String RECONCILE_SQL = """
+            UPDATE product p
+            LEFT JOIN (
+                SELECT product_id, COUNT(*) AS cnt, SUM(rating) AS total
+                FROM review
+                WHERE rating IS NOT NULL
+                GROUP BY product_id
+            ) r ON r.product_id = p.product_id
+            SET p.rating_count = COALESCE(r.cnt, 0),
+                p.rating_sum = COALESCE(r.total, 0),
+                p.total_rating = IF(COALESCE(r.cnt, 0) > 0, r.total / r.cnt, 0)
+            WHERE p.rating_count <> COALESCE(r.cnt, 0)
+               OR p.rating_sum <> COALESCE(r.total, 0)
+               OR p.total_rating IS NULL
+            """;
+
+    JdbcTemplate jdbcTemplate;
+
+    // ddl-auto = none và chưa có công cụ migration: thêm từng cột còn thiếu (lần chạy trước có thể đã thêm một cột),
+    // trả về true nếu vừa thêm cột nào (cần tính lại)
+    public boolean addColumnsIfMissing() {
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList("""
+                SELECT LOWER(COLUMN_NAME) FROM information_schema.COLUMNS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'product'
+                  AND COLUMN_NAME IN ('rating_count', 'rating_sum')
+                """, String.class));
+        boolean added = false;
+        if (!existing.contains("rating_count")) {
+            jdbcTemplate.execute("ALTER TABLE product ADD COLUMN rating_count INT NOT NULL DEFAULT 0");
+            added = true;
+        }
+        if (!existing.contains("rating_sum")) {
+            jdbcTemplate.execute("ALTER TABLE product ADD COLUMN rating_sum BIGINT NOT NULL DEFAULT 0");
+            added = true;
+        }
+        return added;
+    }
+
+    // Trả về số dòng cập nhật (0 nếu product không tồn tại)
+    public int add(String productId, int countDelta, int sumDelta) {
+        return jdbcTemplate.update(ADD_SQL, countDelta, sumDelta, productId);
+    }
+
+    // Tính lại toàn bộ từ bảng review, trả về số product đã bị lệch
+    public int reconcileAll() {
+        return jdbcTemplate.update(RECONCILE_SQL);
+    }
+}
@@ -0,0 +1,84 @@
+package com.project.stationery_be_server.repository;
+
+import com.project.stationery_be_server.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đọc dữ liệu dựng index tìm kiếm sản phẩm (tên, mô tả, tên danh mục, tên các product detail)
+ * và lọc id sản phẩm trúng index theo các filter còn lại của màn danh sách.
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ProductSearchRepository {
+    private static final String PRODUCT_SQL = """
+            SELECT p.product_id, p.name, p.description, p.category_id, c.category_name
+            FROM product p JOIN category c ON c.category_id = p.category_id
+            """;
+    private static final String DETAIL_SQL = """
+            SELECT pd.product_id, pd.name FROM product_detail pd
+            """;
+
+    JdbcTemplate jdbcTemplate;
+    EntityManager entityManager;
+
+    public List<SearchDocument> findAllDocuments() {
+        return load("", new Object[0]);
+    }
+
+    public List<SearchDocument> findDocumentsByProductId(String productId) {
+        return load(" WHERE p.product_id = ?", new Object[]{productId});
+    }
+
+    public List<SearchDocument> findDocumentsByCategoryId(String categoryId) {
+        return load(" WHERE p.category_id = ?", new Object[]{categoryId});
+    }
+
+    // Chỉ select product_id (không load entity) rồi service tự xếp theo độ liên quan và cắt trang
+    public List<String> findProductIds(Specification<Product> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<String> query = cb.createQuery(String.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(root.get("productId")).where(spec.toPredicate(root, query, cb));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private List<SearchDocument> load(String where, Object[] args) {
+        Map<String, SearchDocument> documents = new LinkedHashMap<>();
+        jdbcTemplate.query(PRODUCT_SQL + where, rs -> {
+            String productId = rs.getString(1);
+            documents.put(productId, new SearchDocument(productId, rs.getString(2), rs.getString(3),
+                    rs.getString(4), rs.getString(5), new ArrayList<>()));
+        }, args);
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+        String detailWhere = where.isEmpty() ? ""
+                : " JOIN product p ON p.product_id = pd.product_id" + where;
+        jdbcTemplate.query(DETAIL_SQL + detailWhere, rs -> {
+            SearchDocument document = documents.get(rs.getString(1));
+            if (document != null) {
+                document.detailNames().add(rs.getString(2));
+            }
+        }, args);
+        return new ArrayList<>(documents.values());
+    }
+
+    public record SearchDocument(String productId, String name, String description,
+                                 String categoryId, String categoryName, List<String> detailNames) {
+    }
+}
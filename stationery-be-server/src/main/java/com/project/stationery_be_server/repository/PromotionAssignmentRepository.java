@@ -0,0 +1,121 @@
+package com.project.stationery_be_server.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Gán promotion cho product detail / user theo tập hợp: "tất cả" là một câu INSERT ... SELECT bỏ qua dòng đã gán,
+ * danh sách id được chia lô, mỗi lô một truy vấn kiểm tra tồn tại + đã gán và một INSERT nhiều dòng.
+ * Chạy trong transaction của caller; promotion phải được flush trước (khóa ngoại promotion_id).
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PromotionAssignmentRepository {
+    static final int CHUNK_SIZE = 1000;
+
+    JdbcTemplate jdbcTemplate;
+
+    public enum Target {
+        PRODUCT_DETAIL("product_detail", "product_detail_id", "product_promotion", "product_promotion_id"),
+        USER("`user`", "user_id", "user_promotion", "user_promotion_id");
+
+        final String table;
+        final String idColumn;
+        final String assignmentTable;
+        final String assignmentIdColumn;
+
+        Target(String table, String idColumn, String assignmentTable, String assignmentIdColumn) {
+            this.table = table;
+            this.idColumn = idColumn;
+            this.assignmentTable = assignmentTable;
+            this.assignmentIdColumn = assignmentIdColumn;
+        }
+    }
+
+    // requested: số id khác nhau được yêu cầu; missingIds: id không có trong bảng đích (không được gán)
+    public record AssignmentCounts(int requested, int assigned, int alreadyAssigned, List<String> missingIds) {
+    }
+
+    // Gán cho mọi dòng của bảng đích; requested = số dòng của bảng đích, alreadyAssigned = số dòng đã được gán từ trước
+    public AssignmentCounts assignAll(Target target, String promotionId) {
+        Integer total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + target.table, Integer.class);
+        String sql = """
+                INSERT INTO %1$s (%2$s, promotion_id, %3$s)
+                SELECT UUID(), ?, t.%3$s FROM %4$s t
+                WHERE NOT EXISTS (SELECT 1 FROM %1$s a WHERE a.promotion_id = ? AND a.%3$s = t.%3$s)
+                """.formatted(target.assignmentTable, target.assignmentIdColumn, target.idColumn, target.table);
+        int assigned = jdbcTemplate.update(sql, promotionId, promotionId);
+        // dòng thêm vào bảng đích giữa COUNT và INSERT có thể làm assigned > total
+        int requested = Math.max(total != null ? total : 0, assigned);
+        return new AssignmentCounts(requested, assigned, requested - assigned, List.of());
+    }
+
+    public AssignmentCounts assign(Target target, String promotionId, List<String> targetIds) {
+        List<String> distinct = targetIds.stream().distinct().toList();
+        int assigned = 0;
+        int alreadyAssigned = 0;
+        List<String> missing = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += CHUNK_SIZE) {
+            List<String> chunk = distinct.subList(from, Math.min(from + CHUNK_SIZE, distinct.size()));
+            Map<String, Boolean> found = findAssigned(target, promotionId, chunk);
+            List<String> toInsert = new ArrayList<>(chunk.size());
+            for (String id : chunk) {
+                Boolean alreadyThere = found.get(id);
+                if (alreadyThere == null) {
+                    missing.add(id);
+                } else if (alreadyThere) {
+                    alreadyAssigned++;
+                } else {
+                    toInsert.add(id);
+                }
+            }
+            assigned += insert(target, promotionId, toInsert);
+        }
+        return new AssignmentCounts(distinct.size(), assigned, alreadyAssigned, missing);
+    }
+
+    // id có trong bảng đích -> đã được gán promotion này chưa
+    private Map<String, Boolean> findAssigned(Target target, String promotionId, List<String> ids) {
+        String sql = """
+                SELECT t.%1$s, EXISTS(SELECT 1 FROM %2$s a WHERE a.promotion_id = ? AND a.%1$s = t.%1$s)
+                FROM %3$s t WHERE t.%1$s IN (%4$s)
+                """.formatted(target.idColumn, target.assignmentTable, target.table, placeholders(ids.size()));
+        List<Object> args = new ArrayList<>(ids.size() + 1);
+        args.add(promotionId);
+        args.addAll(ids);
+        Map<String, Boolean> found = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            found.put(rs.getString(1), rs.getBoolean(2));
+        }, args.toArray());
+        return found;
+    }
+
+    private int insert(Target target, String promotionId, List<String> ids) {
+        if (ids.isEmpty()) return 0;
+        String sql = "INSERT INTO %s (%s, promotion_id, %s) VALUES %s".formatted(
+                target.assignmentTable, target.assignmentIdColumn, target.idColumn,
+                String.join(", ", Collections.nCopies(ids.size(), "(?, ?, ?)")));
+        List<Object> args = new ArrayList<>(ids.size() * 3);
+        for (String id : ids) {
+            args.add(UUID.randomUUID().toString());
+            args.add(promotionId);
+            args.add(id);
+        }
+        return jdbcTemplate.update(sql, args.toArray());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.project.stationery_be_server.repository;
+
+import com.project.stationery_be_server.entity.Notification;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Ghi hàng loạt user_promotion + notification bằng JDBC batch khi phát voucher cho mọi user.
+ * (Cần rewriteBatchedStatements=true trong URL MySQL để driver gộp thành multi-row INSERT.)
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PromotionFanOutRepository {
+    private static final String USER_PAGE_SQL = """
+            SELECT u.user_id, u.device_token FROM `user` u
+            WHERE u.user_id > ?
+            ORDER BY u.user_id
+            LIMIT ?
+            """;
+    private static final String INSERT_USER_PROMOTION_SQL = """
+            INSERT INTO user_promotion (user_promotion_id, promotion_id, user_id) VALUES (?, ?, ?)
+            """;
+    private static final String INSERT_NOTIFICATION_SQL = """
+            INSERT INTO notification (id, user_id, title, message, target_id, type, is_read, created_at, user_promotion_id)
+            VALUES (?, ?, ?, ?, ?, ?, FALSE, NOW(), ?)
+            """;
+
+    JdbcTemplate jdbcTemplate;
+
+    public long countUsers() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM `user`", Long.class);
+        return count != null ? count : 0;
+    }
+
+    // Phân trang theo keyset (user_id > afterUserId) để trang sau không chậm dần như OFFSET
+    public List<UserTarget> findUserPage(String afterUserId, int limit) {
+        return jdbcTemplate.query(USER_PAGE_SQL,
+                (rs, rowNum) -> new UserTarget(rs.getString(1), rs.getString(2)),
+                afterUserId, limit);
+    }
+
+    public void insertUserPromotions(String promotionId, List<Assignment> assignments) {
+        jdbcTemplate.batchUpdate(INSERT_USER_PROMOTION_SQL, assignments, assignments.size(), (ps, a) -> {
+            ps.setString(1, a.userPromotionId());
+            ps.setString(2, promotionId);
+            ps.setString(3, a.userId());
+        });
+    }
+
+    public void insertPromotionNotifications(String promotionId, String title, String message, List<Assignment> assignments) {
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION_SQL, assignments, assignments.size(), (ps, a) -> {
+            ps.setString(1, a.notificationId());
+            ps.setString(2, a.userId());
+            ps.setString(3, title);
+            ps.setString(4, message);
+            ps.setString(5, promotionId);
+            ps.setString(6, Notification.NotificationType.PROMOTION.name());
+            ps.setString(7, a.userPromotionId());
+        });
+    }
+
+    public record UserTarget(String userId, String deviceToken) {
+    }
+
+    public record Assignment(String userId, String userPromotionId, String notificationId) {
+    }
+}
@@ -7,23 +7,56 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface PromotionRepository extends JpaRepository<Promotion, String>, JpaSpecificationExecutor<Promotion> {
     Optional<Promotion> findByPromoCode(String promoCode);
 
+    @Query("SELECT p FROM Promotion p WHERE p.endDate >= :now")
+    List<Promotion> findUnexpired(@Param("now") LocalDateTime now);
+
+    // Bộ đếm lượt dùng (PromotionUsageCounter) ghi delta đã gom xuống DB
     @Modifying
+    @Transactional
     @Query("UPDATE Promotion p " +
-           "SET p.usageLimit = p.usageLimit - 1 " +
-           "WHERE p.usageLimit is not null and  p.promotionId = :promotionId")
-    int reduceUsageCountByPromotionId(String promotionId);
+           "SET p.tempUsageLimit = p.tempUsageLimit + :delta " +
+           "WHERE p.tempUsageLimit is not null and  p.promotionId = :promotionId")
+    int addTempUsageLimit(@Param("promotionId") String promotionId, @Param("delta") int delta);
 
     @Modifying
+    @Transactional
     @Query("UPDATE Promotion p " +
-           "SET p.tempUsageLimit = p.tempUsageLimit + 1 " +
-           "WHERE p.tempUsageLimit is not null and  p.promotionId = :promotionId")
-    int increaseUsageCountByPromotionId(String promotionId);
+           "SET p.usageLimit = p.usageLimit - :count " +
+           "WHERE p.usageLimit is not null and  p.promotionId = :promotionId")
+    int reduceUsageCountBy(@Param("promotionId") String promotionId, @Param("count") int count);
+
+    @Query("SELECT p.tempUsageLimit FROM Promotion p WHERE p.promotionId = :promotionId")
+    Integer findTempUsageLimitById(@Param("promotionId") String promotionId);
+
+    // Số lượt dùng của cả lô đơn theo promotion_id: voucher sản phẩm (mỗi dòng) + voucher đơn hàng
+    @Query(value = """
+            SELECT used.promotion_id, SUM(used.cnt)
+            FROM (
+                SELECT pp.promotion_id, COUNT(*) AS cnt
+                FROM purchase_order_detail pod
+                JOIN product_promotion pp ON pod.product_promotion_id = pp.product_promotion_id
+                WHERE pod.purchase_order_id IN (:orderIds)
+                GROUP BY pp.promotion_id
+                UNION ALL
+                SELECT up.promotion_id, COUNT(*) AS cnt
+                FROM purchase_order po
+                JOIN user_promotion up ON po.user_promotion_id = up.user_promotion_id
+                WHERE po.purchase_order_id IN (:orderIds)
+                GROUP BY up.promotion_id
+            ) used
+            GROUP BY used.promotion_id
+            """, nativeQuery = true)
+    List<Object[]> countPromotionUsageForOrders(@Param("orderIds") Collection<String> orderIds);
 
     @Query("SELECT COUNT(pp) FROM ProductPromotion pp WHERE pp.promotion.promotionId = :promotionId")
     int countProductPromotionUsage(@Param("promotionId") String promotionId);
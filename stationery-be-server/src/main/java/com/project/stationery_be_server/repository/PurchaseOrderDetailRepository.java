@@ -3,12 +3,26 @@ package com.project.stationery_be_server.repository;
 import com.project.stationery_be_server.entity.PurchaseOrder;
 import com.project.stationery_be_server.entity.PurchaseOrderDetail;
 import com.project.stationery_be_server.entity.PurchaseOrderDetailId;
+import com.project.stationery_be_server.repository.projection.OrderLineRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface PurchaseOrderDetailRepository extends JpaRepository<PurchaseOrderDetail, String> {
     List<PurchaseOrderDetail> findByPurchaseOrder_PurchaseOrderId(String purchaseOrderId);
     long countByProductDetail_ProductDetailId(String productDetailId);
     List<PurchaseOrderDetail> findByPurchaseOrder(PurchaseOrder purchaseOrder);
+
+    @Query("SELECT new com.project.stationery_be_server.repository.projection.OrderLineRow(" +
+            "pod.purchaseOrderDetailId.purchaseOrderId, pod.purchaseOrderDetailId.productDetailId, pod.quantity) " +
+            "FROM PurchaseOrderDetail pod WHERE pod.purchaseOrderDetailId.purchaseOrderId IN :orderIds")
+    List<OrderLineRow> findLinesByPurchaseOrderIds(@Param("orderIds") Collection<String> orderIds);
+
+    @Modifying
+    @Query("DELETE FROM PurchaseOrderDetail pod WHERE pod.purchaseOrder.purchaseOrderId IN :orderIds")
+    int deleteByPurchaseOrderIds(@Param("orderIds") Collection<String> orderIds);
 }
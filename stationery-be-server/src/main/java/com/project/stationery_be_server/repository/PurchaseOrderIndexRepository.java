@@ -0,0 +1,32 @@
+package com.project.stationery_be_server.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Index phục vụ lịch sử đơn của user phân trang theo keyset (PurchaseOrderRepository.findOrderHistory /
+ * findOrderHistoryAfter): lọc user_id rồi đọc theo (created_at, purchase_order_id) giảm dần, không cần filesort.
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PurchaseOrderIndexRepository {
+    static final String HISTORY_INDEX = "idx_purchase_order_user_created";
+
+    JdbcTemplate jdbcTemplate;
+
+    // ddl-auto = none và chưa có công cụ migration: tạo index nếu chưa có, trả về true nếu vừa tạo
+    public boolean createHistoryIndexIfMissing() {
+        Integer existing = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.STATISTICS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'purchase_order' AND INDEX_NAME = ?
+                """, Integer.class, HISTORY_INDEX);
+        if (existing != null && existing > 0) return false;
+        jdbcTemplate.execute("CREATE INDEX " + HISTORY_INDEX
+                + " ON purchase_order (user_id, created_at, purchase_order_id)");
+        return true;
+    }
+}
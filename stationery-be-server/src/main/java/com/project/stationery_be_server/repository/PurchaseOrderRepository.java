@@ -1,24 +1,53 @@
 package com.project.stationery_be_server.repository;
 
 import com.project.stationery_be_server.entity.PurchaseOrder;
+import com.project.stationery_be_server.repository.projection.OrderHistoryRow;
+import com.project.stationery_be_server.repository.projection.OrderStatusCount;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface PurchaseOrderRepository extends JpaRepository<PurchaseOrder, String> {
     Optional<PurchaseOrder> findByPurchaseOrderId(String purchaseOrderId);
 
-    @Query("SELECT po FROM PurchaseOrder po LEFT JOIN FETCH po.purchaseOrderDetails WHERE po.user.userId = :userId AND po.status = :status")
-    List<PurchaseOrder> findByUser_UserIdAndStatusWithDetails(@Param("userId") String userId, @Param("status") PurchaseOrder.Status status);
+    // Lịch sử đơn của user phân trang theo keyset (created_at, purchase_order_id) giảm dần, status null = tất cả
+    @Query("SELECT new com.project.stationery_be_server.repository.projection.OrderHistoryRow(" +
+            "po.purchaseOrderId, po.createdAt, po.expiredTime, po.pdfUrl, up.userPromotionId, " +
+            "po.status, po.note, po.cancelReason, po.amount) " +
+            "FROM PurchaseOrder po LEFT JOIN po.userPromotion up " +
+            "WHERE po.user.userId = :userId " +
+            "AND (:status IS NULL OR po.status = :status) " +
+            "ORDER BY po.createdAt DESC, po.purchaseOrderId DESC")
+    List<OrderHistoryRow> findOrderHistory(@Param("userId") String userId,
+                                           @Param("status") PurchaseOrder.Status status,
+                                           Limit limit);
 
-    @Query("SELECT o FROM PurchaseOrder o LEFT JOIN FETCH o.purchaseOrderDetails WHERE o.user.userId = :userId")
-    List<PurchaseOrder> findByUser_UserIdWithDetails(@Param("userId") String userId);
+    @Query("SELECT new com.project.stationery_be_server.repository.projection.OrderHistoryRow(" +
+            "po.purchaseOrderId, po.createdAt, po.expiredTime, po.pdfUrl, up.userPromotionId, " +
+            "po.status, po.note, po.cancelReason, po.amount) " +
+            "FROM PurchaseOrder po LEFT JOIN po.userPromotion up " +
+            "WHERE po.user.userId = :userId " +
+            "AND (:status IS NULL OR po.status = :status) " +
+            "AND (po.createdAt < :createdAt OR (po.createdAt = :createdAt AND po.purchaseOrderId < :purchaseOrderId)) " +
+            "ORDER BY po.createdAt DESC, po.purchaseOrderId DESC")
+    List<OrderHistoryRow> findOrderHistoryAfter(@Param("userId") String userId,
+                                                @Param("status") PurchaseOrder.Status status,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("purchaseOrderId") String purchaseOrderId,
+                                                Limit limit);
+
+    @Query("SELECT new com.project.stationery_be_server.repository.projection.OrderStatusCount(po.status, COUNT(po)) " +
+            "FROM PurchaseOrder po WHERE po.user.userId = :userId GROUP BY po.status")
+    List<OrderStatusCount> countByStatusForUser(@Param("userId") String userId);
 
     List<PurchaseOrder> findByUser_UserIdAndCreatedAtBetween(String userId, LocalDateTime start, LocalDateTime end);
 
@@ -27,25 +56,28 @@ public interface PurchaseOrderRepository extends JpaRepository<PurchaseOrder, St
     @Query("SELECT po FROM PurchaseOrder po WHERE po.user.userId = :userId AND po.note LIKE %:note% ORDER BY po.createdAt DESC")
     PurchaseOrder findTopByUser_UserIdAndNoteContainingOrderByCreatedAtDesc(@Param("userId") String userId, @Param("note") String note);
 
-    @Query("SELECT po FROM PurchaseOrder po JOIN FETCH po.purchaseOrderDetails " +
-            "JOIN po.user u JOIN u.role r " +
-            "WHERE po.status = :status " +
-            "AND (:roleName IS NULL OR r.roleName = :roleName)")
-    Page<PurchaseOrder> findPendingOrdersByFilters(
-            @Param("roleName") String roleName,
-            @Param("status") PurchaseOrder.Status status,
-            Pageable pageable);
-
-    @Query("SELECT po FROM PurchaseOrder po " +
-            "JOIN FETCH po.purchaseOrderDetails " +
+    // Màn admin phân trang 2 bước: trang id đơn (LIMIT/OFFSET chạy trong SQL) rồi mới load chi tiết theo id.
+    // Không JOIN FETCH collection cùng Pageable, Hibernate sẽ đọc hết rồi cắt trang trong bộ nhớ.
+    @Query(value = "SELECT po.purchaseOrderId FROM PurchaseOrder po " +
             "JOIN po.user u JOIN u.role r " +
             "WHERE po.status IN :statuses " +
-            "AND (:roleName IS NULL OR r.roleName = :roleName)")
-    Page<PurchaseOrder> findNonPendingOrdersByFilters(
+            "AND (:roleName IS NULL OR r.roleName = :roleName)",
+            countQuery = "SELECT COUNT(po) FROM PurchaseOrder po " +
+                    "JOIN po.user u JOIN u.role r " +
+                    "WHERE po.status IN :statuses " +
+                    "AND (:roleName IS NULL OR r.roleName = :roleName)")
+    Page<String> findOrderIdsByFilters(
             @Param("roleName") String roleName,
-            @Param("statuses") List<PurchaseOrder.Status> statuses,
+            @Param("statuses") Collection<PurchaseOrder.Status> statuses,
             Pageable pageable);
 
+    @Query("SELECT DISTINCT po FROM PurchaseOrder po " +
+            "JOIN FETCH po.user " +
+            "LEFT JOIN FETCH po.purchaseOrderDetails " +
+            "LEFT JOIN FETCH po.userPromotion " +
+            "WHERE po.purchaseOrderId IN :orderIds")
+    List<PurchaseOrder> findWithDetailsByPurchaseOrderIds(@Param("orderIds") Collection<String> orderIds);
+
     List<PurchaseOrder> findByUser_UserIdAndCreatedAtLessThanEqualAndStatusIn(
             String userId,
             LocalDateTime endDate,
@@ -55,4 +87,8 @@ public interface PurchaseOrderRepository extends JpaRepository<PurchaseOrder, St
     List<PurchaseOrder> findByUser_UserId(String userId);
 
     List<PurchaseOrder> findByUser_UserIdAndStatus(String userId, PurchaseOrder.Status status);
+
+    @Modifying
+    @Query("DELETE FROM PurchaseOrder po WHERE po.purchaseOrderId IN :orderIds")
+    int deleteByPurchaseOrderIds(@Param("orderIds") Collection<String> orderIds);
 }
\ No newline at end of file
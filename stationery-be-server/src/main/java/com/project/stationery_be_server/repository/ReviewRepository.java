@@ -13,14 +13,6 @@ import java.util.Optional;
 public interface ReviewRepository extends JpaRepository<com.project.stationery_be_server.entity.Review, String> {
   Optional<Review> findByProductProductIdAndUserUserIdAndRatingIsNotNull(String productId, String userId);
 
-  // Đếm số lượng review có rating
-  @Query("SELECT COUNT(r) FROM Review r WHERE r.product.productId = :productId AND r.rating IS NOT NULL")
-  int countByProductId(String productId);
-
-  // Tính tổng số sao của tất cả các review có rating
-  @Query("SELECT COALESCE(SUM(r.rating), 0) FROM Review r WHERE r.product.productId = :productId AND r.rating IS NOT NULL")
-  int sumRatingByProductId(String productId);
-
   @Modifying // hiểu là truy vấn thay đổi dữ liệu
   @Transactional
   @Query(value = "INSERT INTO review (review_id, product_id, user_id, content, rating, parent_id, reply_on_user, create_at) " +
@@ -0,0 +1,132 @@
+package com.project.stationery_be_server.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lưu trữ cho bộ đếm từ khóa: snapshot số đếm (bảng search_keyword_stat, mốc giảm số đếm gần nhất ở
+ * search_keyword_stat_meta) và ghi search_history theo lô.
+ * Chỉ được gọi từ thread nền của SearchKeywordCounter, không nằm trên luồng request.
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SearchKeywordStatRepository {
+    // ddl-auto = none và repo chưa có công cụ migration nên tự tạo bảng snapshot nếu chưa có
+    private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS search_keyword_stat (
+                keyword VARCHAR(255) NOT NULL PRIMARY KEY,
+                search_count DOUBLE NOT NULL,
+                updated_at DATETIME NOT NULL
+            )
+            """;
+    // một dòng duy nhất (id = 1): thời điểm giảm số đếm gần nhất ứng với snapshot đang lưu
+    private static final String CREATE_META_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS search_keyword_stat_meta (
+                id TINYINT NOT NULL PRIMARY KEY,
+                last_decay_at DATETIME NOT NULL
+            )
+            """;
+    private static final String UPSERT_LAST_DECAY_SQL = """
+            INSERT INTO search_keyword_stat_meta (id, last_decay_at) VALUES (1, ?)
+            ON DUPLICATE KEY UPDATE last_decay_at = ?
+            """;
+    private static final String INSERT_HISTORY_SQL = """
+            INSERT INTO search_history (search_id, user_id, keyword, created_at) VALUES (?, ?, ?, ?)
+            """;
+    // Giữ 5 dòng mới nhất khi user có quá 30 dòng (giống cách dọn cũ trong logKeyword)
+    private static final String PRUNE_USER_SQL = """
+            DELETE FROM search_history
+            WHERE user_id = ?
+              AND created_at < (SELECT created_at FROM (
+                    SELECT created_at FROM search_history WHERE user_id = ?
+                    ORDER BY created_at DESC LIMIT 1 OFFSET 4) newest)
+              AND (SELECT total FROM (SELECT COUNT(*) AS total FROM search_history WHERE user_id = ?) counted) > 30
+            """;
+    private static final String PRUNE_ANONYMOUS_SQL = """
+            DELETE FROM search_history
+            WHERE user_id IS NULL
+              AND (SELECT total FROM (SELECT COUNT(*) AS total FROM search_history WHERE user_id IS NULL) counted) > 50
+            """;
+
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+
+    public void createTableIfMissing() {
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+        jdbcTemplate.execute(CREATE_META_TABLE_SQL);
+    }
+
+    public List<KeywordStat> loadSnapshot() {
+        return jdbcTemplate.query("SELECT keyword, search_count FROM search_keyword_stat",
+                (rs, rowNum) -> new KeywordStat(rs.getString(1), rs.getDouble(2)));
+    }
+
+    // null nếu chưa lưu snapshot nào
+    public LocalDateTime findLastDecayAt() {
+        List<LocalDateTime> rows = jdbcTemplate.query("SELECT last_decay_at FROM search_keyword_stat_meta WHERE id = 1",
+                (rs, rowNum) -> rs.getTimestamp(1).toLocalDateTime());
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    // Chỉ dùng một lần khi chưa có snapshot: lấy từ khóa phổ biến từ lịch sử cũ
+    public List<KeywordStat> findTopKeywordsFromHistory(int limit) {
+        return jdbcTemplate.query("""
+                        SELECT keyword, COUNT(*) AS search_count FROM search_history
+                        GROUP BY keyword ORDER BY search_count DESC LIMIT ?
+                        """,
+                (rs, rowNum) -> new KeywordStat(rs.getString(1), rs.getLong(2)), limit);
+    }
+
+    // Số đếm và mốc giảm lưu cùng transaction: lúc khởi động đọc lại luôn khớp nhau
+    public void replaceSnapshot(Collection<KeywordStat> stats, LocalDateTime lastDecayAt) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp decayedAt = Timestamp.valueOf(lastDecayAt);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(UPSERT_LAST_DECAY_SQL, decayedAt, decayedAt);
+            jdbcTemplate.update("DELETE FROM search_keyword_stat");
+            jdbcTemplate.batchUpdate("INSERT INTO search_keyword_stat (keyword, search_count, updated_at) VALUES (?, ?, ?)",
+                    stats, 500, (ps, stat) -> {
+                        ps.setString(1, stat.keyword());
+                        ps.setDouble(2, stat.count());
+                        ps.setTimestamp(3, now);
+                    });
+        });
+    }
+
+    public void insertHistory(List<HistoryRow> rows) {
+        jdbcTemplate.batchUpdate(INSERT_HISTORY_SQL, rows, 500, (ps, row) -> {
+            ps.setString(1, row.searchId());
+            ps.setString(2, row.userId());
+            ps.setString(3, row.keyword());
+            ps.setTimestamp(4, Timestamp.valueOf(row.createdAt()));
+        });
+    }
+
+    public void pruneUserHistory(Collection<String> userIds) {
+        jdbcTemplate.batchUpdate(PRUNE_USER_SQL, userIds, 100, (ps, userId) -> {
+            ps.setString(1, userId);
+            ps.setString(2, userId);
+            ps.setString(3, userId);
+        });
+    }
+
+    public void pruneAnonymousHistory() {
+        jdbcTemplate.update(PRUNE_ANONYMOUS_SQL);
+    }
+
+    public record KeywordStat(String keyword, double count) {
+    }
+
+    public record HistoryRow(String searchId, String userId, String keyword, LocalDateTime createdAt) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.project.stationery_be_server.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+// Nguồn dựng trie gợi ý tìm kiếm: sản phẩm đang hiển thị (kèm số đã bán)
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SearchSuggestionRepository {
+    private static final String PRODUCT_SQL = """
+            SELECT p.product_id, p.name, p.slug, COALESCE(p.sold_quantity, 0) FROM product p
+            WHERE p.hidden = FALSE
+            """;
+    private static final RowMapper<ProductSuggestion> PRODUCT_MAPPER = (rs, rowNum) ->
+            new ProductSuggestion(rs.getString(1), rs.getString(2), rs.getString(3), rs.getLong(4));
+
+    JdbcTemplate jdbcTemplate;
+
+    public List<ProductSuggestion> findVisibleProducts() {
+        return jdbcTemplate.query(PRODUCT_SQL, PRODUCT_MAPPER);
+    }
+
+    // Rỗng nếu sản phẩm đã bị ẩn hoặc xóa
+    public List<ProductSuggestion> findVisibleProduct(String productId) {
+        return jdbcTemplate.query(PRODUCT_SQL + " AND p.product_id = ?", PRODUCT_MAPPER, productId);
+    }
+
+    public record ProductSuggestion(String productId, String name, String slug, long soldQuantity) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.project.stationery_be_server.repository;
+
+import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.exception.AppException;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class StockReservationRepository {
+    private static final String RESERVE_SQL = """
+            UPDATE product_detail
+            SET available_quantity = available_quantity - ?
+            WHERE product_detail_id = ? AND available_quantity >= ?
+            """;
+
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * Giữ hàng cho tất cả dòng của đơn trong một JDBC batch, mỗi dòng là một UPDATE có điều kiện
+     * (giống reduceQuantity) nên không bao giờ bán vượt tồn kho.
+     * Nếu có dòng không đủ hàng thì ném PRODUCT_NOT_ENOUGH và rollback cả batch (cùng transaction của caller nếu có).
+     */
+    @Transactional
+    public void reserve(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        // khóa theo thứ tự id để 2 đơn cùng chứa các SKU giống nhau không deadlock
+        List<Map.Entry<String, Integer>> lines = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        int[][] counts = jdbcTemplate.batchUpdate(RESERVE_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setString(2, line.getKey());
+            ps.setInt(3, line.getValue());
+        });
+        for (int count : counts[0]) {
+            if (count == 0) {
+                throw new AppException(NotExistedErrorCode.PRODUCT_NOT_ENOUGH);
+            }
+        }
+    }
+}
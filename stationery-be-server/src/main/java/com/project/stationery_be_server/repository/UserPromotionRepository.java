@@ -3,11 +3,13 @@ package com.project.stationery_be_server.repository;
 import com.project.stationery_be_server.entity.Promotion;
 import com.project.stationery_be_server.entity.User;
 import com.project.stationery_be_server.entity.UserPromotion;
+import com.project.stationery_be_server.repository.projection.PromotionAssignmentRow;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -16,16 +18,6 @@ import org.springframework.data.domain.Pageable;
 
 public interface UserPromotionRepository extends JpaRepository<UserPromotion, String>  , JpaSpecificationExecutor<UserPromotion> {
 
-    @Query(value = """
-    SELECT up.* FROM user_promotion up
-    JOIN promotion p ON up.promotion_id = p.promotion_id
-    WHERE
-      p.start_date <= NOW()
-      AND p.end_date >= NOW()
-      AND up.user_id = :userId
-      AND (p.usage_limit IS NULL OR p.usage_limit > 0)
-    """, nativeQuery = true)
-    List<UserPromotion> findUserPromotionForUser(String userId);
     @Query(value = """
     SELECT up.* FROM user_promotion up
     JOIN promotion p ON up.promotion_id = p.promotion_id
@@ -43,6 +35,23 @@ public interface UserPromotionRepository extends JpaRepository<UserPromotion, St
     List<UserPromotion> findByUser(User user);
     Page<UserPromotion> findByUser(User user, Pageable pageable);
 
+    // Nạp ActivePromotionIndex: mọi gán user của promotion chưa hết hạn
+    @Query("""
+            SELECT new com.project.stationery_be_server.repository.projection.PromotionAssignmentRow(
+                up.promotion.promotionId, up.userPromotionId, up.user.userId)
+            FROM UserPromotion up
+            WHERE up.promotion.endDate >= :now
+            """)
+    List<PromotionAssignmentRow> findAssignmentsOfUnexpiredPromotions(@Param("now") LocalDateTime now);
+
+    @Query("""
+            SELECT new com.project.stationery_be_server.repository.projection.PromotionAssignmentRow(
+                up.promotion.promotionId, up.userPromotionId, up.user.userId)
+            FROM UserPromotion up
+            WHERE up.promotion.promotionId = :promotionId
+            """)
+    List<PromotionAssignmentRow> findAssignmentsByPromotionId(@Param("promotionId") String promotionId);
+
     // Trong UserPromotionRepository:
     boolean existsByUserAndPromotion(User user, Promotion promotion);
 
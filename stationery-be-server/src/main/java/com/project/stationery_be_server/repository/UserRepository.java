@@ -7,10 +7,13 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User,String>, JpaSpecificationExecutor<User> {
@@ -33,4 +36,9 @@ public interface UserRepository extends JpaRepository<User,String>, JpaSpecifica
 
     Optional<User> findByDeviceToken(String deviceToken);
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.deviceToken = NULL WHERE u.deviceToken IN :tokens")
+    int clearDeviceTokens(@Param("tokens") Collection<String> tokens);
+
 }
\ No newline at end of file
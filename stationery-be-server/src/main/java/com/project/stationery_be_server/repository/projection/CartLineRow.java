@@ -0,0 +1,8 @@
+package com.project.stationery_be_server.repository.projection;
+
+import java.util.Date;
+
+public record CartLineRow(String userId, String productId, String productDetailId, String productName,
+                          String colorName, String sizeName, Integer quantity, Integer originalPrice,
+                          Integer discountPrice, Date createdAt, String thumbnail, String slug) {
+}
@@ -0,0 +1,17 @@
+package com.project.stationery_be_server.repository.projection;
+
+import com.project.stationery_be_server.entity.PurchaseOrder;
+
+import java.time.LocalDateTime;
+
+// Các cột của purchase_order cần cho màn lịch sử đơn hàng, đọc thẳng bằng constructor expression (không load entity)
+public record OrderHistoryRow(String purchaseOrderId,
+                              LocalDateTime createdAt,
+                              LocalDateTime expiredTime,
+                              String pdfUrl,
+                              String userPromotionId,
+                              PurchaseOrder.Status status,
+                              String note,
+                              String cancelReason,
+                              Long amount) {
+}
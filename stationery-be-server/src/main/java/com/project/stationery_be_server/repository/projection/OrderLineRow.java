@@ -0,0 +1,4 @@
+package com.project.stationery_be_server.repository.projection;
+
+public record OrderLineRow(String purchaseOrderId, String productDetailId, Integer quantity) {
+}
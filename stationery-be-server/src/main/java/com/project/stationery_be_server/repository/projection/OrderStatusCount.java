@@ -0,0 +1,6 @@
+package com.project.stationery_be_server.repository.projection;
+
+import com.project.stationery_be_server.entity.PurchaseOrder;
+
+public record OrderStatusCount(PurchaseOrder.Status status, Long count) {
+}
@@ -0,0 +1,5 @@
+package com.project.stationery_be_server.repository.projection;
+
+// Một dòng product_promotion / user_promotion: targetId là productDetailId hoặc userId
+public record PromotionAssignmentRow(String promotionId, String assignmentId, String targetId) {
+}
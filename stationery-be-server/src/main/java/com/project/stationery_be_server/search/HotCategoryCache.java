@@ -0,0 +1,140 @@
+package com.project.stationery_be_server.search;
+
+import com.project.stationery_be_server.dto.response.CategoryResponse;
+import com.project.stationery_be_server.entity.Category;
+import com.project.stationery_be_server.repository.CategoryRepository;
+import com.project.stationery_be_server.repository.SearchKeywordStatRepository.KeywordStat;
+import com.project.stationery_be_server.utils.TransactionUtils;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Danh mục "hot" cho trang chủ, tính sẵn từ từ khóa tìm nhiều: mỗi từ khóa ánh xạ sang danh mục của sản phẩm
+ * liên quan nhất trong index tìm kiếm. Bảng keyword -> categoryId được giữ lại giữa các lần tính, chỉ từ khóa mới
+ * phải tra index; index đổi (sản phẩm sửa/xóa, dựng lại) thì tra lại hết. Danh mục nạp một truy vấn cho cả danh sách.
+ * Thread định kỳ chỉ tính lại khi top từ khóa, index hoặc danh mục thay đổi; request chỉ đọc danh sách dựng sẵn.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class HotCategoryCache {
+    static final int USER_KEYWORDS = 8;
+    static final int HOT_KEYWORDS = 20;
+
+    SearchKeywordCounter keywordCounter;
+    ProductSearchIndex productSearchIndex;
+    CategoryRepository categoryRepository;
+    // chỉ truy cập trên thread refresh; giá trị rỗng = từ khóa không khớp sản phẩm nào
+    Map<String, Optional<String>> categoryIdByKeyword = new HashMap<>();
+    Map<String, CategoryResponse> categoryById = new HashMap<>();
+    @NonFinal
+    List<String> lastKeywords = List.of();
+    @NonFinal
+    long lastIndexVersion = -1;
+    @NonFinal
+    volatile boolean categoriesChanged = true;
+    @NonFinal
+    volatile List<CategoryResponse> userCategories = List.of();
+    @NonFinal
+    volatile List<CategoryResponse> hotCategories = List.of();
+
+    public HotCategoryCache(SearchKeywordCounter keywordCounter,
+                            ProductSearchIndex productSearchIndex,
+                            CategoryRepository categoryRepository) {
+        this.keywordCounter = keywordCounter;
+        this.productSearchIndex = productSearchIndex;
+        this.categoryRepository = categoryRepository;
+    }
+
+    // Danh mục của 8 từ khóa tìm nhiều nhất
+    public List<CategoryResponse> userCategories() {
+        return userCategories;
+    }
+
+    // Danh mục của 20 từ khóa tìm nhiều nhất
+    public List<CategoryResponse> hotCategories() {
+        return hotCategories;
+    }
+
+    // Gọi sau khi danh mục sửa/xóa (tên, icon, màu hiển thị trên widget); tính lại sau khi transaction commit
+    public void invalidateCategories() {
+        TransactionUtils.afterCommit(() -> categoriesChanged = true);
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${search.hot-categories.refresh-interval-ms:5000}")
+    public void refresh() {
+        // chưa có index thì chưa ánh xạ được, giữ danh sách cũ chờ lần sau
+        if (!productSearchIndex.isReady()) return;
+        try {
+            List<String> keywords = keywordCounter.topKeywords(HOT_KEYWORDS).stream()
+                    .map(KeywordStat::keyword)
+                    .toList();
+            long indexVersion = productSearchIndex.version();
+            boolean indexChanged = indexVersion != lastIndexVersion;
+            if (!indexChanged && !categoriesChanged && keywords.equals(lastKeywords)) return;
+            // xóa cờ trước khi nạp danh mục, thay đổi xảy ra trong lúc nạp sẽ được tính ở lần sau
+            boolean reloadCategories = categoriesChanged;
+            categoriesChanged = false;
+
+            if (indexChanged) {
+                categoryIdByKeyword.clear();
+            }
+            for (String keyword : keywords) {
+                categoryIdByKeyword.computeIfAbsent(keyword, this::resolve);
+            }
+            // bỏ từ khóa đã rơi khỏi top để bảng không phình
+            categoryIdByKeyword.keySet().retainAll(keywords);
+
+            Set<String> categoryIds = keywords.stream()
+                    .map(categoryIdByKeyword::get)
+                    .flatMap(Optional::stream)
+                    .collect(Collectors.toSet());
+            // chỉ chạm DB khi danh mục vừa sửa hoặc có danh mục chưa nạp
+            if (reloadCategories || !categoryById.keySet().containsAll(categoryIds)) {
+                categoryById.clear();
+                categoryRepository.findAllById(categoryIds)
+                        .forEach(category -> categoryById.put(category.getCategoryId(), toCategoryResponse(category)));
+            }
+
+            userCategories = collect(keywords.subList(0, Math.min(USER_KEYWORDS, keywords.size())));
+            hotCategories = collect(keywords);
+            lastKeywords = keywords;
+            lastIndexVersion = indexVersion;
+        } catch (RuntimeException e) {
+            categoriesChanged = true;
+            log.warn("Refreshing hot categories failed, keeping the previous lists", e);
+        }
+    }
+
+    private Optional<String> resolve(String keyword) {
+        List<ProductSearchIndex.Hit> hits = productSearchIndex.search(keyword, 1);
+        return hits.isEmpty() ? Optional.empty() : Optional.ofNullable(hits.get(0).categoryId());
+    }
+
+    // Giữ thứ tự từ khóa, mỗi danh mục xuất hiện một lần
+    private List<CategoryResponse> collect(List<String> keywords) {
+        Map<String, CategoryResponse> ordered = new LinkedHashMap<>();
+        for (String keyword : keywords) {
+            categoryIdByKeyword.get(keyword)
+                    .map(categoryById::get)
+                    .ifPresent(category -> ordered.putIfAbsent(category.getCategoryId(), category));
+        }
+        return List.copyOf(ordered.values());
+    }
+
+    private static CategoryResponse toCategoryResponse(Category category) {
+        return CategoryResponse.builder()
+                .categoryId(category.getCategoryId())
+                .categoryName(category.getCategoryName())
+                .icon(category.getIcon())
+                .bgColor(category.getBgColor())
+                .build();
+    }
+}
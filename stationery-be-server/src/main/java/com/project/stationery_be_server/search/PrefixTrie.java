@@ -0,0 +1,135 @@
+package com.project.stationery_be_server.search;
+
+import java.util.*;
+
+/**
+ * Trie theo ký tự cho gợi ý khi gõ. Mỗi node giữ sẵn danh sách top-K gợi ý (theo trọng số) của cả nhánh,
+ * nên tra một tiền tố chỉ là đi xuống node rồi trả danh sách có sẵn. Một gợi ý có thể gắn nhiều key
+ * (tên đầy đủ, từ thứ 2 trở đi, slug); thêm/xóa chỉ tính lại top-K trên các đường đi bị ảnh hưởng.
+ * Không thread-safe, lớp gọi tự khóa.
+ */
+final class PrefixTrie {
+    private static final Comparator<Suggestion> BY_WEIGHT = Comparator.comparingDouble(Suggestion::weight).reversed()
+            .thenComparing(Suggestion::text);
+
+    private final int maxSuggestions;
+    private final Node root = new Node();
+    private final Map<String, Set<String>> keysById = new HashMap<>();
+
+    PrefixTrie(int maxSuggestions) {
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    // Dựng hàng loạt: chèn hết rồi tính top-K một lượt từ lá lên gốc
+    static PrefixTrie build(int maxSuggestions, Map<Suggestion, Set<String>> entries) {
+        PrefixTrie trie = new PrefixTrie(maxSuggestions);
+        entries.forEach((suggestion, keys) -> {
+            trie.keysById.put(suggestion.id(), keys);
+            for (String key : keys) {
+                trie.path(key, true).getLast().terminals.put(suggestion.id(), suggestion);
+            }
+        });
+        trie.computeAll(trie.root);
+        return trie;
+    }
+
+    void put(Suggestion suggestion, Set<String> keys) {
+        remove(suggestion.id());
+        keysById.put(suggestion.id(), keys);
+        for (String key : keys) {
+            List<Node> path = path(key, true);
+            path.getLast().terminals.put(suggestion.id(), suggestion);
+            recompute(path);
+        }
+    }
+
+    void remove(String id) {
+        Set<String> keys = keysById.remove(id);
+        if (keys == null) return;
+        for (String key : keys) {
+            List<Node> path = path(key, false);
+            if (path == null) continue;
+            path.getLast().terminals.remove(id);
+            recompute(path);
+            prune(key, path);
+        }
+    }
+
+    List<Suggestion> top(String prefix, int limit) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node == null) {
+            return List.of();
+        }
+        List<Suggestion> top = node.top;
+        return top.size() <= limit ? top : top.subList(0, limit);
+    }
+
+    int size() {
+        return keysById.size();
+    }
+
+    private List<Node> path(String key, boolean create) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                if (!create) return null;
+                child = new Node();
+                node.children.put(key.charAt(i), child);
+            }
+            node = child;
+            path.add(node);
+        }
+        return path;
+    }
+
+    private void recompute(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            compute(path.get(i));
+        }
+    }
+
+    // Bỏ các node lá rỗng sau khi xóa để trie không phình theo thời gian
+    private void prune(String key, List<Node> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node node = path.get(i);
+            if (!node.terminals.isEmpty() || !node.children.isEmpty()) break;
+            path.get(i - 1).children.remove(key.charAt(i - 1));
+        }
+    }
+
+    private void computeAll(Node node) {
+        for (Node child : node.children.values()) {
+            computeAll(child);
+        }
+        compute(node);
+    }
+
+    private void compute(Node node) {
+        // cùng một gợi ý có thể tới từ nhiều key trong nhánh, giữ một bản
+        Map<String, Suggestion> candidates = new HashMap<>(node.terminals);
+        for (Node child : node.children.values()) {
+            for (Suggestion suggestion : child.top) {
+                candidates.putIfAbsent(suggestion.id(), suggestion);
+            }
+        }
+        node.top = candidates.values().stream()
+                .sorted(BY_WEIGHT)
+                .limit(maxSuggestions)
+                .toList();
+    }
+
+    record Suggestion(String id, String text, String type, String slug, double weight) {
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>(4);
+        final Map<String, Suggestion> terminals = new HashMap<>(2);
+        List<Suggestion> top = List.of();
+    }
+}
@@ -0,0 +1,252 @@
+package com.project.stationery_be_server.search;
+
+import com.project.stationery_be_server.repository.ProductSearchRepository;
+import com.project.stationery_be_server.repository.ProductSearchRepository.SearchDocument;
+import com.project.stationery_be_server.utils.TransactionUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Inverted index trong bộ nhớ cho tìm kiếm sản phẩm: term (đã bỏ dấu) -> productId -> trọng số.
+ * Trọng số theo trường: tên sản phẩm > tên product detail > tên danh mục > mô tả; điểm kiểu BM25 (idf x tf bão hòa).
+ * Mọi thao tác ghi (dựng lại toàn bộ, cập nhật từng sản phẩm) chạy tuần tự trên một thread riêng;
+ * đọc dùng read lock. Khi index chưa dựng xong (isReady() = false) service quay về truy vấn LIKE trên DB.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ProductSearchIndex {
+    static final float NAME_WEIGHT = 3f;
+    static final float DETAIL_NAME_WEIGHT = 2f;
+    static final float CATEGORY_WEIGHT = 1.5f;
+    static final float DESCRIPTION_WEIGHT = 1f;
+    // từ cuối câu tìm được khớp theo tiền tố (đang gõ dở), điểm thấp hơn khớp nguyên từ
+    static final float PREFIX_FACTOR = 0.5f;
+    static final float SINGULAR_FACTOR = 0.8f;
+    static final int MIN_PREFIX_LENGTH = 2;
+    static final int MAX_PREFIX_EXPANSIONS = 50;
+
+    ProductSearchRepository searchRepository;
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    ExecutorService writer;
+    @NonFinal
+    Index index = new Index();
+    @NonFinal
+    volatile boolean ready;
+    // tăng sau mỗi lần index đổi nội dung; lớp dùng kết quả tìm kiếm để dựng cache so sánh để biết cần tính lại
+    @NonFinal
+    volatile long version;
+
+    public ProductSearchIndex(ProductSearchRepository searchRepository) {
+        this.searchRepository = searchRepository;
+        this.writer = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("product-search-index").daemon(true).factory());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    // Kết quả xếp theo độ liên quan giảm dần; ưu tiên sản phẩm khớp đủ mọi từ, không có thì lấy sản phẩm khớp một phần
+    public List<Hit> search(String query, int limit) {
+        List<String> tokens = SearchTextNormalizer.tokenize(query).stream().distinct().toList();
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            return index.search(tokens, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Dựng lại toàn bộ lúc khởi động và định kỳ, phòng trường hợp dữ liệu bị sửa ngoài ứng dụng
+    @Scheduled(initialDelay = 0, fixedDelayString = "${search.index.rebuild-interval-ms:3600000}")
+    public void scheduleRebuild() {
+        writer.execute(this::rebuild);
+    }
+
+    // Gọi sau khi sản phẩm / product detail thay đổi; nạp lại sau khi transaction commit
+    public void refreshProduct(String productId) {
+        if (productId == null) return;
+        TransactionUtils.afterCommit(() -> writer.execute(() ->
+                replace(List.of(productId), () -> searchRepository.findDocumentsByProductId(productId))));
+    }
+
+    // Đổi tên danh mục thì mọi sản phẩm trong danh mục đổi term
+    public void refreshCategory(String categoryId) {
+        if (categoryId == null) return;
+        TransactionUtils.afterCommit(() -> writer.execute(() -> {
+            List<String> productIds;
+            lock.readLock().lock();
+            try {
+                productIds = index.productIdsOfCategory(categoryId);
+            } finally {
+                lock.readLock().unlock();
+            }
+            replace(productIds, () -> searchRepository.findDocumentsByCategoryId(categoryId));
+        }));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        writer.shutdownNow();
+    }
+
+    private void rebuild() {
+        try {
+            long start = System.nanoTime();
+            Index fresh = new Index();
+            for (SearchDocument document : searchRepository.findAllDocuments()) {
+                fresh.add(document);
+            }
+            lock.writeLock().lock();
+            try {
+                index = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            version++;
+            log.info("Product search index built: {} products, {} terms in {} ms",
+                    fresh.documents.size(), fresh.postings.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            // giữ index cũ (hoặc để trống, service dùng DB) và thử lại ở lần định kỳ sau
+            log.error("Product search index rebuild failed", e);
+        }
+    }
+
+    private void replace(List<String> removedProductIds, Supplier<List<SearchDocument>> loader) {
+        try {
+            List<SearchDocument> documents = loader.get();
+            lock.writeLock().lock();
+            try {
+                removedProductIds.forEach(index::remove);
+                documents.forEach(index::add);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            version++;
+        } catch (RuntimeException e) {
+            log.warn("Product search index update for {} failed, will be fixed by the next rebuild", removedProductIds, e);
+        }
+    }
+
+    public record Hit(String productId, String categoryId, double score) {
+    }
+
+    private record Entry(String categoryId, Map<String, Float> termWeights) {
+    }
+
+    static final class Index {
+        final TreeMap<String, Map<String, Float>> postings = new TreeMap<>();
+        final Map<String, Entry> documents = new HashMap<>();
+
+        void add(SearchDocument document) {
+            Map<String, Float> weights = new HashMap<>();
+            addField(weights, document.name(), NAME_WEIGHT);
+            for (String detailName : document.detailNames()) {
+                addField(weights, detailName, DETAIL_NAME_WEIGHT);
+            }
+            addField(weights, document.categoryName(), CATEGORY_WEIGHT);
+            addField(weights, document.description(), DESCRIPTION_WEIGHT);
+
+            remove(document.productId());
+            documents.put(document.productId(), new Entry(document.categoryId(), weights));
+            weights.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, k -> new HashMap<>()).put(document.productId(), weight));
+        }
+
+        void remove(String productId) {
+            Entry old = documents.remove(productId);
+            if (old == null) return;
+            for (String term : old.termWeights().keySet()) {
+                Map<String, Float> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(productId);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+
+        List<String> productIdsOfCategory(String categoryId) {
+            List<String> productIds = new ArrayList<>();
+            documents.forEach((productId, entry) -> {
+                if (categoryId.equals(entry.categoryId())) {
+                    productIds.add(productId);
+                }
+            });
+            return productIds;
+        }
+
+        List<Hit> search(List<String> tokens, int limit) {
+            Map<String, double[]> scores = new HashMap<>();
+            Map<String, Integer> matchedTokens = new HashMap<>();
+            for (int i = 0; i < tokens.size(); i++) {
+                Map<String, Double> tokenScores = new HashMap<>();
+                String token = tokens.get(i);
+                collect(tokenScores, token, 1f);
+                if (token.length() > 3 && token.endsWith("s")) {
+                    collect(tokenScores, token.substring(0, token.length() - 1), SINGULAR_FACTOR);
+                }
+                if (i == tokens.size() - 1 && token.length() >= MIN_PREFIX_LENGTH) {
+                    int expansions = 0;
+                    for (String term : postings.subMap(token, false, token + Character.MAX_VALUE, false).keySet()) {
+                        if (++expansions > MAX_PREFIX_EXPANSIONS) break;
+                        collect(tokenScores, term, PREFIX_FACTOR);
+                    }
+                }
+                tokenScores.forEach((productId, score) -> {
+                    scores.computeIfAbsent(productId, k -> new double[1])[0] += score;
+                    matchedTokens.merge(productId, 1, Integer::sum);
+                });
+            }
+
+            int required = tokens.size();
+            boolean anyFullMatch = matchedTokens.containsValue(required);
+            return scores.entrySet().stream()
+                    .filter(e -> !anyFullMatch || matchedTokens.get(e.getKey()) == required)
+                    .sorted(Comparator.<Map.Entry<String, double[]>>comparingInt(e -> -matchedTokens.get(e.getKey()))
+                            .thenComparingDouble(e -> -e.getValue()[0])
+                            .thenComparing(Map.Entry::getKey))
+                    .limit(limit)
+                    .map(e -> new Hit(e.getKey(), documents.get(e.getKey()).categoryId(), e.getValue()[0]))
+                    .toList();
+        }
+
+        // Mỗi từ trong câu tìm chỉ tính cách khớp tốt nhất cho từng sản phẩm (nguyên từ / số ít / tiền tố)
+        private void collect(Map<String, Double> tokenScores, String term, float factor) {
+            Map<String, Float> posting = postings.get(term);
+            if (posting == null) return;
+            double idf = Math.log(1 + (documents.size() - posting.size() + 0.5) / (posting.size() + 0.5));
+            posting.forEach((productId, weight) -> {
+                double score = factor * idf * (weight * 2.2) / (weight + 1.2);
+                tokenScores.merge(productId, score, Math::max);
+            });
+        }
+
+        private static void addField(Map<String, Float> weights, String text, float fieldWeight) {
+            for (String token : SearchTextNormalizer.tokenize(text)) {
+                weights.merge(token, fieldWeight, Float::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.project.stationery_be_server.search;
+
+import com.project.stationery_be_server.repository.SearchKeywordStatRepository;
+import com.project.stationery_be_server.repository.SearchKeywordStatRepository.HistoryRow;
+import com.project.stationery_be_server.repository.SearchKeywordStatRepository.KeywordStat;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Đếm từ khóa tìm kiếm phổ biến bằng Space-Saving: giữ tối đa `capacity` từ khóa, khi đầy thì từ mới thay chỗ
+ * từ có số đếm nhỏ nhất (kế thừa số đếm đó làm sai số). Số đếm giảm theo cấp số nhân sau mỗi cửa sổ thời gian
+ * để từ khóa đang "hot" vượt lên từ khóa cũ.
+ *
+ * record() chỉ offer vào hàng đợi có giới hạn (đầy thì bỏ, không chặn request). Một thread nền gom hàng đợi mỗi
+ * flush-interval: cập nhật bộ đếm, ghi search_history theo lô và dọn lịch sử; định kỳ lưu snapshot số đếm xuống DB.
+ * Bộ đếm chỉ được sửa trên thread nền đó nên không cần khóa; đọc top-K là danh sách bất biến dựng sẵn.
+ * Mốc giảm số đếm gần nhất được lưu cùng snapshot, nên khởi động lại không dời lịch giảm và các cửa sổ
+ * trôi qua lúc ứng dụng tắt được bù ngay khi nạp.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SearchKeywordCounter {
+    static final int MAX_DRAIN = 5_000;
+    static final int MAX_KEYWORD_LENGTH = 255;
+    // số đếm sau khi giảm dưới ngưỡng này thì bỏ hẳn, nhường chỗ cho từ khóa mới
+    static final double MIN_COUNT = 0.1;
+
+    SearchKeywordStatRepository statRepository;
+    int capacity;
+    double decayFactor;
+    long flushIntervalMs;
+    long decayWindowMs;
+    long snapshotIntervalMs;
+    BlockingQueue<HistoryRow> pending;
+    ScheduledExecutorService worker;
+    AtomicLong dropped = new AtomicLong();
+    // chỉ truy cập trên thread worker: keyword -> {count, error}
+    Map<String, double[]> counts = new HashMap<>();
+    @NonFinal
+    volatile List<KeywordStat> top = List.of();
+    // chỉ truy cập trên thread worker
+    @NonFinal
+    LocalDateTime lastDecayAt = LocalDateTime.now();
+
+    public SearchKeywordCounter(SearchKeywordStatRepository statRepository,
+                                @Value("${search.keywords.capacity:1000}") int capacity,
+                                @Value("${search.keywords.queue-capacity:10000}") int queueCapacity,
+                                @Value("${search.keywords.decay-factor:0.5}") double decayFactor,
+                                @Value("${search.keywords.flush-interval-ms:1000}") long flushIntervalMs,
+                                @Value("${search.keywords.decay-window-ms:86400000}") long decayWindowMs,
+                                @Value("${search.keywords.snapshot-interval-ms:300000}") long snapshotIntervalMs) {
+        this.statRepository = statRepository;
+        this.capacity = capacity;
+        this.decayFactor = decayFactor;
+        this.flushIntervalMs = flushIntervalMs;
+        this.decayWindowMs = decayWindowMs;
+        this.snapshotIntervalMs = snapshotIntervalMs;
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        this.worker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("search-keyword-counter").daemon(true).factory());
+    }
+
+    @PostConstruct
+    void start() {
+        // loadSnapshot tự hẹn lịch decay sau khi biết mốc giảm gần nhất
+        worker.execute(this::loadSnapshot);
+        worker.scheduleWithFixedDelay(this::drain, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        worker.scheduleWithFixedDelay(this::persist, snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // O(1), không chặn: hàng đợi đầy thì bỏ lượt tìm này (chỉ là số liệu thống kê)
+    public void record(String keyword, String userId) {
+        if (keyword == null || keyword.isBlank()) return;
+        String normalized = keyword.trim().toLowerCase();
+        if (normalized.length() > MAX_KEYWORD_LENGTH) {
+            normalized = normalized.substring(0, MAX_KEYWORD_LENGTH);
+        }
+        HistoryRow row = new HistoryRow(UUID.randomUUID().toString(), userId, normalized, LocalDateTime.now());
+        if (!pending.offer(row)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    // Từ khóa phổ biến nhất, số đếm đã giảm theo thời gian
+    public List<KeywordStat> topKeywords(int limit) {
+        List<KeywordStat> snapshot = top;
+        return snapshot.size() <= limit ? snapshot : snapshot.subList(0, limit);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // gom nốt hàng đợi và lưu snapshot trước khi tắt
+        Future<?> last = worker.submit(() -> {
+            drain();
+            persist();
+        });
+        try {
+            last.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Final search keyword flush failed", e);
+        }
+        worker.shutdownNow();
+    }
+
+    private void loadSnapshot() {
+        LocalDateTime now = LocalDateTime.now();
+        lastDecayAt = now;
+        try {
+            statRepository.createTableIfMissing();
+            List<KeywordStat> stats = statRepository.loadSnapshot();
+            if (stats.isEmpty()) {
+                stats = statRepository.findTopKeywordsFromHistory(capacity);
+            } else {
+                LocalDateTime savedDecayAt = statRepository.findLastDecayAt();
+                if (savedDecayAt != null && savedDecayAt.isBefore(now)) {
+                    lastDecayAt = savedDecayAt;
+                }
+            }
+            for (KeywordStat stat : stats) {
+                if (counts.size() >= capacity) break;
+                counts.put(stat.keyword(), new double[]{stat.count(), 0});
+            }
+            // bù các cửa sổ đã trôi qua trong lúc ứng dụng tắt
+            long missed = Duration.between(lastDecayAt, now).toMillis() / decayWindowMs;
+            if (missed > 0) {
+                applyDecay(Math.pow(decayFactor, missed));
+                lastDecayAt = lastDecayAt.plus(Duration.ofMillis(missed * decayWindowMs));
+            }
+            refreshTop();
+            log.info("Search keyword counter loaded {} keywords", counts.size());
+        } catch (RuntimeException e) {
+            log.error("Loading search keyword snapshot failed, starting empty", e);
+        }
+        // lần giảm kế tiếp tính từ mốc đã lưu, không phải từ lúc khởi động
+        long initialDelay = Math.max(0, Duration.between(now, lastDecayAt).toMillis() + decayWindowMs);
+        worker.scheduleAtFixedRate(this::decay, initialDelay, decayWindowMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        List<HistoryRow> batch = new ArrayList<>();
+        pending.drainTo(batch, MAX_DRAIN);
+        if (batch.isEmpty()) return;
+        for (HistoryRow row : batch) {
+            increment(row.keyword());
+        }
+        refreshTop();
+
+        try {
+            statRepository.insertHistory(batch);
+            Set<String> userIds = new HashSet<>();
+            boolean anonymous = false;
+            for (HistoryRow row : batch) {
+                if (row.userId() != null) {
+                    userIds.add(row.userId());
+                } else {
+                    anonymous = true;
+                }
+            }
+            if (!userIds.isEmpty()) {
+                statRepository.pruneUserHistory(userIds);
+            }
+            if (anonymous) {
+                statRepository.pruneAnonymousHistory();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Writing {} search history rows failed", batch.size(), e);
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            log.warn("Search keyword queue full, dropped {} searches", lost);
+        }
+    }
+
+    private void increment(String keyword) {
+        double[] entry = counts.get(keyword);
+        if (entry != null) {
+            entry[0] += 1;
+            return;
+        }
+        if (counts.size() < capacity) {
+            counts.put(keyword, new double[]{1, 0});
+            return;
+        }
+        // Space-Saving: thay từ khóa có số đếm nhỏ nhất
+        String minKeyword = null;
+        double minCount = Double.MAX_VALUE;
+        for (Map.Entry<String, double[]> candidate : counts.entrySet()) {
+            if (candidate.getValue()[0] < minCount) {
+                minCount = candidate.getValue()[0];
+                minKeyword = candidate.getKey();
+            }
+        }
+        counts.remove(minKeyword);
+        counts.put(keyword, new double[]{minCount + 1, minCount});
+    }
+
+    private void decay() {
+        applyDecay(decayFactor);
+        lastDecayAt = LocalDateTime.now();
+        refreshTop();
+    }
+
+    private void applyDecay(double factor) {
+        counts.values().forEach(entry -> {
+            entry[0] *= factor;
+            entry[1] *= factor;
+        });
+        counts.values().removeIf(entry -> entry[0] < MIN_COUNT);
+    }
+
+    private void persist() {
+        try {
+            statRepository.replaceSnapshot(top, lastDecayAt);
+        } catch (RuntimeException e) {
+            log.warn("Saving search keyword snapshot failed", e);
+        }
+    }
+
+    private void refreshTop() {
+        top = counts.entrySet().stream()
+                .map(entry -> new KeywordStat(entry.getKey(), entry.getValue()[0]))
+                .sorted(Comparator.comparingDouble(KeywordStat::count).reversed()
+                        .thenComparing(KeywordStat::keyword))
+                .toList();
+    }
+}
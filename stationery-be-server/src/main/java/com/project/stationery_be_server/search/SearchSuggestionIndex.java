@@ -0,0 +1,181 @@
+package com.project.stationery_be_server.search;
+
+import com.project.stationery_be_server.dto.response.SuggestionResponse;
+import com.project.stationery_be_server.repository.SearchSuggestionRepository;
+import com.project.stationery_be_server.repository.SearchKeywordStatRepository.KeywordStat;
+import com.project.stationery_be_server.repository.SearchSuggestionRepository.ProductSuggestion;
+import com.project.stationery_be_server.search.PrefixTrie.Suggestion;
+import com.project.stationery_be_server.utils.TransactionUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Gợi ý khi gõ (/search/suggest) từ trie trong bộ nhớ, không chạm MySQL lúc tra.
+ * Nguồn: tên + slug sản phẩm đang hiển thị (trọng số theo số đã bán) và các từ khóa tìm nhiều lấy từ
+ * SearchKeywordCounter (trọng số theo số lần tìm đã giảm theo thời gian). Mỗi tên được gắn key từ đầu câu và từ các từ tiếp theo, nên "bi" cũng gợi ý "bút bi".
+ * Sản phẩm tạo/sửa/ẩn/xóa được cập nhật riêng sau commit; toàn bộ trie dựng lại định kỳ để lấy số bán, từ khóa mới.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SearchSuggestionIndex {
+    static final int MAX_SUGGESTIONS = 10;
+    static final int MAX_WORD_STARTS = 4;
+    static final int MAX_KEY_LENGTH = 64;
+    static final String PRODUCT = "PRODUCT";
+    static final String KEYWORD = "KEYWORD";
+
+    SearchSuggestionRepository suggestionRepository;
+    SearchKeywordCounter keywordCounter;
+    int keywordLimit;
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    ExecutorService writer;
+    @NonFinal
+    PrefixTrie trie = new PrefixTrie(MAX_SUGGESTIONS);
+
+    public SearchSuggestionIndex(SearchSuggestionRepository suggestionRepository,
+                                 SearchKeywordCounter keywordCounter,
+                                 @Value("${search.suggest.keyword-limit:1000}") int keywordLimit) {
+        this.suggestionRepository = suggestionRepository;
+        this.keywordCounter = keywordCounter;
+        this.keywordLimit = keywordLimit;
+        this.writer = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("search-suggest-index").daemon(true).factory());
+    }
+
+    public List<SuggestionResponse> suggest(String prefix, int limit) {
+        String key = toKey(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        // "but " (có dấu cách) chỉ gợi ý cụm bắt đầu bằng nguyên từ "but"
+        if (Character.isWhitespace(prefix.charAt(prefix.length() - 1)) && key.length() < MAX_KEY_LENGTH) {
+            key = key + " ";
+        }
+        int size = Math.clamp(limit, 1, MAX_SUGGESTIONS);
+        List<Suggestion> suggestions;
+        lock.readLock().lock();
+        try {
+            suggestions = trie.top(key, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return suggestions.stream()
+                .map(suggestion -> SuggestionResponse.builder()
+                        .text(suggestion.text())
+                        .type(suggestion.type())
+                        .slug(suggestion.slug())
+                        .build())
+                .toList();
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${search.suggest.rebuild-interval-ms:600000}")
+    public void scheduleRebuild() {
+        writer.execute(this::rebuild);
+    }
+
+    // Gọi khi sản phẩm được tạo, đổi tên, ẩn/hiện hoặc xóa
+    public void refreshProduct(String productId) {
+        if (productId == null) return;
+        TransactionUtils.afterCommit(() -> writer.execute(() -> {
+            try {
+                List<ProductSuggestion> products = suggestionRepository.findVisibleProduct(productId);
+                lock.writeLock().lock();
+                try {
+                    if (products.isEmpty()) {
+                        trie.remove(productSuggestionId(productId));
+                    } else {
+                        ProductSuggestion product = products.get(0);
+                        trie.put(toSuggestion(product), productKeys(product));
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Search suggestion update for product {} failed, will be fixed by the next rebuild", productId, e);
+            }
+        }));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        writer.shutdownNow();
+    }
+
+    private void rebuild() {
+        try {
+            long start = System.nanoTime();
+            Map<Suggestion, Set<String>> entries = new HashMap<>();
+            Set<String> productNames = new HashSet<>();
+            for (ProductSuggestion product : suggestionRepository.findVisibleProducts()) {
+                entries.put(toSuggestion(product), productKeys(product));
+                productNames.add(toKey(product.name()));
+            }
+            for (KeywordStat keyword : keywordCounter.topKeywords(keywordLimit)) {
+                String key = toKey(keyword.keyword());
+                // từ khóa trùng tên sản phẩm thì gợi ý sản phẩm là đủ
+                if (key.isEmpty() || productNames.contains(key)) continue;
+                Suggestion suggestion = new Suggestion("k:" + key, keyword.keyword(), KEYWORD, null,
+                        Math.log1p(keyword.count()));
+                entries.put(suggestion, keys(keyword.keyword()));
+            }
+            PrefixTrie fresh = PrefixTrie.build(MAX_SUGGESTIONS, entries);
+            lock.writeLock().lock();
+            try {
+                trie = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Search suggestion trie built: {} entries in {} ms",
+                    fresh.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Search suggestion trie rebuild failed", e);
+        }
+    }
+
+    private static Suggestion toSuggestion(ProductSuggestion product) {
+        // +1 để sản phẩm chưa bán vẫn đứng trên từ khóa chỉ được tìm một lần
+        return new Suggestion(productSuggestionId(product.productId()), product.name(), PRODUCT, product.slug(),
+                1 + Math.log1p(product.soldQuantity()));
+    }
+
+    private static String productSuggestionId(String productId) {
+        return "p:" + productId;
+    }
+
+    private static Set<String> productKeys(ProductSuggestion product) {
+        Set<String> keys = keys(product.name());
+        if (product.slug() != null) {
+            keys.addAll(keys(product.slug()));
+        }
+        return keys;
+    }
+
+    private static Set<String> keys(String text) {
+        Set<String> keys = new LinkedHashSet<>();
+        List<String> tokens = SearchTextNormalizer.tokenize(text);
+        for (int start = 0; start < tokens.size() && start < MAX_WORD_STARTS; start++) {
+            keys.add(truncate(String.join(" ", tokens.subList(start, tokens.size()))));
+        }
+        return keys;
+    }
+
+    private static String toKey(String text) {
+        return truncate(String.join(" ", SearchTextNormalizer.tokenize(text)));
+    }
+
+    private static String truncate(String key) {
+        return key.length() <= MAX_KEY_LENGTH ? key : key.substring(0, MAX_KEY_LENGTH);
+    }
+}
@@ -0,0 +1,101 @@
+package com.project.stationery_be_server.security;
+
+import com.project.stationery_be_server.entity.InvalidatedToken;
+import com.project.stationery_be_server.repository.InvalidatedTokenRepository;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Danh sách JWT đã thu hồi (logout), theo jti. Bảng invalidated_token là nguồn chuẩn; trong bộ nhớ chỉ giữ
+ * Bloom filter của các jti chưa hết hạn. Token hợp lệ (trường hợp gần như mọi request) bị loại ngay ở filter,
+ * chỉ khi filter báo "có thể" mới hỏi DB. Filter nạp lại định kỳ từ bảng để thấy cả token bị thu hồi ở instance khác,
+ * bản ghi hết hạn được xóa định kỳ nên bảng và filter không phình theo thời gian.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TokenRevocationList {
+    InvalidatedTokenRepository invalidatedTokenRepository;
+    int expectedInsertions;
+    double falsePositiveRate;
+    // thu hồi trên instance này (jti -> hạn), chép sang mỗi filter mới để không mất trong lúc nạp lại
+    ConcurrentHashMap<String, LocalDateTime> recent = new ConcurrentHashMap<>();
+    @NonFinal
+    volatile BloomFilter filter;
+    @NonFinal
+    volatile boolean ready;
+
+    public TokenRevocationList(InvalidatedTokenRepository invalidatedTokenRepository,
+                               @Value("${jwt.revocation.expected-insertions:100000}") int expectedInsertions,
+                               @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.invalidatedTokenRepository = invalidatedTokenRepository;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = BloomFilter.create(expectedInsertions, falsePositiveRate);
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null) return false;
+        // chưa nạp xong lần đầu thì filter chưa đủ, hỏi DB
+        if (ready && !filter.mightContain(jti)) return false;
+        return invalidatedTokenRepository.existsById(jti);
+    }
+
+    // Trả về false nếu token đã bị thu hồi trước đó. expiresAt: thời điểm token không còn dùng/refresh được nữa
+    public boolean revoke(String jti, LocalDateTime expiresAt) {
+        if (invalidatedTokenRepository.existsById(jti)) {
+            return false;
+        }
+        // đưa vào filter trước khi ghi DB: lỗi ghi chỉ gây "có thể" sai, không bao giờ để lọt token đã thu hồi
+        recent.put(jti, expiresAt);
+        filter.put(jti);
+        invalidatedTokenRepository.save(new InvalidatedToken(jti, expiresAt));
+        return true;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${jwt.revocation.reload-interval-ms:60000}")
+    public void reload() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<String> activeIds = invalidatedTokenRepository.findActiveIds(now);
+            BloomFilter fresh = BloomFilter.create(Math.max(expectedInsertions, activeIds.size() * 2), falsePositiveRate);
+            activeIds.forEach(fresh::put);
+            recent.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+            recent.keySet().forEach(fresh::put);
+            filter = fresh;
+            // token thu hồi xen giữa hai bước trên chỉ vào filter cũ; chép lại lần nữa sau khi đổi
+            recent.keySet().forEach(fresh::put);
+            ready = true;
+            if (activeIds.size() > expectedInsertions) {
+                log.warn("{} active revoked tokens exceed jwt.revocation.expected-insertions={}",
+                        activeIds.size(), expectedInsertions);
+            }
+        } catch (RuntimeException e) {
+            // giữ filter cũ; lần đầu lỗi thì ready vẫn false và mọi lần kiểm tra đi thẳng xuống DB
+            log.error("Reloading revoked token filter failed", e);
+        }
+    }
+
+    // Token hết hạn thì bộ giải mã đã từ chối, bản ghi thu hồi không còn tác dụng
+    @Scheduled(initialDelayString = "${jwt.revocation.purge-interval-ms:3600000}",
+            fixedDelayString = "${jwt.revocation.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        try {
+            int deleted = invalidatedTokenRepository.deleteExpired(LocalDateTime.now());
+            if (deleted > 0) {
+                log.info("Purged {} expired revoked tokens", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Purging expired revoked tokens failed", e);
+        }
+    }
+}
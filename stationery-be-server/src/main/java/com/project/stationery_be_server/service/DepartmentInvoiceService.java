@@ -3,12 +3,15 @@ package com.project.stationery_be_server.service;
 import com.project.stationery_be_server.dto.response.InvoiceResponse;
 import com.project.stationery_be_server.dto.response.momo.MomoResponse;
 import com.project.stationery_be_server.dto.response.MonthlyInvoiceSummaryResponse;
+import com.project.stationery_be_server.dto.response.PdfJobResponse;
 
 import java.util.List;
 
 public interface DepartmentInvoiceService {
     MonthlyInvoiceSummaryResponse getCurrentMonthInvoiceSummary(String userId);
-    String generateCurrentInvoicePdf(String userId);
+    // Trả về job sinh PDF (chạy nền), hỏi trạng thái qua getPdfJob
+    PdfJobResponse generateCurrentInvoicePdf(String userId);
+    PdfJobResponse getPdfJob(String userId, String jobId);
     MomoResponse payCurrentInvoice(String userId);
     List<String> checkOverdueInvoices(String userId);
     List<InvoiceResponse> getAllInvoices(String userId);
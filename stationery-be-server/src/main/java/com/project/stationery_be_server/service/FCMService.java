@@ -1,5 +1,10 @@
 package com.project.stationery_be_server.service;
 
+import java.util.List;
+
 public interface FCMService {
     void sendNotification(String deviceToken, String title, String message);
+
+    // Gửi cùng một thông báo tới tối đa 500 token trong một request, trả về số token gửi thành công
+    int sendMulticast(List<String> deviceTokens, String title, String message);
 }
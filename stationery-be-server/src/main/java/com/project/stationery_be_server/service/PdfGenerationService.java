@@ -6,5 +6,21 @@ import java.time.LocalDateTime;
 
 public interface PdfGenerationService {
     String generateAndUploadInvoicePdf(PurchaseOrder purchaseOrder);
-    String generateAndUploadCurrentInvoicePdf(String userId, LocalDateTime startDate, LocalDateTime endDate);
-}
\ No newline at end of file
+
+    // Hóa đơn phòng ban trong kỳ: render (stream dòng hàng từ DB) + upload; ném ORDER_NOT_FOUND nếu không có dòng nào
+    // cần thanh toán. Nội dung giống hệt lần render trước (cùng hash) thì trả lại file đã upload
+    RenderResult renderAndUploadCurrentInvoice(String userId, LocalDateTime startDate, LocalDateTime endDate);
+
+    // Phần đầu + tổng của hóa đơn, không giữ dòng hàng (dòng được stream lại khi render).
+    // contentHash: SHA-256 của nội dung hiển thị (không gồm ngày in), dùng để biết có cần render lại không
+    record CurrentInvoice(String userId, String userName, String department,
+                          LocalDateTime startDate, LocalDateTime endDate,
+                          int orderCount, int totalItems, int lineCount, long totalAmount, String contentHash) {
+    }
+
+    record InvoiceLine(String orderId, String productName, int quantity, long unitPrice) {
+    }
+
+    record RenderResult(String url, String contentHash, boolean reused) {
+    }
+}
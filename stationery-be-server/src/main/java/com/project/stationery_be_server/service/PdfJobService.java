@@ -0,0 +1,12 @@
+package com.project.stationery_be_server.service;
+
+import com.project.stationery_be_server.dto.response.PdfJobResponse;
+
+import java.util.function.Supplier;
+
+public interface PdfJobService {
+    // Xếp job sinh PDF vào hàng đợi và trả về ngay; owner đã có job cùng loại đang chờ/chạy thì trả lại job đó
+    PdfJobResponse submit(String ownerId, String type, Supplier<PdfGenerationService.RenderResult> task);
+
+    PdfJobResponse getJob(String ownerId, String jobId);
+}
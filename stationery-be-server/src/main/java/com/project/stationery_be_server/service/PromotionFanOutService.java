@@ -0,0 +1,10 @@
+package com.project.stationery_be_server.service;
+
+import com.project.stationery_be_server.dto.response.promotion.PromotionFanOutResponse;
+
+public interface PromotionFanOutService {
+    // Phát voucher + thông báo cho mọi user ở background, bắt đầu sau khi transaction hiện tại commit
+    void startForAllUsers(String promotionId);
+
+    PromotionFanOutResponse getProgress(String promotionId);
+}
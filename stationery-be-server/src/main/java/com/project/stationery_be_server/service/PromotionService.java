@@ -3,6 +3,7 @@ package com.project.stationery_be_server.service;
 import com.project.stationery_be_server.dto.request.DeletePromotionRequest;
 import com.project.stationery_be_server.dto.request.PromotionRequest;
 import com.project.stationery_be_server.dto.request.UpdatePromotionRequest;
+import com.project.stationery_be_server.dto.response.promotion.PromotionAssignmentResponse;
 import com.project.stationery_be_server.dto.response.promotion.PromotionResponse;
 import com.project.stationery_be_server.entity.ProductPromotion;
 import com.project.stationery_be_server.dto.response.ColorResponse;
@@ -21,7 +22,7 @@ public interface PromotionService {
     List<Promotion> getAvailablePromotions(User user, BigDecimal orderTotal);
     BigDecimal calculateDiscount(Promotion promotion, BigDecimal orderTotal);
     void deletePromotion(DeletePromotionRequest request);
-    void createPromotion(PromotionRequest request);
+    PromotionAssignmentResponse createPromotion(PromotionRequest request);
     void updatePromotion(UpdatePromotionRequest request);
     Page<Promotion> getMyVouchers(Pageable pageable);
     Page<UserPromotion> getAllUserVouchers(Pageable pageable);
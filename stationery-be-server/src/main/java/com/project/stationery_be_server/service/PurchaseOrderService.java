@@ -2,6 +2,7 @@ package com.project.stationery_be_server.service;
 
 import com.project.stationery_be_server.dto.request.order.PurchaseOrderRequest;
 import com.project.stationery_be_server.dto.response.momo.MomoResponse;
+import com.project.stationery_be_server.dto.response.PurchaseOrderHistoryResponse;
 import com.project.stationery_be_server.dto.response.PurchaseOrderResponse;
 import com.project.stationery_be_server.dto.response.product.ProductDetailResponse;
 import com.project.stationery_be_server.entity.PurchaseOrder;
@@ -12,7 +13,7 @@ import java.util.List;
 import java.util.Map;
 
 public interface PurchaseOrderService {
-    List<PurchaseOrderResponse> getUserOrdersByStatus(String userId, String status);
+    PurchaseOrderHistoryResponse getUserOrdersByStatus(String userId, String status, String cursor, int size);
     List<ProductDetailResponse> getProductDetailsByOrderId(String purchaseOrderId);
 
     PurchaseOrderResponse getPurchaseOrderDetails(String purchaseOrderId);
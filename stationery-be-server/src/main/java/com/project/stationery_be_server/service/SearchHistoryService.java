@@ -1,6 +1,7 @@
 package com.project.stationery_be_server.service;
 
 import com.project.stationery_be_server.dto.response.CategoryResponse;
+import com.project.stationery_be_server.dto.response.SuggestionResponse;
 
 import java.util.List;
 
@@ -9,4 +10,5 @@ public interface SearchHistoryService {
     void logKeyword(String keyword, String UserId);
     List<CategoryResponse> getTop8UserCategories();
     List<CategoryResponse> getTop24HotCategories();
+    List<SuggestionResponse> suggest(String prefix, int limit);
 }
@@ -44,7 +44,7 @@ public class AuthenticateServiceImpl implements AuthenticateService {
             throw new AppException(AuthErrorCode.UNAUTHENTICATED);
         }
         // Generate tokens
-        String accessToken = jwtUtils.generateToken(user.getUserId());
+        String accessToken = jwtUtils.generateToken(user.getUserId(), user.getRole());
         return LoginResponse.builder()
                 .accessToken(accessToken)
                 .userData(userMapper.toUserResponse(user))
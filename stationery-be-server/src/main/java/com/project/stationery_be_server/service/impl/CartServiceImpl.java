@@ -6,7 +6,9 @@ import com.project.stationery_be_server.dto.request.UpdateCartItemRequest;
 import com.project.stationery_be_server.dto.response.CartResponse;
 import com.project.stationery_be_server.entity.*;
 import com.project.stationery_be_server.exception.AppException;
+import com.project.stationery_be_server.pricing.CartPricing;
 import com.project.stationery_be_server.repository.*;
+import com.project.stationery_be_server.repository.projection.CartLineRow;
 import com.project.stationery_be_server.service.CartService;
 import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
@@ -20,7 +22,6 @@ import org.springframework.stereotype.Service;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -30,8 +31,7 @@ public class CartServiceImpl implements CartService {
     CartRepository cartRepository;
     UserRepository userRepository;
     ProductDetailRepository productDetailRepository;
-    ProductPromotionRepository productPromotionRepository;
-    ImageRepository imageRepository;
+    CartPricing cartPricing;
 
     // Lấy userId từ SecurityContext
     private String getCurrentUserId() {
@@ -137,83 +137,37 @@ public class CartServiceImpl implements CartService {
     @Override
     public List<CartResponse> viewCart() {
         String userId = getCurrentUserId();
-        List<Cart> carts = cartRepository.findByUserId(userId);
-
-        return carts.stream()
-                .map(this::mapToCartResponse)
-                .collect(Collectors.toList());
+        return cartPricing.price(cartRepository.findLinesByUserId(userId));
     }
 
     // 5. Xem tất cả giỏ hàng (admin)
     @Override
     public List<CartResponse> viewAllCarts() {
-        List<Cart> carts = cartRepository.findAll();
-        return carts.stream()
-                .map(this::mapToCartResponse)
-                .collect(Collectors.toList());
+        return cartPricing.price(cartRepository.findAllLines());
     }
 
     private CartResponse mapToCartResponse(Cart cart) {
         ProductDetail productDetail = cart.getProductDetail();
-        // Lấy ảnh đầu tiên (ưu tiên ảnh có priority thấp nhất nếu đã @OrderBy)
-        String imageUrl = null;
-
-        if (productDetail.getProduct() != null && productDetail.getColor() != null) {
-            List<Image> images = imageRepository.findByProduct_ProductIdAndColor_ColorIdOrderByPriorityAsc(
-                    productDetail.getProduct().getProductId(),
-                    productDetail.getColor().getColorId()
-            );
-            if (!images.isEmpty()) {
-                imageUrl = images.get(0).getUrl(); // lấy ảnh đầu tiên theo độ ưu tiên
-            }
-        }
-        List<ProductPromotion> pm = productPromotionRepository.findValidPromotionForProductDetail(productDetail.getProductDetailId(), String.valueOf(productDetail.getDiscountPrice()));
-        int discountValue = 0;
-        int disCountPrice = productDetail.getDiscountPrice();
-        if(pm != null && !pm.isEmpty()) {
-            Promotion currentPromotion = pm.getFirst().getPromotion();
-            if (currentPromotion.getDiscountType() == Promotion.DiscountType.PERCENTAGE) {
-                // giam %
-                int valueDisCount = (productDetail.getDiscountPrice() * currentPromotion.getDiscountValue()) / 100;
-                if (currentPromotion.getMaxValue()!= null && valueDisCount > currentPromotion.getMaxValue()) { // neu so tien  vuot qua max value
-                    discountValue = currentPromotion.getMaxValue();
-                } else {
-                    discountValue = valueDisCount;
-                }
-            } else {
-                // giam theo gia tri
-                discountValue = currentPromotion.getDiscountValue();
-            }
-            disCountPrice -= discountValue;
-        }
-        return  CartResponse.builder()
-                .userId(cart.getUser().getUserId())
-                .productId(productDetail.getProduct().getProductId())
-                .productDetailId(productDetail.getProductDetailId())
-                .productName(productDetail.getProduct().getName())
-                .productPromotion(pm)
-                .colorName(productDetail.getColor() != null ? productDetail.getColor().getName() : null)
-                .sizeName(productDetail.getSize() != null ? productDetail.getSize().getName() : null)
-                .quantity(cart.getQuantity())
-                .originalPrice(productDetail.getOriginalPrice())
-                .discountPrice(disCountPrice)
-                .discountValue(discountValue)
-                .createdAt(cart.getCreatedAt())
-                .imageUrl(productDetail.getThumbnail())
-                .slug(productDetail.getSlug())
-                .build();
+        CartLineRow line = new CartLineRow(
+                cart.getUser().getUserId(),
+                productDetail.getProduct().getProductId(),
+                productDetail.getProductDetailId(),
+                productDetail.getProduct().getName(),
+                productDetail.getColor() != null ? productDetail.getColor().getName() : null,
+                productDetail.getSize() != null ? productDetail.getSize().getName() : null,
+                cart.getQuantity(),
+                productDetail.getOriginalPrice(),
+                productDetail.getDiscountPrice(),
+                cart.getCreatedAt(),
+                productDetail.getThumbnail(),
+                productDetail.getSlug()
+        );
+        return cartPricing.price(List.of(line)).getFirst();
     }
 
     @Override
     public int calculateCartTotal() {
         String userId = getCurrentUserId();
-        List<Cart> carts = cartRepository.findByUserId(userId);
-
-        return carts.stream()
-                .mapToInt(cart -> {
-                    ProductDetail productDetail = cart.getProductDetail();
-                    return productDetail.getDiscountPrice() * cart.getQuantity();
-                })
-                .sum();
+        return Math.toIntExact(cartRepository.sumDiscountPriceByUserId(userId));
     }
-}
\ No newline at end of file
+}
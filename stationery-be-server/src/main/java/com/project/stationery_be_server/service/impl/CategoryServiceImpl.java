@@ -10,6 +10,8 @@ import com.project.stationery_be_server.entity.Size;
 import com.project.stationery_be_server.exception.AppException;
 import com.project.stationery_be_server.mapper.CategoryMapper;
 import com.project.stationery_be_server.repository.CategoryRepository;
+import com.project.stationery_be_server.search.HotCategoryCache;
+import com.project.stationery_be_server.search.ProductSearchIndex;
 import com.project.stationery_be_server.service.CategoryService;
 import com.project.stationery_be_server.specification.CategorySpecification;
 import com.project.stationery_be_server.specification.SizeSpecification;
@@ -32,6 +34,8 @@ import java.util.Optional;
 public class CategoryServiceImpl implements CategoryService {
     CategoryRepository categoryRepository;
     CategoryMapper categoryMapper;
+    ProductSearchIndex productSearchIndex;
+    HotCategoryCache hotCategoryCache;
 
     @Override
     @Transactional(readOnly = true)
@@ -69,11 +73,17 @@ public class CategoryServiceImpl implements CategoryService {
             throw new AppException(NotExistedErrorCode.CATEGORY_NAME_EXITS);
         }
 
+        boolean renamed = !category.getCategoryName().equals(request.getCategoryName());
         category.setCategoryName(request.getCategoryName());
         category.setIcon(request.getIcon());
         category.setBgColor(request.getBgColor());
 
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        if (renamed) {
+            productSearchIndex.refreshCategory(categoryId);
+        }
+        hotCategoryCache.invalidateCategories();
+        return saved;
     }
 
     @Override
@@ -87,6 +97,7 @@ public class CategoryServiceImpl implements CategoryService {
         }
 
         categoryRepository.delete(category);
+        hotCategoryCache.invalidateCategories();
     }
 
     @Override
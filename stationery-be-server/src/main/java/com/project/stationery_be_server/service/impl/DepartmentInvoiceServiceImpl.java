@@ -1,28 +1,30 @@
 package com.project.stationery_be_server.service.impl;
 
 import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.Scheduled.OrderCleanupService;
+import com.project.stationery_be_server.cache.PromotionUsageCounter;
 import com.project.stationery_be_server.dto.request.MomoRequest;
 import com.project.stationery_be_server.dto.response.InvoiceResponse;
 import com.project.stationery_be_server.dto.response.momo.MomoResponse;
 import com.project.stationery_be_server.dto.response.MonthlyInvoiceSummaryResponse;
+import com.project.stationery_be_server.dto.response.PdfJobResponse;
 import com.project.stationery_be_server.entity.*;
 import com.project.stationery_be_server.exception.AppException;
+import com.project.stationery_be_server.gateway.MomoGatewayClient;
+import com.project.stationery_be_server.gateway.MomoSigner;
 import com.project.stationery_be_server.repository.*;
 import com.project.stationery_be_server.service.PdfGenerationService;
+import com.project.stationery_be_server.service.PdfJobService;
 import com.project.stationery_be_server.service.DepartmentInvoiceService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.NonFinal;
-import org.apache.hc.client5.http.utils.Hex;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -34,32 +36,31 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class DepartmentInvoiceServiceImpl implements DepartmentInvoiceService {
-    WebClient webClient;
+    static final String CURRENT_INVOICE_JOB = "CURRENT_INVOICE";
+
+    MomoGatewayClient momoGatewayClient;
+    MomoSigner momoSigner;
+    TransactionTemplate transactionTemplate;
+    OrderCleanupService orderCleanupService;
     PurchaseOrderRepository purchaseOrderRepository;
     UserRepository userRepository;
     PdfGenerationService pdfGenerationService;
+    PdfJobService pdfJobService;
     PaymentRepository paymentRepository;
     ProductDetailRepository productDetailRepository;
     PurchaseOrderDetailRepository purchaseOrderDetailRepository;
     PromotionRepository promotionRepository;
     InOrderRepository inOrderRepository;
+    PromotionUsageCounter promotionUsageCounter;
 
     @Value("${momo.partnerCode}")
     @NonFinal String partnerCode;
-    @Value("${momo.accessKey}")
-    @NonFinal String accessKey;
-    @Value("${momo.secretKey}")
-    @NonFinal String secretKey;
     @Value("${momo.redirectUrl}")
     @NonFinal String redirectUrl;
     @Value("${momo.ipnUrl}")
     @NonFinal String ipnUrl;
     @Value("${momo.requestType}")
     @NonFinal String requestType;
-    @Value("${momo.endpoint}")
-    @NonFinal String endpoint;
-    @Value("${momo.urlCheckTransaction}")
-    @NonFinal String urlCheckTransaction;
 
     @Transactional(readOnly = true)
     @Override
@@ -109,39 +110,74 @@ public class DepartmentInvoiceServiceImpl implements DepartmentInvoiceService {
                 .collect(Collectors.toList());
     }
 
-    @Transactional
+    // Chỉ kiểm tra quyền rồi xếp job; đọc dữ liệu, render, upload và ghi đơn tổng hợp chạy trên worker PDF
     @Override
-    public String generateCurrentInvoicePdf(String userId) {
+    public PdfJobResponse generateCurrentInvoicePdf(String userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new AppException(NotExistedErrorCode.USER_NOT_EXISTED));
         if (!user.getRole().getRoleId().equals("113")) {
             throw new AppException(NotExistedErrorCode.USER_EXISTED);
         }
+        return pdfJobService.submit(userId, CURRENT_INVOICE_JOB, () -> generateCurrentInvoice(userId));
+    }
 
+    @Override
+    public PdfJobResponse getPdfJob(String userId, String jobId) {
+        return pdfJobService.getJob(userId, jobId);
+    }
+
+    private PdfGenerationService.RenderResult generateCurrentInvoice(String userId) {
         PurchaseOrder lastInvoice = purchaseOrderRepository.findTopByUser_UserIdAndNoteContainingOrderByCreatedAtDesc(
                 userId, "Monthly invoice");
         LocalDateTime startDate = lastInvoice != null ? lastInvoice.getCreatedAt() : LocalDateTime.now().minusMonths(1);
         LocalDateTime endDate = LocalDateTime.now();
 
-        String pdfUrl = pdfGenerationService.generateAndUploadCurrentInvoicePdf(userId, startDate, endDate);
-        PurchaseOrder summaryOrder = PurchaseOrder.builder()
-                .purchaseOrderId(UUID.randomUUID().toString().replace("-", "").toUpperCase())
-                .user(user)
-                .status(PurchaseOrder.Status.COMPLETED)
-                .amount(getCurrentMonthInvoiceSummary(userId).getTotalAmount().longValue())
-                .createdAt(LocalDateTime.now())
-                .note("Monthly invoice from " + startDate.toLocalDate() + " to " + endDate.toLocalDate())
-                .pdfUrl(pdfUrl)
-                .purchaseOrderDetails(new ArrayList<>())
-                .build();
-
-        purchaseOrderRepository.save(summaryOrder);
-        return pdfUrl;
+        PdfGenerationService.RenderResult result =
+                pdfGenerationService.renderAndUploadCurrentInvoice(userId, startDate, endDate);
+        if (result.reused()) {
+            // cùng nội dung với lần xuất trước: đơn tổng hợp của lần đó đã có, không ghi thêm
+            return result;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            PurchaseOrder summaryOrder = PurchaseOrder.builder()
+                    .purchaseOrderId(UUID.randomUUID().toString().replace("-", "").toUpperCase())
+                    .user(userRepository.getReferenceById(userId))
+                    .status(PurchaseOrder.Status.COMPLETED)
+                    .amount(getCurrentMonthInvoiceSummary(userId).getTotalAmount().longValue())
+                    .createdAt(LocalDateTime.now())
+                    .note("Monthly invoice from " + startDate.toLocalDate() + " to " + endDate.toLocalDate())
+                    .pdfUrl(result.url())
+                    .purchaseOrderDetails(new ArrayList<>())
+                    .build();
+            purchaseOrderRepository.save(summaryOrder);
+        });
+        return result;
     }
 
-    @Transactional
     @Override
     public MomoResponse payCurrentInvoice(String userId) {
+        String orderId = UUID.randomUUID().toString().replace("-", "").toUpperCase();
+        String requestId = UUID.randomUUID().toString();
+        // ghi đơn tổng hợp + in_order trong transaction riêng, commit xong mới gọi MoMo
+        MomoRequest requestMomo = transactionTemplate.execute(status -> preparePayment(userId, orderId, requestId));
+
+        MomoResponse response;
+        try {
+            response = momoGatewayClient.createPayment(requestMomo).block();
+        } catch (RuntimeException e) {
+            orderCleanupService.discardUnpaidOrders(List.of(orderId));
+            throw e;
+        }
+        if (response == null || response.getPayUrl() == null) {
+            orderCleanupService.discardUnpaidOrders(List.of(orderId));
+            throw new AppException(NotExistedErrorCode.PAYMENT_GATEWAY_UNAVAILABLE);
+        }
+        inOrderRepository.updatePaymentUrl(orderId, response.getPayUrl());
+
+        return response;
+    }
+
+    private MomoRequest preparePayment(String userId, String orderId, String requestId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new AppException(NotExistedErrorCode.USER_NOT_EXISTED));
         if (!user.getRole().getRoleId().equals("113")) {
@@ -175,35 +211,29 @@ public class DepartmentInvoiceServiceImpl implements DepartmentInvoiceService {
             throw new AppException(NotExistedErrorCode.ORDER_NOT_PAY);
         }
 
-        String orderId = UUID.randomUUID().toString().replace("-", "").toUpperCase();
         PurchaseOrder monthlyOrder = PurchaseOrder.builder()
                 .purchaseOrderId(orderId)
                 .user(user)
                 .status(PurchaseOrder.Status.PENDING) // Set to PENDING until payment is confirmed
                 .amount(totalAmount)
                 .createdAt(LocalDateTime.now())
-                .note("Monthly payment from " + startDate.toLocalDate() + " to " + endDate.toLocalDate())
+                .note("Monthly payment from " + startDate.toLocalDate() + " to " + endDate.toLocalDate()
+                        + " | MoMo Request ID: " + requestId)
                 .purchaseOrderDetails(new ArrayList<>())
                 .build();
 
         purchaseOrderRepository.save(monthlyOrder);
+        inOrderRepository.save(InOrder.builder()
+                .orderId(orderId)
+                .user(user)
+                .expiredTime(LocalDateTime.now().plusMinutes(2))
+                .build());
 
         String orderInfo = "Monthly payment from " + startDate.toLocalDate() + " to " + endDate.toLocalDate() + " - Department: " + userId;
-        String requestId = UUID.randomUUID().toString();
         String extraData = "monthly_payment";
-        String rawSignature = "accessKey=" + accessKey + "&amount=" + totalAmount + "&extraData=" + extraData +
-                "&ipnUrl=" + ipnUrl + "&orderId=" + orderId + "&orderInfo=" + orderInfo +
-                "&partnerCode=" + partnerCode + "&redirectUrl=" + redirectUrl + "&requestId=" + requestId +
-                "&requestType=" + requestType;
-
-        String signature;
-        try {
-            signature = generateHmacSignature(rawSignature, secretKey);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate signature: " + e.getMessage());
-        }
+        String signature = momoSigner.signCreatePayment(totalAmount, extraData, orderId, orderInfo, requestId);
 
-        MomoRequest requestMomo = MomoRequest.builder()
+        return MomoRequest.builder()
                 .partnerCode(partnerCode)
                 .requestType(requestType)
                 .redirectUrl(redirectUrl)
@@ -216,49 +246,21 @@ public class DepartmentInvoiceServiceImpl implements DepartmentInvoiceService {
                 .signature(signature)
                 .lang("vi")
                 .build();
-
-        MomoResponse response = webClient
-                .post()
-                .uri(endpoint)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(requestMomo)
-                .retrieve()
-                .bodyToMono(MomoResponse.class)
-                .block();
-
-        InOrder inOrder = InOrder.builder()
-                .orderId(orderId)
-                .user(user)
-                .expiredTime(LocalDateTime.now().plusMinutes(2))
-                .paymentUrl(response.getPayUrl())
-                .build();
-        inOrderRepository.save(inOrder);
-
-        monthlyOrder.setNote(monthlyOrder.getNote() + " | MoMo Request ID: " + requestId);
-        purchaseOrderRepository.save(monthlyOrder);
-
-        return response;
     }
 
-    @Transactional
     public MomoResponse transactionStatus(String orderId, Integer status) {
         if (orderId == null || orderId.isEmpty()) {
             throw new IllegalArgumentException("Missing input");
         }
 
-        PurchaseOrder monthlyOrder = purchaseOrderRepository.findByPurchaseOrderId(orderId)
-                .orElseThrow(() -> new AppException(NotExistedErrorCode.ORDER_NOT_FOUND));
-        InOrder inOrder = inOrderRepository.findById(orderId)
-                .orElseThrow(() -> new AppException(NotExistedErrorCode.IN_ORDER_NOT_FOUND));
-
-        String rawSignature = String.format("accessKey=%s&orderId=%s&partnerCode=%s&requestId=%s",
-                accessKey, orderId, partnerCode, orderId);
-        String signature;
-        try {
-            signature = generateHmacSignature(rawSignature, secretKey);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate signature: " + e.getMessage());
+        if (!purchaseOrderRepository.existsById(orderId)) {
+            throw new AppException(NotExistedErrorCode.ORDER_NOT_FOUND);
         }
+        if (!inOrderRepository.existsById(orderId)) {
+            throw new AppException(NotExistedErrorCode.IN_ORDER_NOT_FOUND);
+        }
+
+        String signature = momoSigner.signQuery(orderId, orderId);
 
         MomoRequest momoRequest = MomoRequest.builder()
                 .requestId(orderId)
@@ -268,22 +270,24 @@ public class DepartmentInvoiceServiceImpl implements DepartmentInvoiceService {
                 .signature(signature)
                 .build();
 
-        MomoResponse data = webClient.post()
-                .uri(urlCheckTransaction)
-                .header("Content-Type", "application/json; charset=UTF-8")
-                .bodyValue(momoRequest)
-                .retrieve()
-                .bodyToMono(MomoResponse.class)
-                .block();
+        MomoResponse data = momoGatewayClient.queryTransaction(momoRequest).block();
 
         if (data == null) {
             throw new RuntimeException("Not paid yet");
         }
 
+        transactionTemplate.executeWithoutResult(tx -> applyTransactionStatus(orderId, data, status));
+        return data;
+    }
+
+    private void applyTransactionStatus(String orderId, MomoResponse data, Integer status) {
+        PurchaseOrder monthlyOrder = purchaseOrderRepository.findByPurchaseOrderId(orderId)
+                .orElseThrow(() -> new AppException(NotExistedErrorCode.ORDER_NOT_FOUND));
+
         boolean isCanceled = (data.getResultCode() == 1006 || status == 0);
         if (isCanceled) {
             rollbackOrder(monthlyOrder, orderId);
-            return data;
+            return;
         }
 
         if (data.getResultCode() == 0) {
@@ -292,8 +296,6 @@ public class DepartmentInvoiceServiceImpl implements DepartmentInvoiceService {
             }
             handleSuccessfulPayment(monthlyOrder, orderId);
         }
-
-        return data;
     }
 
     private void rollbackOrder(PurchaseOrder monthlyOrder, String orderId) {
@@ -322,12 +324,12 @@ public class DepartmentInvoiceServiceImpl implements DepartmentInvoiceService {
                     throw new AppException(NotExistedErrorCode.PRODUCT_NOT_ENOUGH);
                 }
                 if (detail.getProductPromotion() != null) {
-                    promotionRepository.reduceUsageCountByPromotionId(
+                    promotionUsageCounter.consume(
                             detail.getProductPromotion().getPromotion().getPromotionId());
                 }
             }
             if (order.getUserPromotion() != null) {
-                promotionRepository.reduceUsageCountByPromotionId(
+                promotionUsageCounter.consume(
                         order.getUserPromotion().getPromotion().getPromotionId());
             }
             order.setStatus(PurchaseOrder.Status.COMPLETED);
@@ -376,11 +378,4 @@ public class DepartmentInvoiceServiceImpl implements DepartmentInvoiceService {
 
         return notifications;
     }
-
-    private String generateHmacSignature(String data, String key) throws Exception {
-        Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secret_key = new SecretKeySpec(key.getBytes("UTF-8"), "HmacSHA256");
-        sha256_HMAC.init(secret_key);
-        return Hex.encodeHexString(sha256_HMAC.doFinal(data.getBytes("UTF-8")));
-    }
 }
\ No newline at end of file
@@ -1,14 +1,14 @@
 package com.project.stationery_be_server.service.impl;
 
-import com.google.firebase.messaging.FirebaseMessaging;
-import com.google.firebase.messaging.FirebaseMessagingException;
-import com.google.firebase.messaging.Message;
-import com.google.firebase.messaging.Notification;
+import com.google.firebase.messaging.*;
 import com.project.stationery_be_server.repository.UserRepository;
 import com.project.stationery_be_server.service.FCMService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 public class FCMServiceImpl implements FCMService {
@@ -45,5 +45,44 @@ public class FCMServiceImpl implements FCMService {
             }
         }
     }
-}
 
+    @Override
+    public int sendMulticast(List<String> deviceTokens, String title, String message) {
+        if (deviceTokens.isEmpty()) {
+            return 0;
+        }
+        if (deviceTokens.size() > 500) {
+            throw new IllegalArgumentException("FCM multicast supports at most 500 tokens per request");
+        }
+        MulticastMessage msg = MulticastMessage.builder()
+                .addAllTokens(deviceTokens)
+                .setNotification(Notification.builder()
+                        .setTitle(title)
+                        .setBody(message)
+                        .build())
+                .build();
+
+        BatchResponse response;
+        try {
+            response = FirebaseMessaging.getInstance().sendEachForMulticast(msg);
+        } catch (FirebaseMessagingException e) {
+            e.printStackTrace();
+            return 0;
+        }
+
+        // Token không còn hợp lệ thì xóa khỏi user bằng một câu UPDATE
+        List<String> invalidTokens = new ArrayList<>();
+        List<SendResponse> responses = response.getResponses();
+        for (int i = 0; i < responses.size(); i++) {
+            FirebaseMessagingException e = responses.get(i).getException();
+            if (e != null && (e.getMessagingErrorCode() == MessagingErrorCode.UNREGISTERED
+                    || e.getMessagingErrorCode() == MessagingErrorCode.INVALID_ARGUMENT)) {
+                invalidTokens.add(deviceTokens.get(i));
+            }
+        }
+        if (!invalidTokens.isEmpty()) {
+            userRepository.clearDeviceTokens(invalidTokens);
+        }
+        return response.getSuccessCount();
+    }
+}
@@ -13,7 +13,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 @Service
@@ -57,31 +57,41 @@ public class NotificationServiceImpl implements NotificationService {
         }
     }
 
+    // 1. Danh sách các tiêu đề (titles)
+    private static final List<String> PROMOTION_TITLES = Arrays.asList(
+            "New Offer Just For You!",
+            "Exclusive Promotion Inside!",
+            "Your New Discount Awaits!",
+            "Flash Sale Alert!",
+            "Big Savings Are Here!",
+            "Special Deal Unlocked!"
+    );
+
+    // 2. Danh sách các nội dung (messages)
+    private static final List<String> PROMOTION_MESSAGES = Arrays.asList(
+            "You have a new promotion available! Tap to reveal your exclusive discount.",
+            "Good news! We've got a brand-new offer just for you. Don't miss out on these amazing savings!",
+            "Unlock incredible deals with our latest promotion! Check it out now before it's gone.",
+            "As a valued customer, we've prepared a special promotion exclusively for you. Click here to claim your reward!",
+            "Your shopping just got better! A new promotion has been added to your account, offering fantastic discounts on your favorite items."
+    );
+
+    // 3. Chọn ngẫu nhiên một tiêu đề và một nội dung (fan-out dùng chung một cặp cho cả đợt gửi)
+    static PromotionText randomPromotionText() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new PromotionText(
+                PROMOTION_TITLES.get(random.nextInt(PROMOTION_TITLES.size())),
+                PROMOTION_MESSAGES.get(random.nextInt(PROMOTION_MESSAGES.size())));
+    }
+
+    record PromotionText(String title, String message) {
+    }
+
     @Override
     public void notifyPromotion(UserPromotion userPromotion) {
-        // 1. Danh sách các tiêu đề (titles)
-        List<String> titles = Arrays.asList(
-                "New Offer Just For You!",
-                "Exclusive Promotion Inside!",
-                "Your New Discount Awaits!",
-                "Flash Sale Alert!",
-                "Big Savings Are Here!",
-                "Special Deal Unlocked!"
-        );
-
-        // 2. Danh sách các nội dung (messages)
-        List<String> messages = Arrays.asList(
-                "You have a new promotion available! Tap to reveal your exclusive discount.",
-                "Good news! We've got a brand-new offer just for you. Don't miss out on these amazing savings!",
-                "Unlock incredible deals with our latest promotion! Check it out now before it's gone.",
-                "As a valued customer, we've prepared a special promotion exclusively for you. Click here to claim your reward!",
-                "Your shopping just got better! A new promotion has been added to your account, offering fantastic discounts on your favorite items."
-        );
-
-        // 3. Chọn ngẫu nhiên một tiêu đề và một nội dung
-        Random random = new Random();
-        String randomTitle = titles.get(random.nextInt(titles.size()));
-        String randomMessage = messages.get(random.nextInt(messages.size()));
+        PromotionText text = randomPromotionText();
+        String randomTitle = text.title();
+        String randomMessage = text.message();
 
         // 4. Tạo đối tượng Notification với các câu đã chọn ngẫu nhiên
         Notification notification = Notification.builder()
@@ -2,6 +2,10 @@ package com.project.stationery_be_server.service.impl;
 
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
 import com.itextpdf.io.font.constants.StandardFonts;
 import com.itextpdf.kernel.colors.ColorConstants;
 import com.itextpdf.kernel.font.PdfFont;
@@ -22,77 +26,68 @@ import com.project.stationery_be_server.entity.PurchaseOrder;
 import com.project.stationery_be_server.entity.PurchaseOrderDetail;
 import com.project.stationery_be_server.entity.User;
 import com.project.stationery_be_server.exception.AppException;
-import com.project.stationery_be_server.repository.PurchaseOrderRepository;
+import com.project.stationery_be_server.repository.InvoiceLineRepository;
 import com.project.stationery_be_server.repository.UserRepository;
+import com.project.stationery_be_server.pdf.StreamingInvoiceRenderer;
 import com.project.stationery_be_server.service.PdfGenerationService;
-import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.text.DecimalFormat;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Sinh PDF hóa đơn. Font program được nạp một lần. Hóa đơn tháng của phòng ban đọc dòng hàng bằng một cursor
+ * có thứ tự và render dần từng trang (StreamingInvoiceRenderer), bộ nhớ không tăng theo số dòng.
+ * File đã upload được nhớ theo hash nội dung, render lại cùng nội dung thì dùng lại URL cũ.
+ * Lượt băm và lượt render chạy trong cùng một transaction read-only nên đọc cùng một snapshot; upload nằm ngoài.
+ */
 @Service
-@RequiredArgsConstructor
 public class PdfGenerationServiceImpl implements PdfGenerationService {
     private final Cloudinary cloudinary;
-    private final PurchaseOrderRepository purchaseOrderRepository;
     private final UserRepository userRepository;
+    private final InvoiceLineRepository invoiceLineRepository;
+    private final StreamingInvoiceRenderer invoiceRenderer;
+    private final FontProgram helvetica;
+    private final Cache<String, String> uploadedByContentHash;
+    private final TransactionTemplate readOnlyTransaction;
     private static final Logger logger = Logger.getLogger(PdfGenerationServiceImpl.class.getName());
 
-    // Chuyển đổi số thành chữ tiếng Anh
-    private String numberToEnglishWords(long number) {
-        if (number == 0) return "Zero VND";
-
-        String[] units = {"", "thousand", "million", "billion"};
-        String[] digits = {"zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine"};
-        String[] teens = {"ten", "eleven", "twelve", "thirteen", "fourteen", "fifteen", "sixteen", "seventeen", "eighteen", "nineteen"};
-        String[] tens = {"", "", "twenty", "thirty", "forty", "fifty", "sixty", "seventy", "eighty", "ninety"};
-
-        StringBuilder result = new StringBuilder();
-        int unitIndex = 0;
-
-        while (number > 0) {
-            if (number % 1000 != 0) {
-                StringBuilder part = new StringBuilder();
-                int hundreds = (int) (number % 1000);
-                if (hundreds >= 100) {
-                    part.append(digits[hundreds / 100]).append(" hundred");
-                    hundreds %= 100;
-                    if (hundreds > 0) part.append(" and ");
-                }
-                if (hundreds >= 10 && hundreds < 20) {
-                    part.append(teens[hundreds - 10]);
-                } else if (hundreds >= 20) {
-                    part.append(tens[hundreds / 10]);
-                    if (hundreds % 10 > 0) part.append("-").append(digits[hundreds % 10]);
-                } else if (hundreds > 0) {
-                    part.append(digits[hundreds]);
-                }
-                if (part.length() > 0) {
-                    if (result.length() > 0) result.insert(0, ", ");
-                    result.insert(0, part.append(" ").append(units[unitIndex]));
-                }
-            }
-            number /= 1000;
-            unitIndex++;
-        }
-
-        result.append(" VND");
-        result.setCharAt(0, Character.toUpperCase(result.charAt(0)));
-        return result.toString();
+    public PdfGenerationServiceImpl(Cloudinary cloudinary,
+                                    UserRepository userRepository,
+                                    InvoiceLineRepository invoiceLineRepository,
+                                    StreamingInvoiceRenderer invoiceRenderer,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${pdf.uploaded-cache.max-size:1000}") long uploadedCacheSize,
+                                    @Value("${pdf.uploaded-cache.ttl-hours:24}") long uploadedCacheTtlHours) throws IOException {
+        this.cloudinary = cloudinary;
+        this.userRepository = userRepository;
+        this.invoiceLineRepository = invoiceLineRepository;
+        this.invoiceRenderer = invoiceRenderer;
+        this.helvetica = FontProgramFactory.createFont(StandardFonts.HELVETICA);
+        this.uploadedByContentHash = Caffeine.newBuilder()
+                .maximumSize(uploadedCacheSize)
+                .expireAfterWrite(Duration.ofHours(uploadedCacheTtlHours))
+                .build();
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     @Override
@@ -108,7 +103,8 @@ public class PdfGenerationServiceImpl implements PdfGenerationService {
             logo.setHorizontalAlignment(com.itextpdf.layout.properties.HorizontalAlignment.LEFT);
             document.add(logo);
 
-            PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            // PdfFont gắn với từng PdfDocument, chỉ phần font program là dùng chung được
+            PdfFont font = PdfFontFactory.createFont(helvetica);
             logger.info("Using Helvetica font for iText PDF generation");
             document.add(new Paragraph("Invoice")
                     .setFont(font)
@@ -169,7 +165,6 @@ public class PdfGenerationServiceImpl implements PdfGenerationService {
             document.close();
 
             String localPath = "monthly_invoice_" + purchaseOrder.getPurchaseOrderId() + ".pdf";
-            Files.write(Paths.get(localPath), baos.toByteArray());
 
             Map uploadResult = cloudinary.uploader().upload(baos.toByteArray(),
                     Map.of("resource_type", "raw", "public_id", localPath, "overwrite", true));
@@ -183,125 +178,112 @@ public class PdfGenerationServiceImpl implements PdfGenerationService {
     }
 
     @Override
-    public String generateAndUploadCurrentInvoicePdf(String userId, LocalDateTime startDate, LocalDateTime endDate) {
+    public RenderResult renderAndUploadCurrentInvoice(String userId, LocalDateTime startDate, LocalDateTime endDate) {
+        // InnoDB (REPEATABLE READ) giữ một snapshot cho cả transaction: đơn đổi giữa lượt băm và lượt render
+        // thì PDF vẫn khớp với hash. Giữ connection chỉ trong lúc đọc/render, không trong lúc upload.
+        RenderedInvoice rendered = readOnlyTransaction.execute(status -> renderCurrentInvoice(userId, startDate, endDate));
+        CurrentInvoice invoice = rendered.invoice();
+        String contentHash = invoice.contentHash();
+        if (rendered.file() == null) {
+            return new RenderResult(rendered.uploadedUrl(), contentHash, true);
+        }
         try {
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new AppException(NotExistedErrorCode.USER_NOT_EXISTED));
-            if (!user.getRole().getRoleId().equals("113")) {
-                throw new AppException(NotExistedErrorCode.USER_EXISTED);
-            }
-
-            List<PurchaseOrder> orders = purchaseOrderRepository.findByUser_UserIdAndCreatedAtBetween(
-                    userId, startDate, endDate
-            );
-
-            if (orders.isEmpty()) {
-                throw new AppException(NotExistedErrorCode.ORDER_NOT_FOUND);
-            }
-
-            // Đọc template HTML
-            String template = new String(new ClassPathResource("templates/monthly_invoice_template.html")
-                    .getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-
-            long totalAmount = 0;
-            int totalItems = 0;
-            StringBuilder orderRows = new StringBuilder();
-            DecimalFormat formatter = new DecimalFormat("#,###");
-
-            boolean hasDetails = false;
-            for (PurchaseOrder order : orders) {
-                if (order.getStatus() != PurchaseOrder.Status.PROCESSING) {
-                    continue;
-                }
-
-                List<PurchaseOrderDetail> details = order.getPurchaseOrderDetails();
-                if (details.isEmpty()) {
-                    continue;
-                }
-
-                totalAmount += order.getAmount();
-                for (PurchaseOrderDetail detail : details) {
-                    totalItems += detail.getQuantity();
-
-                    orderRows.append(String.format(
-                            "<tr>" +
-                                    "<td class=\"order-id\">%s</td>" +
-                                    "<td class=\"product-name\">%s</td>" +
-                                    "<td class=\"text-center\">%d</td>" +
-                                    "<td class=\"text-right\">%s VND</td>" +
-                                    "</tr>",
-                            order.getPurchaseOrderId(),
-                            detail.getProductDetail().getName(),
-                            detail.getQuantity(),
-                            formatter.format(detail.getDiscountPrice())
-                    ));
-                    hasDetails = true;
-                }
-            }
-
-            if (!hasDetails) {
-                throw new AppException(NotExistedErrorCode.ORDER_NOT_FOUND);
-            }
-
-            // Chuẩn bị dữ liệu cho template
-            String currentDate = LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-            String period = startDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) + " - " +
-                    endDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-
-            // Thay thế các placeholder trong template
-            String htmlContent = template
-                    .replace("${invoiceTitle}", "TAX INVOICE")
-                    .replace("${invoiceNumber}", "INV-" + System.currentTimeMillis())
-                    .replace("${userName}", user.getFirstName() + " " + user.getLastName())
-                    .replace("${department}", user.getLastName() != null ? user.getLastName() : "N/A")
-                    .replace("${currentDate}", currentDate)
-                    .replace("${month}", period)
-                    .replace("${orderCount}", String.valueOf(orders.size()))
-                    .replace("${totalItems}", String.valueOf(totalItems))
-                    .replace("${subtotal}", formatter.format(totalAmount))
-                    .replace("${totalAmount}", formatter.format(totalAmount))
-                    .replace("${totalAmountInWords}", numberToEnglishWords(totalAmount))
-                    .replace("${orderRows}", orderRows.toString())
-                    .replace("${taxInfo}", "Tax ID: 123456789 | VAT: 0%");
-
-            // Tạo PDF
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ITextRenderer renderer = new ITextRenderer();
-
-            // Cấu hình font
-            String fontPath = "fonts/OpenSans-Regular.ttf";
-            ClassPathResource fontResource = new ClassPathResource(fontPath);
-            if (fontResource.exists()) {
-                try {
-                    renderer.getFontResolver().addFont(fontResource.getURL().toString(), true);
-                } catch (Exception e) {
-                    logger.log(Level.WARNING, "Failed to register custom font, using default", e);
-                }
-            }
-
-            renderer.setDocumentFromString(htmlContent);
-            renderer.layout();
-            renderer.createPDF(baos);
-
-            String localPath = "current_invoice_" + userId + "_" + startDate.toLocalDate() + "_to_" + endDate.toLocalDate() + ".pdf";
-            Files.write(Paths.get(localPath), baos.toByteArray());
-
-            // Upload lên Cloudinary
-            String publicId = "invoices/" + userId + "_" + startDate.toLocalDate() + "_to_" + endDate.toLocalDate() + ".pdf";
-            Map uploadResult = cloudinary.uploader().upload(baos.toByteArray(),
+            // hash trong public_id: file đã upload không bị nội dung khác ghi đè, URL trong cache luôn đúng nội dung
+            String publicId = "invoices/" + invoice.userId() + "_" + invoice.startDate().toLocalDate()
+                    + "_to_" + invoice.endDate().toLocalDate() + "_" + contentHash.substring(0, 12) + ".pdf";
+            Map uploadResult = cloudinary.uploader().upload(rendered.file().toFile(),
                     ObjectUtils.asMap(
                             "resource_type", "raw",
                             "public_id", publicId,
                             "overwrite", true
                     ));
+            String url = (String) uploadResult.get("secure_url");
+            uploadedByContentHash.put(contentHash, url);
+            logger.info("Rendered invoice for " + invoice.userId() + " with " + invoice.lineCount() + " lines");
+            return new RenderResult(url, contentHash, false);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to generate or upload invoice PDF", e);
+            throw new RuntimeException("Failed to generate or upload invoice PDF: " + e.getMessage());
+        } finally {
+            deleteQuietly(rendered.file());
+        }
+    }
 
-            return (String) uploadResult.get("secure_url");
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Failed to read HTML template", e);
-            throw new RuntimeException("Failed to read HTML template: " + e.getMessage());
+    // Chạy trong transaction read-only: băm, rồi render ra file tạm nếu nội dung này chưa được upload
+    private RenderedInvoice renderCurrentInvoice(String userId, LocalDateTime startDate, LocalDateTime endDate) {
+        CurrentInvoice invoice = loadCurrentInvoice(userId, startDate, endDate);
+        String uploaded = uploadedByContentHash.getIfPresent(invoice.contentHash());
+        if (uploaded != null) {
+            return new RenderedInvoice(invoice, null, uploaded);
+        }
+        Path file = null;
+        try {
+            // Ghi ra file tạm thay vì byte[] để kích thước PDF không nằm trên heap
+            file = Files.createTempFile("invoice-", ".pdf");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                invoiceRenderer.render(invoice, action -> invoiceLineRepository.streamLines(
+                        invoice.userId(), invoice.startDate(), invoice.endDate(), action), out);
+            }
+            return new RenderedInvoice(invoice, file, null);
         } catch (Exception e) {
+            deleteQuietly(file);
             logger.log(Level.SEVERE, "Failed to generate or upload invoice PDF", e);
             throw new RuntimeException("Failed to generate or upload invoice PDF: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private CurrentInvoice loadCurrentInvoice(String userId, LocalDateTime startDate, LocalDateTime endDate) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new AppException(NotExistedErrorCode.USER_NOT_EXISTED));
+        if (!user.getRole().getRoleId().equals("113")) {
+            throw new AppException(NotExistedErrorCode.USER_EXISTED);
+        }
+
+        InvoiceLineRepository.InvoiceTotals totals = invoiceLineRepository.findTotals(userId, startDate, endDate);
+        if (totals.orderCount() == 0) {
+            throw new AppException(NotExistedErrorCode.ORDER_NOT_FOUND);
+        }
+
+        String userName = user.getFirstName() + " " + user.getLastName();
+        String department = user.getLastName() != null ? user.getLastName() : "N/A";
+        // Một lượt cursor chỉ để băm + đếm, không giữ dòng nào; lượt render (cùng transaction) sẽ đọc lại.
+        // Chỉ băm nội dung hiển thị: kỳ tính theo ngày (endDate là thời điểm gọi, băm cả giờ thì không bao giờ trùng)
+        MessageDigest digest = sha256();
+        digest.update((userId + '\n' + userName + '\n' + department + '\n' + startDate.toLocalDate() + '\n'
+                + endDate.toLocalDate() + '\n' + totals.orderCount() + '\n' + totals.totalAmount() + '\n')
+                .getBytes(StandardCharsets.UTF_8));
+        int[] counts = {0, 0}; // số dòng, tổng số lượng
+        invoiceLineRepository.streamLines(userId, startDate, endDate, line -> {
+            counts[0]++;
+            counts[1] += line.quantity();
+            digest.update((line.orderId() + '\t' + line.productName() + '\t' + line.quantity() + '\t'
+                    + line.unitPrice() + '\n').getBytes(StandardCharsets.UTF_8));
+        });
+        if (counts[0] == 0) {
+            throw new AppException(NotExistedErrorCode.ORDER_NOT_FOUND);
+        }
+        return new CurrentInvoice(userId, userName, department, startDate, endDate, totals.orderCount(),
+                counts[1], counts[0], totals.totalAmount(), HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to delete temporary invoice file " + file, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // file == null: nội dung đã upload trước đó, dùng lại uploadedUrl
+    private record RenderedInvoice(CurrentInvoice invoice, Path file, String uploadedUrl) {
+    }
+}
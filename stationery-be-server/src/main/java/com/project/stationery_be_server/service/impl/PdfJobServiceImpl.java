@@ -0,0 +1,143 @@
+package com.project.stationery_be_server.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.stationery_be_server.Error.BaseErrorCode;
+import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.dto.response.PdfJobResponse;
+import com.project.stationery_be_server.exception.AppException;
+import com.project.stationery_be_server.service.PdfGenerationService;
+import com.project.stationery_be_server.service.PdfJobService;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Hàng đợi sinh PDF: API chỉ đăng ký job và trả về jobId, render + upload chạy trên pool worker cố định với hàng đợi
+ * có giới hạn (đầy thì từ chối, không dồn việc vô hạn). Mỗi owner chỉ có một job cùng loại chờ/chạy tại một thời điểm.
+ * Trạng thái job giữ trong bộ nhớ một thời gian để client hỏi lại.
+ */
+@Slf4j
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PdfJobServiceImpl implements PdfJobService {
+    ThreadPoolExecutor workers;
+    Cache<String, Job> jobs;
+    // owner + loại -> job đang chờ/chạy
+    ConcurrentHashMap<String, Job> activeJobs = new ConcurrentHashMap<>();
+
+    public PdfJobServiceImpl(@Value("${pdf.jobs.workers:2}") int workerCount,
+                             @Value("${pdf.jobs.queue-capacity:50}") int queueCapacity,
+                             @Value("${pdf.jobs.retention-minutes:60}") long retentionMinutes) {
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("pdf-worker-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(retentionMinutes))
+                .build();
+    }
+
+    @Override
+    public PdfJobResponse submit(String ownerId, String type, Supplier<PdfGenerationService.RenderResult> task) {
+        String activeKey = ownerId + ":" + type;
+        Job job = new Job(UUID.randomUUID().toString(), ownerId, type);
+        Job existing = activeJobs.putIfAbsent(activeKey, job);
+        if (existing != null) {
+            return existing.toResponse();
+        }
+        jobs.put(job.jobId, job);
+        try {
+            workers.execute(() -> run(job, activeKey, task));
+        } catch (RejectedExecutionException e) {
+            activeJobs.remove(activeKey, job);
+            jobs.invalidate(job.jobId);
+            throw new AppException(NotExistedErrorCode.PDF_JOB_QUEUE_FULL);
+        }
+        return job.toResponse();
+    }
+
+    @Override
+    public PdfJobResponse getJob(String ownerId, String jobId) {
+        Job job = jobs.getIfPresent(jobId);
+        if (job == null || !job.ownerId.equals(ownerId)) {
+            throw new AppException(NotExistedErrorCode.PDF_JOB_NOT_FOUND);
+        }
+        return job.toResponse();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void run(Job job, String activeKey, Supplier<PdfGenerationService.RenderResult> task) {
+        job.status = "RUNNING";
+        job.startedAt = LocalDateTime.now();
+        try {
+            PdfGenerationService.RenderResult result = task.get();
+            job.pdfUrl = result.url();
+            job.reused = result.reused();
+            job.status = "COMPLETED";
+        } catch (AppException e) {
+            fail(job, e.getErrorCode());
+        } catch (RuntimeException e) {
+            // chi tiết lỗi chỉ ghi log, client nhận mã lỗi chung
+            log.error("PDF job {} ({}) for {} failed", job.jobId, job.type, job.ownerId, e);
+            fail(job, NotExistedErrorCode.PDF_GENERATION_FAILED);
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            activeJobs.remove(activeKey, job);
+        }
+    }
+
+    private static void fail(Job job, BaseErrorCode errorCode) {
+        job.errorCode = errorCode.getCode();
+        job.error = errorCode.getMessage();
+        job.status = "FAILED";
+    }
+
+    static final class Job {
+        final String jobId;
+        final String ownerId;
+        final String type;
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        volatile String status = "PENDING";
+        volatile String pdfUrl;
+        volatile boolean reused;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile Integer errorCode;
+        volatile String error;
+
+        Job(String jobId, String ownerId, String type) {
+            this.jobId = jobId;
+            this.ownerId = ownerId;
+            this.type = type;
+        }
+
+        PdfJobResponse toResponse() {
+            return PdfJobResponse.builder()
+                    .jobId(jobId)
+                    .type(type)
+                    .status(status)
+                    .pdfUrl(pdfUrl)
+                    .reused(reused)
+                    .submittedAt(submittedAt)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .errorCode(errorCode)
+                    .error(error)
+                    .build();
+        }
+    }
+}
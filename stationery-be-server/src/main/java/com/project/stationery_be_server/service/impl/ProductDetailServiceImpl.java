@@ -1,29 +1,30 @@
 package com.project.stationery_be_server.service.impl;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.asset.AssetCleanupService;
+import com.project.stationery_be_server.cache.ProductDetailCache;
 import com.project.stationery_be_server.dto.request.DeleteProductDetailRequest;
 import com.project.stationery_be_server.dto.request.UpdateProductDetailRequest;
 import com.project.stationery_be_server.dto.response.product.ProductDetailResponse;
 import com.project.stationery_be_server.dto.response.promotion.ProductDetailPromotion;
 import com.project.stationery_be_server.entity.*;
 import com.project.stationery_be_server.exception.AppException;
+import com.project.stationery_be_server.gateway.ImageUploader;
 import com.project.stationery_be_server.repository.*;
+import com.project.stationery_be_server.search.ProductSearchIndex;
 import com.project.stationery_be_server.service.ProductDetailService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -39,7 +40,11 @@ public class ProductDetailServiceImpl implements ProductDetailService {
     CartRepository cartRepository;
     ProductRepository productRepository;
     ImageRepository imageRepository;
-    Cloudinary cloudinary;
+    ProductDetailCache productDetailCache;
+    ProductSearchIndex productSearchIndex;
+    ImageUploader imageUploader;
+    AssetCleanupService assetCleanupService;
+    TransactionTemplate transactionTemplate;
 
     @Override
     public void deleteProductDetail(DeleteProductDetailRequest request) {
@@ -70,10 +75,13 @@ public class ProductDetailServiceImpl implements ProductDetailService {
         }
 
         productDetailRepository.deleteById(detailId);
+        productDetailCache.invalidateSlug(productDetail.getSlug());
+        productDetailCache.invalidateProduct(productDetail.getProduct().getProductId());
+        productSearchIndex.refreshProduct(productDetail.getProduct().getProductId());
     }
 
+    // Ảnh mới được upload song song trước, transaction chỉ mở khi đã có URL; ghi DB lỗi thì xóa các ảnh vừa upload
     @Override
-    @Transactional
     public ProductDetailResponse updateProductDetail(String pd, List<String> imgIdToUpdate, List<MultipartFile> images) {
 
         // 1. Chuyển chuỗi JSON thành DTO
@@ -85,6 +93,19 @@ public class ProductDetailServiceImpl implements ProductDetailService {
             throw new RuntimeException(e);
         }
 
+        List<ImageUploader.UploadedImage> uploaded = images != null ? imageUploader.uploadAll(images) : List.of();
+        try {
+            transactionTemplate.executeWithoutResult(status -> applyProductDetailUpdate(form, imgIdToUpdate, uploaded));
+        } catch (RuntimeException e) {
+            imageUploader.discard(uploaded);
+            throw e;
+        }
+        return null;
+    }
+
+    // uploaded: cùng thứ tự với images của request, null ở vị trí file rỗng
+    private void applyProductDetailUpdate(UpdateProductDetailRequest form, List<String> imgIdToUpdate,
+                                          List<ImageUploader.UploadedImage> uploaded) {
         // 2. Tìm ProductDetail cần cập nhật
         ProductDetail productDetail = productDetailRepository.findByProductDetailId(form.getProductDetailId());
         if (productDetailRepository.existsBySlugAndProductDetailIdNot(form.getSlug(), form.getProductDetailId())) {
@@ -93,6 +114,10 @@ public class ProductDetailServiceImpl implements ProductDetailService {
         if(productDetailRepository.existsByNameAndProductDetailIdNot(form.getSlug(), form.getProductDetailId())){
             throw new RuntimeException("Product name already existed: " + form.getName());
         }
+        // slug cũ sẽ không còn trỏ tới PD này nữa, các trang cùng product dùng chung màu/size/ảnh
+        productDetailCache.invalidateSlug(productDetail.getSlug());
+        productDetailCache.invalidateProduct(productDetail.getProduct().getProductId());
+        productSearchIndex.refreshProduct(productDetail.getProduct().getProductId());
         // 3. Cập nhật các trường cơ bản
         productDetail.setName(form.getName());
         productDetail.setSlug(form.getSlug());
@@ -109,58 +134,38 @@ public class ProductDetailServiceImpl implements ProductDetailService {
             productDetail.setSize(size);
         }
 
-        // 4. Cập nhật hình ảnh
+        // 4. Cập nhật hình ảnh; ảnh cũ được xóa khỏi Cloudinary sau commit, rollback thì vẫn giữ
+        List<String> replacedPublicIds = new ArrayList<>();
         if (form.getDeleteImages() != null && !form.getDeleteImages().isEmpty()) {
             for (String imageId : form.getDeleteImages()) {
                 System.out.println("delete image with id: " + imageId);
                 Image img = imageRepository.findById(imageId)
                         .orElseThrow(() -> new RuntimeException("Image not found with id: " + imageId));
                 imageRepository.deleteById(imageId);
-                String publicKey = extractPublicIdFromUrl(img.getUrl());
-                deleteImageAsync(publicKey);
-                // hoặc gọi đến Cloudinary/xóa trong S3 nếu dùng lưu ảnh bên ngoài
+                replacedPublicIds.add(extractPublicIdFromUrl(img.getUrl()));
             }
         }
 
-        if (images != null && !images.isEmpty()) {
-            for (int i = 0; i < images.size(); i++) {
-                MultipartFile file = images.get(i);
-                if(file == null) continue;
-                // lấy imgId muốn update
-                String imgId =imgIdToUpdate.size()> i ?  imgIdToUpdate.get(i) : null;
-                if (imgId != null && !imgId.isBlank()) { // update hình cũ thành mới
-                    Image img = imageRepository.findById(imgId).orElseThrow(() -> new RuntimeException("Image not found with id: " + imgId));
-                    String publicKey = extractPublicIdFromUrl(img.getUrl());
-                    deleteImageAsync(publicKey);
-                    Map uploadResult = null;
-                    try {
-                        uploadResult = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.emptyMap());
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                    String url = uploadResult.get("secure_url").toString();
-                    img.setUrl(url);
-                    imageRepository.save(img);
-                }else{
-                    try {
-                        var uploadResult = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.emptyMap());
-                        String url = uploadResult.get("secure_url").toString();
-                        Image image = Image.builder()
-                                .url(url)
-                                .priority(i)
-                                .product(productDetail.getProduct())
-                                .color(color)
-                                .build();
-                        imageRepository.save(image);
-                    } catch (IOException e) {
-                        throw new RuntimeException("Failed to upload image", e);
-                    }
-                }
+        for (int i = 0; i < uploaded.size(); i++) {
+            ImageUploader.UploadedImage image = uploaded.get(i);
+            if (image == null) continue;
+            // lấy imgId muốn update
+            String imgId = imgIdToUpdate.size() > i ? imgIdToUpdate.get(i) : null;
+            if (imgId != null && !imgId.isBlank()) { // update hình cũ thành mới
+                Image img = imageRepository.findById(imgId).orElseThrow(() -> new RuntimeException("Image not found with id: " + imgId));
+                replacedPublicIds.add(extractPublicIdFromUrl(img.getUrl()));
+                img.setUrl(image.url());
+                imageRepository.save(img);
+            } else {
+                imageRepository.save(Image.builder()
+                        .url(image.url())
+                        .priority(i)
+                        .product(productDetail.getProduct())
+                        .color(color)
+                        .build());
             }
         }
-
-
-        return null;
+        assetCleanupService.scheduleDeletion(replacedPublicIds);
     }
 
     @Override
@@ -169,6 +174,7 @@ public class ProductDetailServiceImpl implements ProductDetailService {
                 .orElseThrow(() -> new RuntimeException("Product detail not found with id: " + productDetailId));
         productDetail.setHidden(hidden);
         productDetailRepository.save(productDetail);
+        productDetailCache.invalidateProduct(productDetail.getProduct().getProductId());
         return hidden;
     }
 
@@ -186,16 +192,6 @@ public class ProductDetailServiceImpl implements ProductDetailService {
 
     }
 
-    public void deleteImageAsync(String publicId) {
-        new Thread(() -> {
-            try {
-                cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
-            } catch (Exception e) {
-                System.err.println("Failed to delete image: " + publicId);
-            }
-        }).start();
-    }
-
     public String extractPublicIdFromUrl(String url) {
         if (url == null || !url.contains("/upload/")) {
             throw new IllegalArgumentException("Invalid Cloudinary URL");
@@ -1,52 +1,65 @@
 package com.project.stationery_be_server.service.impl;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.cache.ProductDetailCache;
 import com.project.stationery_be_server.dto.request.DeleteProductRequest;
 import com.project.stationery_be_server.dto.request.ProductFilterRequest;
 import com.project.stationery_be_server.dto.request.UpdateProductRequest;
 import com.project.stationery_be_server.dto.request.UserRequest;
 import com.project.stationery_be_server.dto.response.ColorSizeSlugResponse;
+import com.project.stationery_be_server.dto.response.ColorSlugResponse;
 import com.project.stationery_be_server.dto.response.product.CreateProductRequest;
 import com.project.stationery_be_server.dto.response.product.ProductDetailRequest;
 import com.project.stationery_be_server.entity.*;
 import com.project.stationery_be_server.dto.response.product.ProductDetailResponse;
 import com.project.stationery_be_server.dto.response.product.ProductResponse;
 import com.project.stationery_be_server.exception.AppException;
+import com.project.stationery_be_server.gateway.ImageUploader;
 import com.project.stationery_be_server.mapper.ProductDetailMapper;
 import com.project.stationery_be_server.mapper.ProductMapper;
 import com.project.stationery_be_server.repository.*;
+import com.project.stationery_be_server.search.ProductSearchIndex;
+import com.project.stationery_be_server.search.SearchSuggestionIndex;
 import com.project.stationery_be_server.service.ProductService;
 import com.project.stationery_be_server.specification.ProductSpecification;
 import jakarta.transaction.Transactional;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.Hibernate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.multipart.MultipartHttpServletRequest;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class ProductServiceImpl implements ProductService {
+    // số id tối đa trong một mệnh đề IN (MySQL giới hạn 65535 tham số cho một câu lệnh)
+    static final int MAX_IN_LIST_IDS = 10_000;
+
     ProductRepository productRepository;
     ReviewRepository reviewRepository;
+    ProductRatingRepository productRatingRepository;
     ImageRepository imageRepository;
     ProductDetailRepository productDetailRepository;
     ProductMapper productMapper;
@@ -55,63 +68,91 @@ public class ProductServiceImpl implements ProductService {
     CategoryRepository categoryRepository;
     SizeRepository sizeRepository;
     ColorRepository colorRepository;
-    Cloudinary cloudinary;
+    ProductDetailCache productDetailCache;
+    ProductSearchIndex productSearchIndex;
+    SearchSuggestionIndex searchSuggestionIndex;
+    ProductSearchRepository productSearchRepository;
+    ImageUploader imageUploader;
+    TransactionTemplate transactionTemplate;
 
     @Override
     public Page<ProductResponse> getAllProductWithDefaultPD(Pageable pageable, ProductFilterRequest filter) {
-        Specification<Product> spec = ProductSpecification.filterProductsForUser(filter);
-        Page<Product> productsPage = productRepository.findAll(spec, pageable);
-        List<ProductResponse> productListResponses = productsPage.getContent().stream()
-                .map(product -> {
-                    String colorId = null;
-                    ProductDetail productDetail = product.getProductDetail();
-                    if (productDetail != null && productDetail.getColor() != null) {
-                        colorId = productDetail.getColor().getColorId();
-                    }
-                    product.setFetchColor(productDetailRepository.findDistinctColorsWithAnySlug(product.getProductId()));
-                    Image img;
-                    if (colorId != null) {
-                        img = imageRepository.findFirstByProduct_ProductIdAndColor_ColorIdOrderByPriorityAsc(product.getProductId(), colorId);
-                    } else {
-                        img = imageRepository.findFirstByProduct_ProductIdAndColorIsNullOrderByPriorityAsc(product.getProductId());
-                    }
-                    product.setImg(img != null ? img.getUrl() : null);
-                    return productMapper.toProductResponse(product);
-                })
-                .toList();
+        Page<Product> productsPage = findProducts(filter, pageable, false);
+        List<ProductResponse> productListResponses = toProductResponses(productsPage.getContent(), true);
 
         return new PageImpl<>(productListResponses, pageable, productsPage.getTotalElements());
     }
 
     @Override
     public Page<ProductResponse> getAllProductForAdmin(Pageable pageable, ProductFilterRequest filter) {
-        Specification<Product> spec = ProductSpecification.filterProductsForAdmin(filter);
-        Page<Product> productsPage = productRepository.findAll(spec, pageable);
-        List<ProductResponse> productListResponses = productsPage.getContent().stream()
-                .map(product -> {
-                    String colorId = null;
-                    ProductDetail productDetail = product.getProductDetail();
-                    if (productDetail != null && productDetail.getColor() != null) {
-                        colorId = productDetail.getColor().getColorId();
-                    }
-                    product.setFetchColor(productDetailRepository.findDistinctColorsWithAnySlug(product.getProductId()));
-                    Image img;
-                    if (colorId != null) {
-                        img = imageRepository.findFirstByProduct_ProductIdAndColor_ColorIdOrderByPriorityAsc(product.getProductId(), colorId);
-                    } else {
-                        img = imageRepository.findFirstByProduct_ProductIdAndColorIsNullOrderByPriorityAsc(product.getProductId());
-                    }
-                    product.setImg(img != null ? img.getUrl() : null);
-                    return productMapper.toProductResponse(product);
-                })
-                .toList();
+        Page<Product> productsPage = findProducts(filter, pageable, true);
+        List<ProductResponse> productListResponses = toProductResponses(productsPage.getContent(), true);
 
         return new PageImpl<>(productListResponses, pageable, productsPage.getTotalElements());
     }
 
+    // Có từ khóa và index đã sẵn sàng: tra index lấy toàn bộ id khớp theo độ liên quan, DB chỉ còn lọc
+    // giá/danh mục/rating theo id. Lọc trên cả tập khớp (không cắt bớt trước) để totalElements và các trang sau đúng.
+    // Không chọn sort thì xếp theo độ liên quan, có sort thì để DB sắp và phân trang như cũ.
+    private Page<Product> findProducts(ProductFilterRequest filter, Pageable pageable, boolean admin) {
+        String search = filter.getSearch();
+        if (search == null || search.isBlank() || !productSearchIndex.isReady()) {
+            Specification<Product> spec = admin
+                    ? ProductSpecification.filterProductsForAdmin(filter)
+                    : ProductSpecification.filterProductsForUser(filter);
+            return productRepository.findAll(spec, pageable);
+        }
+
+        List<String> rankedIds = productSearchIndex.search(search, Integer.MAX_VALUE).stream()
+                .map(ProductSearchIndex.Hit::productId)
+                .toList();
+        if (rankedIds.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        if (pageable.getSort().isSorted()) {
+            if (rankedIds.size() > MAX_IN_LIST_IDS) {
+                // quá nhiều id cho một câu lệnh: để DB tự lọc theo từ khóa bằng LIKE như khi index chưa sẵn sàng
+                return productRepository.findAll(filterSpec(filter, null, admin), pageable);
+            }
+            return productRepository.findAll(filterSpec(filter, rankedIds, admin), pageable);
+        }
+
+        // lọc theo từng lô id để mệnh đề IN không vượt giới hạn tham số
+        Set<String> filteredIds = new HashSet<>();
+        for (int from = 0; from < rankedIds.size(); from += MAX_IN_LIST_IDS) {
+            List<String> chunk = rankedIds.subList(from, Math.min(from + MAX_IN_LIST_IDS, rankedIds.size()));
+            filteredIds.addAll(productSearchRepository.findProductIds(filterSpec(filter, chunk, admin)));
+        }
+        List<String> matchedIds = rankedIds.stream().filter(filteredIds::contains).toList();
+        int from = (int) Math.min(pageable.getOffset(), matchedIds.size());
+        int to = Math.min(from + pageable.getPageSize(), matchedIds.size());
+        List<String> pageIds = matchedIds.subList(from, to);
+
+        Map<String, Product> productsById = new HashMap<>();
+        for (Product product : productRepository.findAllById(pageIds)) {
+            productsById.put(product.getProductId(), product);
+        }
+        List<Product> content = pageIds.stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(content, pageable, matchedIds.size());
+    }
+
+    private static Specification<Product> filterSpec(ProductFilterRequest filter, Collection<String> matchedProductIds,
+                                                     boolean admin) {
+        return admin
+                ? ProductSpecification.filterProductsForAdmin(filter, matchedProductIds)
+                : ProductSpecification.filterProductsForUser(filter, matchedProductIds);
+    }
+
 
     @Override
     public ProductResponse getProductDetail(String slug) {
+        return productDetailCache.getProduct(slug, this::loadProductDetail);
+    }
+
+    private ProductResponse loadProductDetail(String slug) {
         ProductDetail pd = productDetailRepository.findBySlug(slug);
         String productId = pd.getProduct().getProductId();
         if (pd.getColor() != null && pd.getColor().getColorId() != null) {
@@ -121,38 +162,23 @@ public class ProductServiceImpl implements ProductService {
             pd.setImages(imageRepository.findByProduct_ProductIdOrderByPriorityAsc(productId));
         }
         Product p = productRepository.findById(productId).orElseThrow(() -> new AppException(NotExistedErrorCode.PRODUCT_NOT_EXISTED));
+        // nạp sẵn promotion (lazy) trước khi cache, vì response được serialize ngoài session
+        Hibernate.initialize(pd.getProductPromotions());
         p.setProductDetail(pd);
         return productMapper.toProductResponse(p);
     }
 
     @Override
     public List<ColorSizeSlugResponse> fetchColorSizeSlug(String slug) {
-        return productDetailRepository.fetchColorSizeBySLug(slug);
+        return productDetailCache.getColorSize(slug,
+                productDetailRepository::findProductIdBySlug,
+                productDetailRepository::fetchColorSizeBySLug);
     }
     // user
     @Override
     public Page<ProductResponse> getAllProducts(Pageable pageable, ProductFilterRequest filter) {
-        Specification<Product> spec = ProductSpecification.filterProductsForUser(filter);
-        Page<Product> p = productRepository.findAll(spec, pageable);
-        List<ProductResponse> productListResponses = p.getContent().stream()
-                .map(product -> {
-                    String colorId = null;
-                    ProductDetail productDetail = product.getProductDetail();
-                    if (productDetail != null && productDetail.getColor() != null) {
-                        colorId = productDetail.getColor().getColorId();
-                    }
-                    product.setProductDetail(null);
-                    product.setFetchColor(productDetailRepository.findDistinctColorsWithAnySlug(product.getProductId()));
-                    Image img;
-                    if (colorId != null) {
-                        img = imageRepository.findFirstByProduct_ProductIdAndColor_ColorIdOrderByPriorityAsc(product.getProductId(), colorId);
-                    } else {
-                        img = imageRepository.findFirstByProduct_ProductIdAndColorIsNullOrderByPriorityAsc(product.getProductId());
-                    }
-                    product.setImg(img != null ? img.getUrl() : null);
-                    return productMapper.toProductResponse(product);
-                })
-                .toList();
+        Page<Product> p = findProducts(filter, pageable, false);
+        List<ProductResponse> productListResponses = toProductResponses(p.getContent(), false);
         return new PageImpl<>(productListResponses, pageable, p.getTotalElements());
     }
     // admin
@@ -180,6 +206,26 @@ public class ProductServiceImpl implements ProductService {
     public List<ProductResponse> getAllProductsForChatbot() {
         List<Product> products = productRepository.findAll();
 
+        return toProductResponses(products, true);
+    }
+
+    // Gắn màu và ảnh đại diện cho cả danh sách bằng 2 truy vấn gộp (thay vì 2 truy vấn cho mỗi sản phẩm)
+    private List<ProductResponse> toProductResponses(List<Product> products, boolean keepDefaultDetail) {
+        if (products.isEmpty()) {
+            return List.of();
+        }
+        List<String> productIds = products.stream().map(Product::getProductId).toList();
+
+        Map<String, List<ColorSlugResponse>> colorsByProduct = new HashMap<>();
+        for (Object[] row : productDetailRepository.findDistinctColorsWithAnySlugByProductIds(productIds)) {
+            colorsByProduct.computeIfAbsent((String) row[0], k -> new ArrayList<>())
+                    .add(new ColorSlugResponse((String) row[1], (String) row[2], (String) row[3]));
+        }
+        Map<String, String> thumbnails = new HashMap<>();
+        for (Object[] row : imageRepository.findFirstImagesByProductIds(productIds)) {
+            thumbnails.put(thumbnailKey((String) row[0], (String) row[1]), (String) row[2]);
+        }
+
         return products.stream()
                 .map(product -> {
                     String colorId = null;
@@ -187,47 +233,40 @@ public class ProductServiceImpl implements ProductService {
                     if (productDetail != null && productDetail.getColor() != null) {
                         colorId = productDetail.getColor().getColorId();
                     }
-
-                    product.setFetchColor(productDetailRepository.findDistinctColorsWithAnySlug(product.getProductId()));
-
-                    Image img;
-                    if (colorId != null) {
-                        img = imageRepository.findFirstByProduct_ProductIdAndColor_ColorIdOrderByPriorityAsc(product.getProductId(), colorId);
-                    } else {
-                        img = imageRepository.findFirstByProduct_ProductIdAndColorIsNullOrderByPriorityAsc(product.getProductId());
+                    if (!keepDefaultDetail) {
+                        product.setProductDetail(null);
                     }
-
-                    product.setImg(img != null ? img.getUrl() : null);
-
+                    product.setFetchColor(colorsByProduct.getOrDefault(product.getProductId(), new ArrayList<>()));
+                    // colorId null -> ảnh không gắn màu, giống findFirstByProduct_ProductIdAndColorIsNull...
+                    product.setImg(thumbnails.get(thumbnailKey(product.getProductId(), colorId)));
                     return productMapper.toProductResponse(product);
                 })
                 .toList();
     }
+
+    private static String thumbnailKey(String productId, String colorId) {
+        return productId + "|" + (colorId != null ? colorId : "");
+    }
+
     @Override
     @Transactional
     public void handleUpdateTotalProductRating(String productId, String type, Integer rating) {
-        int countRating = reviewRepository.countByProductId(productId);
-        int sumRating = reviewRepository.sumRatingByProductId(productId);
-
-        Product product = productRepository.findById(productId).orElseThrow(() -> new AppException(NotExistedErrorCode.PRODUCT_NOT_EXISTED));
-        int length = countRating;
+        // rating: số sao của review mới (create), chênh lệch mới - cũ (update), âm số sao bị xóa (delete)
+        int countDelta;
         if (type.equalsIgnoreCase("create")) {
-            length += 1;
+            countDelta = 1;
         } else if (type.equalsIgnoreCase("update")) {
-
+            countDelta = 0;
         } else if (type.equalsIgnoreCase("delete")) {
-            length -= 1;
+            countDelta = -1;
         } else {
             throw new IllegalArgumentException("Type must be create, update or delete");
         }
-        if (length == 0) { //  k có rating
-            product.setTotalRating(0.0);
-
-        } else {
-            double totalRating = (double) (sumRating + rating) / length;
-            product.setTotalRating(totalRating);
+        // một UPDATE cộng dồn, không đếm lại review của product
+        if (productRatingRepository.add(productId, countDelta, rating) == 0) {
+            throw new AppException(NotExistedErrorCode.PRODUCT_NOT_EXISTED);
         }
-        productRepository.save(product);
+        productDetailCache.invalidateProduct(productId);
     }
 
     @Override
@@ -270,19 +309,39 @@ public class ProductServiceImpl implements ProductService {
         }
         //xoa
         productRepository.deleteById(productId);
+        productSearchIndex.refreshProduct(productId);
+        searchSuggestionIndex.refreshProduct(productId);
     }
 
-    // đamg lỗi khi chưa có lưu product
+    // Ảnh của mọi màu được upload song song trước, transaction chỉ mở khi đã có URL nên không giữ connection
+    // trong lúc chờ Cloudinary (OSIV giữ connection tới hết request kể từ lần truy cập DB đầu tiên).
+    // Ghi DB lỗi (kể cả dữ liệu không hợp lệ) thì xóa các ảnh vừa upload.
     @Override
-    @Transactional
     public void createProduct(String documentJson, MultipartHttpServletRequest files) {
         ObjectMapper objectMapper = new ObjectMapper();
-        CreateProductRequest request = null;
+        CreateProductRequest request;
         try {
             request = objectMapper.readValue(documentJson, CreateProductRequest.class);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
+        // mỗi màu một nhóm ảnh "files_<colorId>", nhiều detail cùng màu chỉ upload một lần
+        Map<String, List<MultipartFile>> filesByKey = new LinkedHashMap<>();
+        for (ProductDetailRequest detailRequest : request.getProductDetails()) {
+            filesByKey.computeIfAbsent("files_" + detailRequest.getColorId(), files::getFiles);
+        }
+        List<ImageUploader.UploadedImage> uploaded = imageUploader.uploadAll(
+                filesByKey.values().stream().flatMap(List::stream).toList());
+        try {
+            transactionTemplate.executeWithoutResult(status -> saveProduct(request, filesByKey, uploaded));
+        } catch (RuntimeException e) {
+            imageUploader.discard(uploaded);
+            throw e;
+        }
+    }
+
+    private void saveProduct(CreateProductRequest request, Map<String, List<MultipartFile>> filesByKey,
+                             List<ImageUploader.UploadedImage> uploaded) {
         var context = SecurityContextHolder.getContext();
         String userId = context.getAuthentication().getName();
         userRepository.findById(userId)
@@ -301,8 +360,7 @@ public class ProductServiceImpl implements ProductService {
         product.setSoldQuantity(0);
         product.setTotalRating(0.0);
         int currentQuantity = 0;
-        ArrayList<String> fileKeys = new ArrayList<>();
-        ArrayList<Color> colors = new ArrayList<>();
+        Map<String, Color> colorByKey = new HashMap<>();
         List<ProductDetail> productDetails = new ArrayList<>();
         for (ProductDetailRequest detailRequest : request.getProductDetails()) {
             if (productDetailRepository.existsByName(detailRequest.getName())) {
@@ -334,37 +392,34 @@ public class ProductServiceImpl implements ProductService {
             productDetail.setColor(color);
             productDetail.setProduct(product); // Set back-reference
             productDetails.add(productDetail);
-
-            String fileKey = "files_" + color.getColorId();
-            fileKeys.add(fileKey);
-            colors.add(color);
+            colorByKey.put("files_" + color.getColorId(), color);
         }
 
         product.setQuantity(currentQuantity);
         product.setProductDetails(new HashSet<>(productDetails));
         product.setProductDetail(productDetails.get(0));
         productRepository.save(product);
-        for (int i = 0; i < fileKeys.size(); i++) {
-            Color color = colors.get(i);
-            String fileKey = fileKeys.get(i);
-            List<MultipartFile> imageFiles = files.getFiles(fileKey);
+        productSearchIndex.refreshProduct(product.getProductId());
+        searchSuggestionIndex.refreshProduct(product.getProductId());
+
+        // uploaded nối tiếp các nhóm theo đúng thứ tự filesByKey
+        List<Image> images = new ArrayList<>(uploaded.size());
+        int index = 0;
+        for (Map.Entry<String, List<MultipartFile>> entry : filesByKey.entrySet()) {
+            Color color = colorByKey.get(entry.getKey());
             int priority = 0;
-            for (MultipartFile file : imageFiles) {
-                try {
-                    var uploadResult = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.emptyMap());
-                    String url = uploadResult.get("secure_url").toString();
-                    Image image = Image.builder()
-                            .url(url)
-                            .priority(priority++)
-                            .product(product)
-                            .color(color)
-                            .build();
-                    imageRepository.save(image);
-                } catch (IOException e) {
-                    throw new RuntimeException("Failed to upload image", e);
-                }
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                ImageUploader.UploadedImage image = uploaded.get(index++);
+                if (image == null) continue;
+                images.add(Image.builder()
+                        .url(image.url())
+                        .priority(priority++)
+                        .product(product)
+                        .color(color)
+                        .build());
             }
         }
+        imageRepository.saveAll(images);
     }
 
     @Override
@@ -393,6 +448,9 @@ public class ProductServiceImpl implements ProductService {
         }
 
         productRepository.save(product);
+        productDetailCache.invalidateProduct(product.getProductId());
+        productSearchIndex.refreshProduct(product.getProductId());
+        searchSuggestionIndex.refreshProduct(product.getProductId());
         Image img;
         if (product.getProductDetail().getColor() != null) {
             img = imageRepository.findFirstByProduct_ProductIdAndColor_ColorIdOrderByPriorityAsc(product.getProductId(), product.getProductDetail().getColor().getColorId());
@@ -409,6 +467,8 @@ public class ProductServiceImpl implements ProductService {
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
         product.setHidden(isHidden);
         productRepository.save(product);
+        productDetailCache.invalidateProduct(productId);
+        searchSuggestionIndex.refreshProduct(productId);
         return isHidden;
     }
 
@@ -0,0 +1,202 @@
+package com.project.stationery_be_server.service.impl;
+
+import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.cache.ActivePromotionIndex;
+import com.project.stationery_be_server.dto.response.promotion.PromotionFanOutResponse;
+import com.project.stationery_be_server.exception.AppException;
+import com.project.stationery_be_server.repository.PromotionFanOutRepository;
+import com.project.stationery_be_server.repository.PromotionFanOutRepository.Assignment;
+import com.project.stationery_be_server.repository.PromotionFanOutRepository.UserTarget;
+import com.project.stationery_be_server.service.FCMService;
+import com.project.stationery_be_server.service.PromotionFanOutService;
+import com.project.stationery_be_server.utils.TransactionUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phát voucher cho mọi user theo từng trang: mỗi trang ghi user_promotion + notification bằng JDBC batch
+ * trong một transaction ngắn, token FCM được gom thành lô 500 (giới hạn multicast) và giao cho pool gửi push.
+ * Pool gửi có hàng đợi giới hạn, đầy thì thread fan-out tự gửi (CallerRuns) nên không đọc user nhanh hơn tốc độ gửi.
+ */
+@Slf4j
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PromotionFanOutServiceImpl implements PromotionFanOutService {
+    static final int FCM_MULTICAST_LIMIT = 500;
+
+    PromotionFanOutRepository fanOutRepository;
+    FCMService fcmService;
+    TransactionTemplate transactionTemplate;
+    ActivePromotionIndex activePromotionIndex;
+    int pageSize;
+    Duration jobRetention;
+    // một thread: các đợt fan-out chạy lần lượt, không dồn tải lên DB
+    ExecutorService jobExecutor;
+    ThreadPoolExecutor pushExecutor;
+    ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public PromotionFanOutServiceImpl(PromotionFanOutRepository fanOutRepository,
+                                      FCMService fcmService,
+                                      TransactionTemplate transactionTemplate,
+                                      ActivePromotionIndex activePromotionIndex,
+                                      @Value("${promotion-fanout.page-size:1000}") int pageSize,
+                                      @Value("${promotion-fanout.push-threads:4}") int pushThreads,
+                                      @Value("${promotion-fanout.push-queue-capacity:20}") int pushQueueCapacity,
+                                      @Value("${promotion-fanout.job-retention-minutes:60}") long jobRetentionMinutes) {
+        this.fanOutRepository = fanOutRepository;
+        this.fcmService = fcmService;
+        this.transactionTemplate = transactionTemplate;
+        this.activePromotionIndex = activePromotionIndex;
+        this.pageSize = pageSize;
+        this.jobRetention = Duration.ofMinutes(jobRetentionMinutes);
+        this.jobExecutor = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("promotion-fanout").daemon(true).factory());
+        this.pushExecutor = new ThreadPoolExecutor(pushThreads, pushThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(pushQueueCapacity),
+                Thread.ofPlatform().name("fcm-push-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Override
+    public void startForAllUsers(String promotionId) {
+        TransactionUtils.afterCommit(() -> {
+            Job job = new Job(promotionId);
+            jobs.put(promotionId, job);
+            jobExecutor.execute(() -> run(job));
+        });
+    }
+
+    @Override
+    public PromotionFanOutResponse getProgress(String promotionId) {
+        Job job = jobs.get(promotionId);
+        if (job == null) {
+            throw new AppException(NotExistedErrorCode.PROMOTION_FAN_OUT_NOT_FOUND);
+        }
+        return job.toResponse();
+    }
+
+    // job đang chạy (chưa có finishedAt) không bao giờ bị dọn
+    @Scheduled(fixedDelayString = "${promotion-fanout.prune-interval-ms:600000}")
+    public void pruneFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobExecutor.shutdownNow();
+        pushExecutor.shutdown();
+    }
+
+    private void run(Job job) {
+        job.status = "RUNNING";
+        job.startedAt = LocalDateTime.now();
+        try {
+            job.totalUsers = fanOutRepository.countUsers();
+            NotificationServiceImpl.PromotionText text = NotificationServiceImpl.randomPromotionText();
+            List<String> tokens = new ArrayList<>(FCM_MULTICAST_LIMIT);
+            String afterUserId = "";
+            while (true) {
+                List<UserTarget> page = fanOutRepository.findUserPage(afterUserId, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                List<Assignment> assignments = page.stream()
+                        .map(user -> new Assignment(user.userId(), UUID.randomUUID().toString(), UUID.randomUUID().toString()))
+                        .toList();
+                transactionTemplate.executeWithoutResult(status -> {
+                    fanOutRepository.insertUserPromotions(job.promotionId, assignments);
+                    fanOutRepository.insertPromotionNotifications(job.promotionId, text.title(), text.message(), assignments);
+                });
+                job.usersAssigned.addAndGet(page.size());
+
+                for (UserTarget user : page) {
+                    if (user.deviceToken() == null || user.deviceToken().isBlank()) {
+                        continue;
+                    }
+                    tokens.add(user.deviceToken());
+                    if (tokens.size() == FCM_MULTICAST_LIMIT) {
+                        dispatch(job, tokens, text);
+                        tokens = new ArrayList<>(FCM_MULTICAST_LIMIT);
+                    }
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+                afterUserId = page.get(page.size() - 1).userId();
+            }
+            if (!tokens.isEmpty()) {
+                dispatch(job, tokens, text);
+            }
+            job.status = "COMPLETED";
+        } catch (RuntimeException e) {
+            log.error("Promotion fan-out {} failed after {} users", job.promotionId, job.usersAssigned.get(), e);
+            job.error = e.getMessage();
+            job.status = "FAILED";
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            // các trang đã commit (kể cả khi lỗi giữa chừng) đưa vào chỉ mục khuyến mãi
+            activePromotionIndex.refresh(job.promotionId);
+        }
+    }
+
+    private void dispatch(Job job, List<String> tokens, NotificationServiceImpl.PromotionText text) {
+        job.pushQueued.addAndGet(tokens.size());
+        pushExecutor.execute(() -> {
+            int sent = 0;
+            try {
+                sent = fcmService.sendMulticast(tokens, text.title(), text.message());
+            } catch (RuntimeException e) {
+                log.warn("FCM multicast of {} tokens for promotion {} failed", tokens.size(), job.promotionId, e);
+            }
+            job.pushSent.addAndGet(sent);
+            job.pushFailed.addAndGet(tokens.size() - sent);
+        });
+    }
+
+    static final class Job {
+        final String promotionId;
+        final AtomicLong usersAssigned = new AtomicLong();
+        final AtomicLong pushQueued = new AtomicLong();
+        final AtomicLong pushSent = new AtomicLong();
+        final AtomicLong pushFailed = new AtomicLong();
+        volatile String status = "PENDING";
+        volatile long totalUsers;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile String error;
+
+        Job(String promotionId) {
+            this.promotionId = promotionId;
+        }
+
+        PromotionFanOutResponse toResponse() {
+            return PromotionFanOutResponse.builder()
+                    .promotionId(promotionId)
+                    .status(status)
+                    .totalUsers(totalUsers)
+                    .usersAssigned(usersAssigned.get())
+                    .pushQueued(pushQueued.get())
+                    .pushSent(pushSent.get())
+                    .pushFailed(pushFailed.get())
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .error(error)
+                    .build();
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.project.stationery_be_server.service.impl;
 
 import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.cache.ActivePromotionIndex;
+import com.project.stationery_be_server.cache.ProductDetailCache;
+import com.project.stationery_be_server.cache.PromotionUsageCounter;
 import com.project.stationery_be_server.dto.request.DeletePromotionRequest;
 import com.project.stationery_be_server.dto.response.ColorResponse;
 import com.project.stationery_be_server.dto.response.promotion.ProductDetailPromotion;
+import com.project.stationery_be_server.dto.response.promotion.PromotionAssignmentResponse;
 import com.project.stationery_be_server.dto.response.promotion.PromotionResponse;
 import com.project.stationery_be_server.dto.response.promotion.UserInPromotion;
 import com.project.stationery_be_server.entity.*;
@@ -13,7 +17,9 @@ import com.project.stationery_be_server.entity.*;
 import com.project.stationery_be_server.exception.AppException;
 import com.project.stationery_be_server.mapper.PromotionMapper;
 import com.project.stationery_be_server.repository.*;
-import com.project.stationery_be_server.service.NotificationService;
+import com.project.stationery_be_server.repository.PromotionAssignmentRepository.AssignmentCounts;
+import com.project.stationery_be_server.repository.PromotionAssignmentRepository.Target;
+import com.project.stationery_be_server.service.PromotionFanOutService;
 import com.project.stationery_be_server.service.PromotionService;
 import com.project.stationery_be_server.specification.*;
 import jakarta.transaction.Transactional;
@@ -46,8 +52,12 @@ public class PromotionServiceImpl implements PromotionService {
     UserPromotionRepository userPromotionRepository;
     ProductRepository productRepository;
     ProductDetailRepository productDetailRepository;
+    PromotionAssignmentRepository promotionAssignmentRepository;
     private final PromotionMapper promotionMapper;
-    private final NotificationService notificationService;
+    PromotionUsageCounter promotionUsageCounter;
+    PromotionFanOutService promotionFanOutService;
+    ActivePromotionIndex activePromotionIndex;
+    ProductDetailCache productDetailCache;
 
     @Override
     public BigDecimal applyPromotion(String promoCode, BigDecimal orderTotal, User user) {
@@ -89,6 +99,10 @@ public class PromotionServiceImpl implements PromotionService {
             throw new RuntimeException("Cannot delete this promotion because it is currently being used by products.");
         }
         promotionRepository.delete(promotion);
+        promotionUsageCounter.reset(promotionId);
+        activePromotionIndex.refresh(promotionId);
+        // promotion của product detail nằm trong trang chi tiết sản phẩm đã cache
+        productDetailCache.invalidateAll();
 
     }
 
@@ -123,6 +137,9 @@ public class PromotionServiceImpl implements PromotionService {
         existingPromo.setEndDate(request.getEndDate());
 
         promotionRepository.save(existingPromo);
+        promotionUsageCounter.reset(promotionId);
+        activePromotionIndex.refresh(promotionId);
+        productDetailCache.invalidateAll();
     }
 
     @Override
@@ -226,44 +243,26 @@ public class PromotionServiceImpl implements PromotionService {
         return promo;
     }
 
-    @Transactional
-    public void createPromotionForAllUsers(Promotion savedPromo) {
-        // 1. Lấy tất cả user
-        List<User> allUsers = userRepository.findAll();
-
-        // 2. Với mỗi user, tạo UserPromotion
-        for (User u : allUsers) {
-            UserPromotion up = new UserPromotion();
-            up.setPromotion(savedPromo);
-            up.setUser(u);
-            // Nếu có các trường tracking, set ở đây, ví dụ up.setUsedCount(0); up.setIsActive(true);
-            userPromotionRepository.save(up);
-            notificationService.notifyPromotion(up);
-        }
+    public PromotionAssignmentResponse createPromotionForAllUsers(Promotion savedPromo) {
+        // Gán voucher + gửi thông báo cho mọi user chạy nền theo từng trang sau khi promotion được commit,
+        // admin theo dõi tiến độ qua GET /promotions/{promotionId}/fan-out
+        promotionFanOutService.startForAllUsers(savedPromo.getPromotionId());
+        return PromotionAssignmentResponse.builder()
+                .promotionId(savedPromo.getPromotionId())
+                .voucherType(PromotionRequest.VoucherType.ALL_USERS.name())
+                .fanOutStarted(true)
+                .build();
     }
 
 
 
     @Transactional
-    public void createPromotionForSpecificUsers(Promotion savedPromo, List<String> userIds) {
-        for (String userId : userIds) {
-            // 1. Lấy User
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("User không tồn tại với id: " + userId));
-
-            // 2. Kiểm tra mapping đã tồn tại chưa
-            boolean alreadyAssigned = userPromotionRepository.existsByUserAndPromotion(user, savedPromo);
-            if (alreadyAssigned) {
-                continue; // nếu đã gán rồi, bỏ qua
-            }
-
-            // 3. Tạo mới UserPromotion
-            UserPromotion up = new UserPromotion();
-            up.setPromotion(savedPromo);
-            up.setUser(user);
-            // Nếu cần thêm tracking field (usedCount, isActive...), set tại đây.
-            userPromotionRepository.save(up);
+    public PromotionAssignmentResponse createPromotionForSpecificUsers(Promotion savedPromo, List<String> userIds) {
+        AssignmentCounts counts = promotionAssignmentRepository.assign(Target.USER, savedPromo.getPromotionId(), userIds);
+        if (!counts.missingIds().isEmpty()) {
+            throw new RuntimeException("User không tồn tại với id: " + counts.missingIds().getFirst());
         }
+        return toAssignmentResponse(savedPromo, PromotionRequest.VoucherType.USERS, counts);
     }
 
 
@@ -278,7 +277,7 @@ public class PromotionServiceImpl implements PromotionService {
 
     @Override
     @Transactional
-    public void createPromotion(PromotionRequest request) {
+    public PromotionAssignmentResponse createPromotion(PromotionRequest request) {
         // 1. Kiểm tra quyền admin
 
         // 2. Kiểm tra promoCode có trùng không
@@ -289,93 +288,64 @@ public class PromotionServiceImpl implements PromotionService {
 
         // 3. Map Request -> Promotion entity & lưu
         Promotion promoToSave = mapRequestToPromotion(request);
-        Promotion savedPromo = promotionRepository.save(promoToSave);
+        // flush ngay: các dòng gán được INSERT bằng JDBC và tham chiếu promotion_id
+        Promotion savedPromo = promotionRepository.saveAndFlush(promoToSave);
 
         // 4. Phân nhánh theo voucherType
+        PromotionAssignmentResponse assignment;
         if (request.getVoucherType() == PromotionRequest.VoucherType.ALL_USERS) {
-            createPromotionForAllUsers(savedPromo);
+            assignment = createPromotionForAllUsers(savedPromo);
         } else if (request.getVoucherType() == PromotionRequest.VoucherType.ALL_PRODUCTS) {
-            createPromotionForAllProductDetails(savedPromo);
+            assignment = createPromotionForAllProductDetails(savedPromo);
         } else if (request.getVoucherType() == PromotionRequest.VoucherType.USERS) {
             // 5. branch mới: gán voucher chỉ cho danh sách userId
             List<String> userIds = request.getUserIds();
             if (userIds == null || userIds.isEmpty()) {
                 throw new RuntimeException("Phải truyền danh sách userIds khi voucherType == USERS");
             }
-            createPromotionForSpecificUsers(savedPromo, userIds);
+            assignment = createPromotionForSpecificUsers(savedPromo, userIds);
         } else if (request.getVoucherType() == PromotionRequest.VoucherType.PRODUCTS) {
             // Xử lý gán cho một số product
             List<String> productIds = request.getProductIds();
             if (productIds == null || productIds.isEmpty()) {
                 throw new RuntimeException("Phải truyền danh sách productIds khi voucherType == PRODUCTS");
             }
-            createPromotionForSpecificProductDetails(savedPromo, productIds);
+            assignment = createPromotionForSpecificProductDetails(savedPromo, productIds);
         } else {
             throw new RuntimeException("VoucherType không hợp lệ cho phương thức này");
         }
+        // ALL_USERS: fan-out chạy nền tự refresh khi xong
+        activePromotionIndex.refresh(savedPromo.getPromotionId());
+        return assignment;
     }
 
     @Transactional
-    public void createPromotionForSpecificProductDetails(Promotion savedPromo, List<String> productIds) { // du là productIds nhung thuc chat la productDetailIds
-        for (String pdID : productIds){
-            ProductDetail productDetail = productDetailRepository.findById(pdID)
-                    .orElseThrow(() -> new RuntimeException("ProductDetail không tồn tại với id: " + pdID));
-
-            boolean alreadyAssigned = productPromotionRepository.existsByProductDetailAndPromotion(productDetail, savedPromo);
-            if (alreadyAssigned) {
-                continue;
-            }
-
-            // 3. Tạo và lưu ProductPromotion
-            ProductPromotion pp = new ProductPromotion();
-            pp.setPromotion(savedPromo);
-            pp.setProductDetail(productDetail);
-
-            productPromotionRepository.save(pp);
+    public PromotionAssignmentResponse createPromotionForSpecificProductDetails(Promotion savedPromo, List<String> productIds) { // du là productIds nhung thuc chat la productDetailIds
+        AssignmentCounts counts = promotionAssignmentRepository.assign(Target.PRODUCT_DETAIL, savedPromo.getPromotionId(), productIds);
+        if (!counts.missingIds().isEmpty()) {
+            throw new RuntimeException("ProductDetail không tồn tại với id: " + counts.missingIds().getFirst());
         }
-
+        productDetailCache.invalidateAll();
+        return toAssignmentResponse(savedPromo, PromotionRequest.VoucherType.PRODUCTS, counts);
     }
 
     @Transactional
-    public void createPromotionForAllProductDetails(Promotion savedPromo) {
-        List<ProductDetail> allDetails = productDetailRepository.findAll();
-
-        for (ProductDetail detail : allDetails) {
-            boolean alreadyAssigned = productPromotionRepository
-                    .existsByProductDetailAndPromotion(detail, savedPromo);
-
-            if (alreadyAssigned) {
-                continue;
-            }
-
-            ProductPromotion pp = new ProductPromotion();
-            pp.setPromotion(savedPromo);
-            pp.setProductDetail(detail);
-
-            productPromotionRepository.save(pp);
-        }
+    public PromotionAssignmentResponse createPromotionForAllProductDetails(Promotion savedPromo) {
+        // một câu INSERT ... SELECT, không nạp product detail nào vào bộ nhớ
+        AssignmentCounts counts = promotionAssignmentRepository.assignAll(Target.PRODUCT_DETAIL, savedPromo.getPromotionId());
+        productDetailCache.invalidateAll();
+        return toAssignmentResponse(savedPromo, PromotionRequest.VoucherType.ALL_PRODUCTS, counts);
     }
 
-    private void assignPromotionToSpecificUsers(Promotion promo, List<String> userIds) {
-        if (userIds == null || userIds.isEmpty()) {
-            throw new RuntimeException("Phải truyền danh sách userIds khi voucherType = USERS");
-        }
-
-        for (String userId : userIds) {
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("User không tồn tại: " + userId));
-
-            boolean alreadyAssigned = userPromotionRepository.existsByUserAndPromotion(user, promo);
-            if (alreadyAssigned) continue;
-
-            UserPromotion up = new UserPromotion();
-            up.setPromotion(promo);
-            up.setUser(user);
-            userPromotionRepository.save(up);
-
-            // Gửi notification sau khi gán promotion cho user
-            notificationService.notifyPromotion(up);
-        }
+    private static PromotionAssignmentResponse toAssignmentResponse(Promotion promo, PromotionRequest.VoucherType voucherType,
+                                                                    AssignmentCounts counts) {
+        return PromotionAssignmentResponse.builder()
+                .promotionId(promo.getPromotionId())
+                .voucherType(voucherType.name())
+                .requested(counts.requested())
+                .assigned(counts.assigned())
+                .alreadyAssigned(counts.alreadyAssigned())
+                .build();
     }
 
 }
@@ -1,37 +1,48 @@
 package com.project.stationery_be_server.service.impl;
 
 import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.Scheduled.OrderCleanupService;
+import com.project.stationery_be_server.cache.ProductDetailCache;
+import com.project.stationery_be_server.cache.PromotionUsageCounter;
 import com.project.stationery_be_server.dto.request.MomoRequest;
 import com.project.stationery_be_server.dto.request.order.PurchaseOrderProductRequest;
 import com.project.stationery_be_server.dto.request.order.PurchaseOrderRequest;
 import com.project.stationery_be_server.dto.response.AddressResponse;
 import com.project.stationery_be_server.dto.response.momo.MomoResponse;
 import com.project.stationery_be_server.dto.response.PurchaseOrderDetailResponse;
+import com.project.stationery_be_server.dto.response.PurchaseOrderHistoryResponse;
 import com.project.stationery_be_server.dto.response.PurchaseOrderResponse;
 import com.project.stationery_be_server.dto.response.product.ProductDetailResponse;
 import com.project.stationery_be_server.entity.*;
 import com.project.stationery_be_server.exception.AppException;
+import com.project.stationery_be_server.gateway.MomoGatewayClient;
+import com.project.stationery_be_server.gateway.MomoSigner;
 import com.project.stationery_be_server.repository.*;
+import com.project.stationery_be_server.repository.projection.OrderHistoryRow;
+import com.project.stationery_be_server.repository.projection.OrderLineRow;
+import com.project.stationery_be_server.repository.projection.OrderStatusCount;
 import com.project.stationery_be_server.service.NotificationService;
 import com.project.stationery_be_server.service.PurchaseOrderService;
+import com.project.stationery_be_server.utils.PromotionPricing;
+import jakarta.annotation.PostConstruct;
 import lombok.AccessLevel;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.MediaType;
-import org.springframework.web.reactive.function.client.WebClient;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.NonFinal;
-import org.apache.hc.client5.http.utils.Hex;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -41,10 +52,16 @@ import static com.project.stationery_be_server.entity.PurchaseOrder.Status.*;
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class PurchaseOrderServiceImpl implements PurchaseOrderService {
-    WebClient webClient;
+    static final int MAX_ORDER_HISTORY_PAGE_SIZE = 50;
+
+    MomoGatewayClient momoGatewayClient;
+    MomoSigner momoSigner;
+    TransactionTemplate transactionTemplate;
+    OrderCleanupService orderCleanupService;
     ProductDetailRepository productDetailRepository;
     CartRepository cartRepository;
     PurchaseOrderRepository purchaseOrderRepository;
+    PurchaseOrderIndexRepository purchaseOrderIndexRepository;
     UserRepository userRepository;
     UserPromotionRepository userPromotionRepository;
     ProductPromotionRepository productPromotionRepository;
@@ -55,16 +72,13 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
     PaymentRepository paymentRepository;
     private final PromotionRepository promotionRepository;
     InOrderRepository inOrderRepository;
+    StockReservationRepository stockReservationRepository;
+    PromotionUsageCounter promotionUsageCounter;
+    ProductDetailCache productDetailCache;
     private final NotificationService notificationService;
     @Value(value = "${momo.partnerCode}")
     @NonFinal
     String partnerCode;
-    @Value(value = "${momo.accessKey}")
-    @NonFinal
-    String accessKey;
-    @Value(value = "${momo.secretKey}")
-    @NonFinal
-    String secretKey;
     @Value(value = "${momo.redirectUrl}")
     @NonFinal
     String redirectUrl;
@@ -74,18 +88,12 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
     @Value(value = "${momo.requestType}")
     @NonFinal
     String requestType;
-    @Value(value = "${momo.endpoint}")
-    @NonFinal
-    String endpoint;
-    @Value(value = "${momo.accessKey}")
-    @NonFinal
-    String accessKeyMomo;
-    @Value(value = "${momo.secretKey}")
-    @NonFinal
-    String secretKeyMomo;
-    @Value(value = "${momo.urlCheckTransaction}")
-    @NonFinal
-    String urlCheckTransaction;
+
+    // index cho lịch sử đơn phân trang keyset (getUserOrdersByStatus)
+    @PostConstruct
+    void ensureHistoryIndex() {
+        purchaseOrderIndexRepository.createHistoryIndexIfMissing();
+    }
 
     @Transactional
     public Long handleRequestPurchaseOrder(PurchaseOrderRequest request, String orderId, User user) {
@@ -102,6 +110,8 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
 
         purchaseOrderRepository.save(purchaseOrder);
         Long totalAmount = 0L;
+        Map<String, Integer> reservedQuantities = new HashMap<>();
+        Set<String> reservedProductIds = new HashSet<>();
         for (PurchaseOrderProductRequest orderDetail : pdRequest) {
             ProductDetail pd = productDetailRepository.findByProductDetailId(orderDetail.getProductDetailId());
             if (pd == null) {
@@ -113,26 +123,12 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
             if (orderDetail.getProductPromotionId() != null) {
                 promotion = productPromotionRepository.getValidPromotionForProductDetail(orderDetail.getProductPromotionId(), pd.getDiscountPrice()).orElseThrow(() -> new AppException(NotExistedErrorCode.PRODUCT_PROMOTION_NOT_EXISTED));
                 Promotion currentPromotion = promotion.getPromotion();
-                currentPromotion.setTempUsageLimit(currentPromotion.getTempUsageLimit() - 1);
-                if (currentPromotion.getDiscountType() == Promotion.DiscountType.PERCENTAGE) {
-                    // giam %
-                    int valueDisCount = (pd.getDiscountPrice() * currentPromotion.getDiscountValue()) / 100;
-                    if (currentPromotion.getMaxValue() != null && valueDisCount > currentPromotion.getMaxValue()) { // neu so tien  vuot qua max value
-                        disCountPrice -= currentPromotion.getMaxValue();
-                    } else {
-                        disCountPrice -= valueDisCount;
-                    }
-                } else {
-                    // giam theo gia tri
-                    disCountPrice -= currentPromotion.getDiscountValue();
-                }
+                claimPromotionUsage(currentPromotion);
+                disCountPrice -= PromotionPricing.lineDiscount(pd.getDiscountPrice(), currentPromotion);
             }
 
-            pd.setAvailableQuantity(pd.getAvailableQuantity() - orderDetail.getQuantity());
-            if (pd.getAvailableQuantity() < 0) {
-                throw new AppException(NotExistedErrorCode.PRODUCT_NOT_ENOUGH);
-            }
-            productDetailRepository.save(pd);
+            reservedQuantities.merge(pd.getProductDetailId(), orderDetail.getQuantity(), Integer::sum);
+            reservedProductIds.add(pd.getProduct().getProductId());
             totalAmount += (long) disCountPrice * orderDetail.getQuantity();
             PurchaseOrderDetailId id = new PurchaseOrderDetailId();
             id.setPurchaseOrderId(orderId);  // Chính là orderId được truyền vào
@@ -149,23 +145,15 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
             listOderDetail.add(purchaseOrderDetail);
 
         }
+        // trừ available_quantity bằng UPDATE có điều kiện cho cả đơn, không đọc-sửa-ghi entity
+        stockReservationRepository.reserve(reservedQuantities);
+        productDetailCache.invalidateProducts(reservedProductIds);
         UserPromotion userPromotion = null;
         if (userPromotionId != null) {
             userPromotion = userPromotionRepository.getValidPromotionForUser(userPromotionId, totalAmount).orElseThrow(() -> new AppException(NotExistedErrorCode.USER_PROMOTION_NOT_FOUND));
             Promotion currentPromotion = userPromotion.getPromotion();
-            currentPromotion.setTempUsageLimit(currentPromotion.getTempUsageLimit() - 1);
-            if (currentPromotion.getDiscountType() == Promotion.DiscountType.PERCENTAGE) {
-                // giam %
-                Long valueDisCount = (totalAmount * currentPromotion.getDiscountValue()) / 100;
-                if (currentPromotion.getMaxValue() != null && valueDisCount > currentPromotion.getMaxValue()) { // neu so tien  vuot qua max value
-                    totalAmount -= currentPromotion.getMaxValue();
-                } else {
-                    totalAmount -= valueDisCount;
-                }
-            } else {
-                // giam theo gia tri
-                totalAmount -= currentPromotion.getDiscountValue();
-            }
+            claimPromotionUsage(currentPromotion);
+            totalAmount -= PromotionPricing.orderDiscount(totalAmount, currentPromotion);
         }
         purchaseOrder.setPurchaseOrderDetails(listOderDetail);
         purchaseOrder.setUserPromotion(userPromotion);
@@ -187,18 +175,18 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
         String orderInfo = "Order information " + orderId;
         String requestId = UUID.randomUUID().toString();
         String extraData = "hello ae";
-        Long total = handleRequestPurchaseOrder(request, orderId, user);
-        String rawSignature = "accessKey=" + accessKey + "&amount=" + total + "&extraData=" + extraData + "&ipnUrl=" + ipnUrl + "&orderId=" + orderId + "&orderInfo=" + orderInfo + "&partnerCode=" + partnerCode + "&redirectUrl=" + redirectUrl + "&requestId=" + requestId + "&requestType=" + requestType;
-        String prettySignature = "";
-
-        try {
-            prettySignature = generateHmacSHA256(rawSignature, secretKey);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-        if (prettySignature.isBlank()) {
-            throw new RuntimeException("Signature generation failed");
-        }
+        // giữ hàng + tạo in_order trong một transaction ngắn, commit xong mới gọi MoMo
+        // (in_order có trước nên đơn vẫn được job hết hạn dọn nếu app chết giữa chừng)
+        Long total = transactionTemplate.execute(status -> {
+            Long amount = handleRequestPurchaseOrder(request, orderId, user);
+            inOrderRepository.save(InOrder.builder()
+                    .orderId(orderId)
+                    .user(user)
+                    .expiredTime(LocalDateTime.now().plusMinutes(2))
+                    .build());
+            return amount;
+        });
+        String prettySignature = momoSigner.signCreatePayment(total, extraData, orderId, orderInfo, requestId);
         MomoRequest requestMomo = MomoRequest.builder()
                 .partnerCode(partnerCode)
                 .requestType(requestType)
@@ -212,21 +200,19 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
                 .signature(prettySignature)
                 .lang("vi")
                 .build();
-        MomoResponse response = webClient
-                .post()
-                .uri(endpoint)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(requestMomo)
-                .retrieve()
-                .bodyToMono(MomoResponse.class)
-                .block();
-        InOrder inOrder = InOrder.builder()
-                .orderId(orderId)
-                .user(user)
-                .expiredTime(LocalDateTime.now().plusMinutes(2))
-                .paymentUrl(response.getPayUrl()) // URL thanh toán, có thể là của MoMo hoặc ZaloPay
-                .build();
-        inOrderRepository.save(inOrder);
+        MomoResponse response;
+        try {
+            response = momoGatewayClient.createPayment(requestMomo).block();
+        } catch (RuntimeException e) {
+            orderCleanupService.discardUnpaidOrders(List.of(orderId));
+            throw e;
+        }
+        if (response == null || response.getPayUrl() == null) {
+            orderCleanupService.discardUnpaidOrders(List.of(orderId));
+            throw new AppException(NotExistedErrorCode.PAYMENT_GATEWAY_UNAVAILABLE);
+        }
+        // URL thanh toán, có thể là của MoMo hoặc ZaloPay
+        inOrderRepository.updatePaymentUrl(orderId, response.getPayUrl());
 
         return response;
     }
@@ -237,30 +223,26 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         String orderId = generateOrderId();
-        handleRequestPurchaseOrder(request, orderId, user);
+        // gọi qua this không đi qua proxy @Transactional: mở transaction tường minh để giữ hàng, giữ lượt voucher
+        // và ghi đơn cùng commit / rollback
+        transactionTemplate.executeWithoutResult(status -> handleRequestPurchaseOrder(request, orderId, user));
     }
 
     @Override
-    @Transactional
     public MomoResponse transactionStatus(String orderId, Integer status) {
         if (orderId == null || orderId.isEmpty()) {
             throw new IllegalArgumentException("Missing input");
         }
 
-        PurchaseOrder purchaseOrder = purchaseOrderRepository.findByPurchaseOrderId(orderId)
-                .orElseThrow(() -> new AppException(NotExistedErrorCode.ORDER_NOT_FOUND));
-        inOrderRepository.findById(orderId)
-                .orElseThrow(() -> new AppException(NotExistedErrorCode.IN_ORDER_NOT_FOUND));
-
-        String rawSignature = String.format("accessKey=%s&orderId=%s&partnerCode=%s&requestId=%s",
-                accessKeyMomo, orderId, partnerCode, orderId);
-        String signature = null;
-        try {
-            signature = generateHmacSHA256(rawSignature, secretKey);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        if (!purchaseOrderRepository.existsById(orderId)) {
+            throw new AppException(NotExistedErrorCode.ORDER_NOT_FOUND);
+        }
+        if (!inOrderRepository.existsById(orderId)) {
+            throw new AppException(NotExistedErrorCode.IN_ORDER_NOT_FOUND);
         }
 
+        String signature = momoSigner.signQuery(orderId, orderId);
+
         MomoRequest momoRequest = MomoRequest.builder()
                 .requestId(orderId)
                 .orderId(orderId)
@@ -269,20 +251,23 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
                 .signature(signature)
                 .build();
 
-        MomoResponse data = webClient.post()
-                .uri(urlCheckTransaction)
-                .header("Content-Type", "application/json; charset=UTF-8")
-                .bodyValue(momoRequest)
-                .retrieve()
-                .bodyToMono(MomoResponse.class)
-                .block();
+        // gọi MoMo ngoài transaction, chỉ mở transaction khi đã có kết quả để cập nhật đơn
+        MomoResponse data = momoGatewayClient.queryTransaction(momoRequest).block();
 
         if (data == null) throw new RuntimeException("Not paid yet");
 
+        transactionTemplate.executeWithoutResult(tx -> applyTransactionStatus(orderId, data, status));
+        return data;
+    }
+
+    private void applyTransactionStatus(String orderId, MomoResponse data, Integer status) {
+        PurchaseOrder purchaseOrder = purchaseOrderRepository.findByPurchaseOrderId(orderId)
+                .orElseThrow(() -> new AppException(NotExistedErrorCode.ORDER_NOT_FOUND));
+
         boolean isCanceled = ( data.getResultCode() == 1006 || status == 0);
         if (isCanceled) {
             rollbackOrder(purchaseOrder, orderId);
-            return data;
+            return;
         }
 
         if (data.getResultCode() == 0) {
@@ -291,24 +276,23 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
             }
             handleSuccessfulPayment(purchaseOrder, orderId);
         }
-
-        return data;
     }
 
     private void rollbackOrder(PurchaseOrder purchaseOrder, String orderId) {
         if (purchaseOrder.getUserPromotion() != null) {
-            promotionRepository.increaseUsageCountByPromotionId(
-                    purchaseOrder.getUserPromotion().getPromotion().getPromotionId());
+            promotionUsageCounter.release(
+                    purchaseOrder.getUserPromotion().getPromotion().getPromotionId(), 1);
         }
         List<PurchaseOrderDetail> details = purchaseOrderDetailRepository.findByPurchaseOrder_PurchaseOrderId(orderId);
         for (PurchaseOrderDetail detail : details) {
             String productDetailId = detail.getProductDetail().getProductDetailId();
             productDetailRepository.restoreQuantity(productDetailId, detail.getQuantity());
+            productDetailCache.invalidateProduct(detail.getProductDetail().getProduct().getProductId());
             productDetailRepository.deleteById(productDetailId);
 
             if (detail.getProductPromotion() != null) {
-                promotionRepository.increaseUsageCountByPromotionId(
-                        detail.getProductPromotion().getPromotion().getPromotionId());
+                promotionUsageCounter.release(
+                        detail.getProductPromotion().getPromotion().getPromotionId(), 1);
             }
         }
 
@@ -325,13 +309,13 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
             if (result == 0) throw new AppException(NotExistedErrorCode.PRODUCT_NOT_ENOUGH);
 
             if (detail.getProductPromotion() != null) {
-                promotionRepository.reduceUsageCountByPromotionId(
+                promotionUsageCounter.consume(
                         detail.getProductPromotion().getPromotion().getPromotionId());
             }
         }
 
         if (purchaseOrder.getUserPromotion() != null) {
-            promotionRepository.reduceUsageCountByPromotionId(
+            promotionUsageCounter.consume(
                     purchaseOrder.getUserPromotion().getPromotion().getPromotionId());
         }
 
@@ -348,13 +332,11 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
         purchaseOrderRepository.save(purchaseOrder);
     }
 
-    public String generateHmacSHA256(String data, String key) throws Exception {
-
-        Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secret_key = new SecretKeySpec(key.getBytes("UTF-8"), "HmacSHA256");
-        sha256_HMAC.init(secret_key);
-
-        return Hex.encodeHexString(sha256_HMAC.doFinal(data.getBytes("UTF-8")));
+    // giữ 1 lượt dùng voucher qua bộ đếm stripe thay vì sửa tempUsageLimit trên entity
+    private void claimPromotionUsage(Promotion promotion) {
+        if (!promotionUsageCounter.claim(promotion.getPromotionId())) {
+            throw new AppException(NotExistedErrorCode.PROMOTION_USAGE_LIMIT_REACHED);
+        }
     }
 
     public String generateOrderId() {
@@ -364,49 +346,100 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
     // ***USER: Lấy all đơn hàng
     @Override
     @Transactional(readOnly = true)
-    public List<PurchaseOrderResponse> getUserOrdersByStatus(String userId, String status) {
-        List<PurchaseOrder> orders;
+    public PurchaseOrderHistoryResponse getUserOrdersByStatus(String userId, String status, String cursor, int size) {
+        PurchaseOrder.Status orderStatus = null;
 
-        // Kiểm tra nếu status là 'all' thì lấy tất cả đơn hàng theo userId
-        if ("all".equalsIgnoreCase(status)) {
-            orders = purchaseOrderRepository.findByUser_UserIdWithDetails(userId);
-        } else {
-            PurchaseOrder.Status orderStatus;
+        // status 'all' thì lấy tất cả đơn hàng theo userId
+        if (!"all".equalsIgnoreCase(status)) {
             try {
                 orderStatus = PurchaseOrder.Status.valueOf(status.toUpperCase());
             } catch (IllegalArgumentException e) {
                 throw new AppException(NotExistedErrorCode.INVALID_STATUS);
             }
-            orders = purchaseOrderRepository.findByUser_UserIdAndStatusWithDetails(userId, orderStatus);
-        }
-
-        if (orders.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        return orders.stream()
-                .map(order -> PurchaseOrderResponse.builder()
-                        .purchaseOrderId(order.getPurchaseOrderId())
-                        .createdAt(order.getCreatedAt() != null
-                                ? java.util.Date.from(order.getCreatedAt().atZone(java.time.ZoneId.systemDefault()).toInstant())
-                                : null)
-                        .expiredTime(order.getExpiredTime() != null
-                                ? LocalDateTime.parse(order.getExpiredTime().toString())
-                                : null)
-                        .pdfUrl(order.getPdfUrl())
-                        .userPromotionId(order.getUserPromotion() != null ? order.getUserPromotion().getUserPromotionId() : null)
-                        .status(order.getStatus())
-                        .note(order.getNote())
-                        .cancelReason(order.getCancelReason())
-                        .amount(BigDecimal.valueOf(order.getAmount()))
-                        .orderDetails(order.getPurchaseOrderDetails().stream()
-                                .map(detail -> PurchaseOrderDetailResponse.builder()
-                                        .productDetailId(detail.getPurchaseOrderDetailId().getProductDetailId())
-                                        .quantity(detail.getQuantity())
-                                        .build())
-                                .collect(Collectors.toList()))
-                        .build())
-                .collect(Collectors.toList());
+        }
+
+        int pageSize = Math.clamp(size, 1, MAX_ORDER_HISTORY_PAGE_SIZE);
+        // lấy dư một dòng để biết còn trang sau hay không
+        Limit limit = Limit.of(pageSize + 1);
+        List<OrderHistoryRow> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = purchaseOrderRepository.findOrderHistory(userId, orderStatus, limit);
+        } else {
+            OrderCursor after = OrderCursor.decode(cursor);
+            rows = purchaseOrderRepository.findOrderHistoryAfter(userId, orderStatus, after.createdAt(), after.purchaseOrderId(), limit);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        if (rows.isEmpty()) {
+            return PurchaseOrderHistoryResponse.builder()
+                    .orders(Collections.emptyList())
+                    .hasMore(false)
+                    .build();
+        }
+
+        // chi tiết của cả trang lấy bằng một query IN, chỉ các cột cần cho response
+        Map<String, List<PurchaseOrderDetailResponse>> linesByOrder = purchaseOrderDetailRepository
+                .findLinesByPurchaseOrderIds(rows.stream().map(OrderHistoryRow::purchaseOrderId).toList())
+                .stream()
+                .collect(Collectors.groupingBy(OrderLineRow::purchaseOrderId, Collectors.mapping(
+                        line -> PurchaseOrderDetailResponse.builder()
+                                .productDetailId(line.productDetailId())
+                                .quantity(line.quantity())
+                                .build(),
+                        Collectors.toList())));
+
+        List<PurchaseOrderResponse> orders = new ArrayList<>(rows.size());
+        for (OrderHistoryRow row : rows) {
+            orders.add(toOrderResponse(row, linesByOrder.getOrDefault(row.purchaseOrderId(), List.of())));
+        }
+        OrderHistoryRow last = rows.get(rows.size() - 1);
+        return PurchaseOrderHistoryResponse.builder()
+                .orders(orders)
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? new OrderCursor(last.createdAt(), last.purchaseOrderId()).encode() : null)
+                .build();
+    }
+
+    // Map đơn hàng sang response cho danh sách đơn của user (static để benchmark gọi trực tiếp)
+    public static PurchaseOrderResponse toOrderResponse(OrderHistoryRow order, List<PurchaseOrderDetailResponse> orderDetails) {
+        return PurchaseOrderResponse.builder()
+                .purchaseOrderId(order.purchaseOrderId())
+                .createdAt(order.createdAt() != null
+                        ? java.util.Date.from(order.createdAt().atZone(java.time.ZoneId.systemDefault()).toInstant())
+                        : null)
+                .expiredTime(order.expiredTime())
+                .pdfUrl(order.pdfUrl())
+                .userPromotionId(order.userPromotionId())
+                .status(order.status())
+                .note(order.note())
+                .cancelReason(order.cancelReason())
+                .amount(order.amount() != null ? BigDecimal.valueOf(order.amount()) : null)
+                .orderDetails(orderDetails)
+                .build();
+    }
+
+    // Vị trí keyset của đơn cuối trang, mã hóa base64url "createdAt|purchaseOrderId" để client truyền lại nguyên văn
+    record OrderCursor(LocalDateTime createdAt, String purchaseOrderId) {
+        String encode() {
+            String raw = createdAt + "|" + purchaseOrderId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static OrderCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                if (separator <= 0 || separator == raw.length() - 1) {
+                    throw new AppException(NotExistedErrorCode.INVALID_ORDER_CURSOR);
+                }
+                return new OrderCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new AppException(NotExistedErrorCode.INVALID_ORDER_CURSOR);
+            }
+        }
     }
 
 
@@ -560,22 +593,18 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
     @Transactional(readOnly = true)
     public Map<PurchaseOrder.Status, Long> getOrderStatusStatistics(String userId) {
         // Kiểm tra user tồn tại
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new AppException(NotExistedErrorCode.USER_NOT_EXISTED));
-
-        // Lấy danh sách đơn hàng theo userId
-        List<PurchaseOrder> orders = purchaseOrderRepository.findByUser_UserIdWithDetails(userId);
-
-        // Thống kê số lượng đơn hàng theo từng trạng thái
-        Map<PurchaseOrder.Status, Long> statistics = orders.stream()
-                .collect(Collectors.groupingBy(
-                        PurchaseOrder::getStatus,
-                        Collectors.counting()
-                ));
+        if (!userRepository.existsById(userId)) {
+            throw new AppException(NotExistedErrorCode.USER_NOT_EXISTED);
+        }
 
-        // Đảm bảo tất cả trạng thái đều có trong map, kể cả khi số lượng là 0
-        Arrays.stream(PurchaseOrder.Status.values())
-                .forEach(status -> statistics.putIfAbsent(status, 0L));
+        // Đếm theo trạng thái bằng GROUP BY, trạng thái không có đơn vẫn trả về 0
+        Map<PurchaseOrder.Status, Long> statistics = new EnumMap<>(PurchaseOrder.Status.class);
+        for (PurchaseOrder.Status status : PurchaseOrder.Status.values()) {
+            statistics.put(status, 0L);
+        }
+        for (OrderStatusCount count : purchaseOrderRepository.countByStatusForUser(userId)) {
+            statistics.put(count.status(), count.count());
+        }
 
         return statistics;
     }
@@ -605,23 +634,18 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
         // Restore product quantities
         List<PurchaseOrderDetail> orderDetails = purchaseOrderDetailRepository.findByPurchaseOrder_PurchaseOrderId(purchaseOrderId);
         for (PurchaseOrderDetail detail : orderDetails) {
-            ProductDetail productDetail = detail.getProductDetail();
-            productDetail.setAvailableQuantity(productDetail.getAvailableQuantity() + detail.getQuantity());
-            productDetailRepository.save(productDetail);
+            productDetailRepository.restoreQuantity(detail.getProductDetail().getProductDetailId(), detail.getQuantity());
+            productDetailCache.invalidateProduct(detail.getProductDetail().getProduct().getProductId());
 
             // Restore product promotion usage limit if applicable
             if (detail.getProductPromotion() != null) {
-                Promotion promotion = detail.getProductPromotion().getPromotion();
-                promotion.setTempUsageLimit(promotion.getTempUsageLimit() + 1);
-                promotionRepository.save(promotion);
+                promotionUsageCounter.release(detail.getProductPromotion().getPromotion().getPromotionId(), 1);
             }
         }
 
         // Restore user promotion usage limit if applicable
         if (purchaseOrder.getUserPromotion() != null) {
-            Promotion userPromotion = purchaseOrder.getUserPromotion().getPromotion();
-            userPromotion.setTempUsageLimit(userPromotion.getTempUsageLimit() + 1);
-            promotionRepository.save(userPromotion);
+            promotionUsageCounter.release(purchaseOrder.getUserPromotion().getPromotion().getPromotionId(), 1);
         }
 
         // Update order status to CANCELED
@@ -668,9 +692,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
         if (request.getUserPromotionId() != null) {
             // If there's an existing user promotion, restore its usage limit
             if (purchaseOrder.getUserPromotion() != null) {
-                Promotion currentPromotion = purchaseOrder.getUserPromotion().getPromotion();
-                currentPromotion.setTempUsageLimit(currentPromotion.getTempUsageLimit() + 1);
-                promotionRepository.save(currentPromotion);
+                promotionUsageCounter.release(purchaseOrder.getUserPromotion().getPromotion().getPromotionId(), 1);
             }
 
             // Apply new user promotion
@@ -679,9 +701,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
                     purchaseOrder.getAmount()
             ).orElseThrow(() -> new AppException(NotExistedErrorCode.USER_PROMOTION_NOT_FOUND));
 
-            Promotion newPromotion = newUserPromotion.getPromotion();
-            newPromotion.setTempUsageLimit(newPromotion.getTempUsageLimit() - 1);
-            promotionRepository.save(newPromotion);
+            claimPromotionUsage(newUserPromotion.getPromotion());
             purchaseOrder.setUserPromotion(newUserPromotion);
 
             // Recalculate total amount with new promotion
@@ -726,16 +746,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
 
         if (purchaseOrder.getUserPromotion() != null) {
             Promotion promotion = purchaseOrder.getUserPromotion().getPromotion();
-            if (promotion.getDiscountType() == Promotion.DiscountType.PERCENTAGE) {
-                Long valueDiscount = (totalAmount * promotion.getDiscountValue()) / 100;
-                if (promotion.getMaxValue() != null && valueDiscount > promotion.getMaxValue()) {
-                    totalAmount -= promotion.getMaxValue();
-                } else {
-                    totalAmount -= valueDiscount;
-                }
-            } else {
-                totalAmount -= promotion.getDiscountValue();
-            }
+            totalAmount -= PromotionPricing.orderDiscount(totalAmount, promotion);
         }
         return totalAmount;
     }
@@ -744,30 +755,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
     @Override
     @Transactional(readOnly = true)
     public Page<PurchaseOrderResponse> getAllPendingOrders(String roleName, Pageable pageable) {
-        Page<PurchaseOrder> orders = purchaseOrderRepository.findPendingOrdersByFilters(
-                roleName, PurchaseOrder.Status.PENDING, pageable);
-        if (orders.isEmpty()) {
-            return Page.empty(pageable);
-        }
-        return orders.map(order -> PurchaseOrderResponse.builder()
-                .purchaseOrderId(order.getPurchaseOrderId())
-                .createdAt(order.getCreatedAt() != null
-                        ? java.util.Date.from(order.getCreatedAt().atZone(java.time.ZoneId.systemDefault()).toInstant())
-                        : null)
-                .pdfUrl(order.getPdfUrl())
-                .userPromotionId(order.getUserPromotion() != null ? order.getUserPromotion().getUserPromotionId() : null)
-                .status(order.getStatus())
-                .amount(BigDecimal.valueOf(order.getAmount()))
-                .note(order.getNote())
-                .cancelReason(order.getCancelReason())
-                .orderDetails(order.getPurchaseOrderDetails().stream()
-                        .map(detail -> PurchaseOrderDetailResponse.builder()
-                                .productDetailId(detail.getPurchaseOrderDetailId().getProductDetailId())
-                                .quantity(detail.getQuantity())
-                                .build())
-                        .collect(Collectors.toList()))
-                .userId(order.getUser().getUserId())
-                .build());
+        return findAdminOrders(roleName, List.of(PurchaseOrder.Status.PENDING), pageable);
     }
 
     @Override
@@ -777,11 +765,31 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
                 ? List.of(PurchaseOrder.Status.PROCESSING, PurchaseOrder.Status.SHIPPING,
                 PurchaseOrder.Status.COMPLETED, PurchaseOrder.Status.CANCELED)
                 : status;
-        Page<PurchaseOrder> orders = purchaseOrderRepository.findNonPendingOrdersByFilters(roleName, statuses, pageable);
-        if (orders.isEmpty()) {
+        return findAdminOrders(roleName, statuses, pageable);
+    }
+
+    // Bước 1 lấy một trang id (kèm count), bước 2 load đơn + chi tiết của đúng các id đó rồi xếp lại theo thứ tự trang
+    private Page<PurchaseOrderResponse> findAdminOrders(String roleName, List<PurchaseOrder.Status> statuses, Pageable pageable) {
+        Page<String> orderIds = purchaseOrderRepository.findOrderIdsByFilters(roleName, statuses, pageable);
+        if (orderIds.isEmpty()) {
             return Page.empty(pageable);
         }
-        return orders.map(order -> PurchaseOrderResponse.builder()
+        Map<String, PurchaseOrder> ordersById = purchaseOrderRepository.findWithDetailsByPurchaseOrderIds(orderIds.getContent())
+                .stream()
+                .collect(Collectors.toMap(PurchaseOrder::getPurchaseOrderId, order -> order));
+        List<PurchaseOrderResponse> content = new ArrayList<>(orderIds.getNumberOfElements());
+        for (String orderId : orderIds) {
+            PurchaseOrder order = ordersById.get(orderId);
+            // đơn bị xóa giữa 2 query (vd: job dọn đơn hết hạn) thì bỏ qua
+            if (order != null) {
+                content.add(toAdminOrderResponse(order));
+            }
+        }
+        return new PageImpl<>(content, pageable, orderIds.getTotalElements());
+    }
+
+    private static PurchaseOrderResponse toAdminOrderResponse(PurchaseOrder order) {
+        return PurchaseOrderResponse.builder()
                 .purchaseOrderId(order.getPurchaseOrderId())
                 .createdAt(order.getCreatedAt() != null
                         ? java.util.Date.from(order.getCreatedAt().atZone(java.time.ZoneId.systemDefault()).toInstant())
@@ -800,7 +808,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
                                 .build())
                         .collect(Collectors.toList()))
                 .userId(order.getUser().getUserId())
-                .build());
+                .build();
     }
 
     @Override
@@ -853,23 +861,18 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
             // Restore product quantities
             List<PurchaseOrderDetail> orderDetails = purchaseOrderDetailRepository.findByPurchaseOrder_PurchaseOrderId(purchaseOrderId);
             for (PurchaseOrderDetail detail : orderDetails) {
-                ProductDetail productDetail = detail.getProductDetail();
-                productDetail.setAvailableQuantity(productDetail.getAvailableQuantity() + detail.getQuantity());
-                productDetailRepository.save(productDetail);
+                productDetailRepository.restoreQuantity(detail.getProductDetail().getProductDetailId(), detail.getQuantity());
+                productDetailCache.invalidateProduct(detail.getProductDetail().getProduct().getProductId());
 
                 // Restore product promotion usage limit if applicable
                 if (detail.getProductPromotion() != null) {
-                    Promotion promotion = detail.getProductPromotion().getPromotion();
-                    promotion.setTempUsageLimit(promotion.getTempUsageLimit() + 1);
-                    promotionRepository.save(promotion);
+                    promotionUsageCounter.release(detail.getProductPromotion().getPromotion().getPromotionId(), 1);
                 }
             }
 
             // Restore user promotion usage limit if applicable
             if (purchaseOrder.getUserPromotion() != null) {
-                Promotion userPromotion = purchaseOrder.getUserPromotion().getPromotion();
-                userPromotion.setTempUsageLimit(userPromotion.getTempUsageLimit() + 1);
-                promotionRepository.save(userPromotion);
+                promotionUsageCounter.release(purchaseOrder.getUserPromotion().getPromotion().getPromotionId(), 1);
             }
 
             // Set cancel reason and clear expired time
@@ -1,5 +1,7 @@
 package com.project.stationery_be_server.service.impl;
 
+import com.project.stationery_be_server.cache.ActivePromotionIndex;
+import com.project.stationery_be_server.cache.ActivePromotionIndex.ActivePromotion;
 import com.project.stationery_be_server.entity.UserPromotion;
 import com.project.stationery_be_server.repository.UserPromotionRepository;
 import com.project.stationery_be_server.service.NotificationService;
@@ -15,7 +17,11 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,12 +29,27 @@ import java.util.stream.Collectors;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class UserPromotionServiceImpl implements UserPromotionService {
     final UserPromotionRepository userPromotionRepository;
+    ActivePromotionIndex activePromotionIndex;
 
     @Override
     public List<UserPromotion> getVouchersForUser() {
         var context = SecurityContextHolder.getContext();
         String userId = context.getAuthentication().getName();
-        return userPromotionRepository.findUserPromotionForUser(userId);
+        // chỉ mục quyết định voucher nào đang hiệu lực, DB chỉ còn tra theo khóa chính.
+        // Chỉ mục theo kịp thay đổi của admin ngay sau commit, nhưng usage_limit giảm khi khách đặt hàng chỉ được
+        // nạp lại định kỳ (promotion-index.reload-interval-ms, mặc định 60s): voucher vừa hết lượt có thể còn hiện
+        // tới lần nạp kế tiếp, đặt hàng vẫn kiểm tra lại trên DB
+        List<String> userPromotionIds = activePromotionIndex.forUser(userId, LocalDateTime.now()).stream()
+                .map(ActivePromotion::assignmentId)
+                .toList();
+        if (userPromotionIds.isEmpty()) return List.of();
+        // findAllById không giữ thứ tự: trả về theo thứ tự của chỉ mục, bỏ dòng không còn trên DB
+        Map<String, UserPromotion> byId = userPromotionRepository.findAllById(userPromotionIds).stream()
+                .collect(Collectors.toMap(UserPromotion::getUserPromotionId, Function.identity()));
+        return userPromotionIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
     @Override
     public Page<UserPromotion> getAllUserPromotionPagination(Pageable pageable, String search) {
@@ -1,13 +1,12 @@
 package com.project.stationery_be_server.service.impl;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nimbusds.openid.connect.sdk.claims.UserInfo;
 import com.project.stationery_be_server.Error.AuthErrorCode;
 import com.project.stationery_be_server.Error.InvalidErrorCode;
 import com.project.stationery_be_server.Error.NotExistedErrorCode;
+import com.project.stationery_be_server.asset.AssetCleanupService;
 import com.project.stationery_be_server.dto.request.*;
 import com.project.stationery_be_server.dto.response.UserInfoResponse;
 import com.project.stationery_be_server.dto.response.UserResponse;
@@ -16,7 +15,9 @@ import com.project.stationery_be_server.entity.Product;
 import com.project.stationery_be_server.entity.Role;
 import com.project.stationery_be_server.entity.User;
 import com.project.stationery_be_server.exception.AppException;
+import com.project.stationery_be_server.gateway.ImageUploader;
 import com.project.stationery_be_server.mapper.UserMapper;
+import com.project.stationery_be_server.otp.OtpStore;
 import com.project.stationery_be_server.repository.RoleRepository;
 import com.project.stationery_be_server.repository.UserRepository;
 import com.project.stationery_be_server.service.EmailService;
@@ -37,12 +38,11 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Slf4j
 @Service
@@ -55,22 +55,11 @@ public class UserServiceImpl implements UserService {
     EmailService emailService;
     OtpUtils otpUtils;
     RoleRepository roleRepository;
-    Cloudinary cloudinary;
-
-    // Temporary storage for pending registrations
-    private final Map<String, RegisterRequest> pendingRegistrations = new HashMap<>();
-    private final Map<String, OtpDetails> otpStorage = new HashMap<>();
-
-
-    private static class OtpDetails {
-        Integer otp;
-        Date createdAt;
-
-        OtpDetails(Integer otp, Date createdAt) {
-            this.otp = otp;
-            this.createdAt = createdAt;
-        }
-    }
+    ImageUploader imageUploader;
+    AssetCleanupService assetCleanupService;
+    TransactionTemplate transactionTemplate;
+    // OTP và đăng ký chờ xác nhận: có hạn, dùng được đồng thời và chia sẻ giữa các instance khi cấu hình jdbc
+    OtpStore otpStore;
 
     @Override
     @Transactional(readOnly = true)
@@ -123,10 +112,17 @@ public class UserServiceImpl implements UserService {
         if (userRepository.existsByEmail(email)) {
             throw new AppException(NotExistedErrorCode.EMAIL_ALREADY_EXISTS);
         }
-        if (pendingRegistrations.containsKey(email)) {
+        if (otpStore.getPendingRegistration(email).isPresent()) {
             throw new AppException(NotExistedErrorCode.PENDING_REGISTRATION_EXISTS);
         }
-        return sendOtp(request);
+        // Mã hóa mật khẩu ngay, không giữ mật khẩu gốc trong bộ nhớ / bảng chờ
+        RegisterRequest pending = RegisterRequest.builder()
+                .firstName(request.getFirstName())
+                .lastName(request.getLastName())
+                .email(email)
+                .password(passwordEncoder.encode(request.getPassword()))
+                .build();
+        return sendOtp(pending);
     }
 
     @Override
@@ -140,12 +136,12 @@ public class UserServiceImpl implements UserService {
                 });
         // Generate and store OTP
         Integer otp = otpUtils.generateOTP();
-        otpStorage.put(email, new OtpDetails(otp, new Date()));
+        otpStore.putOtp(email, new OtpStore.OtpEntry(otp, new Date()));
         try {
             emailService.sendSimpleMail(new EmailRequest(email, otp));
             return "OTP sent to " + email;
         } catch (Exception e) {
-            otpStorage.remove(email);
+            otpStore.removeOtp(email);
             throw new AppException(AuthErrorCode.SEND_MAIL_FAILD);
         }
     }
@@ -161,27 +157,25 @@ public class UserServiceImpl implements UserService {
                     return new AppException(NotExistedErrorCode.USER_NOT_EXISTED);
                 });
         // Verify OTP
-        OtpDetails otpDetails = otpStorage.get(email);
-        if (otpDetails == null) {
-            throw new AppException(NotExistedErrorCode.OTP_NOT_FOUND);
-        }
+        OtpStore.OtpEntry otpDetails = otpStore.getOtp(email)
+                .orElseThrow(() -> new AppException(NotExistedErrorCode.OTP_NOT_FOUND));
         // Check OTP expiration (5 minutes)
-        if (otpDetails.createdAt == null ||
-            (new Date().getTime() - otpDetails.createdAt.getTime() > 300_000)) {
-            otpStorage.remove(email);
+        if (otpDetails.createdAt() == null ||
+            (new Date().getTime() - otpDetails.createdAt().getTime() > 300_000)) {
+            otpStore.removeOtp(email);
             throw new AppException(AuthErrorCode.OTP_EXPIRED);
         }
         // Verify OTP match
-        if (!otpDetails.otp.equals(userOtp)) {
+        if (userOtp == null || otpDetails.otp() != userOtp) {
             throw new AppException(InvalidErrorCode.INVALID_OTP);
         }
         // Update password
         user.setPassword(passwordEncoder.encode(newPassword));
-        user.setOtp(otpDetails.otp);
-        user.setOtpCreatedAt(otpDetails.createdAt);
+        user.setOtp(otpDetails.otp());
+        user.setOtpCreatedAt(otpDetails.createdAt());
         User updatedUser = userRepository.save(user);
         // Clean up OTP storage
-        otpStorage.remove(email);
+        otpStore.removeOtp(email);
         return userMapper.toUserResponse(updatedUser);
     }
 
@@ -198,63 +192,57 @@ public class UserServiceImpl implements UserService {
     public UserResponse verifyOtp(OtpVerificationRequest otpRequest) {
         String email = otpRequest.getEmail();
         Integer userOtp = otpRequest.getOtp();
-        OtpDetails otpDetails = otpStorage.get(email);
-        if (otpDetails == null) {
-            throw new AppException(NotExistedErrorCode.OTP_NOT_FOUND);
-        }
-        if (otpDetails.createdAt == null ||
-            (new Date().getTime() - otpDetails.createdAt.getTime() > 300_000)) {
-            otpStorage.remove(email);
-            pendingRegistrations.remove(email);
+        OtpStore.OtpEntry otpDetails = otpStore.getOtp(email)
+                .orElseThrow(() -> new AppException(NotExistedErrorCode.OTP_NOT_FOUND));
+        if (otpDetails.createdAt() == null ||
+            (new Date().getTime() - otpDetails.createdAt().getTime() > 300_000)) {
+            otpStore.removeOtp(email);
+            otpStore.removePendingRegistration(email);
             throw new AppException(AuthErrorCode.OTP_EXPIRED);
         }
-        if (!otpDetails.otp.equals(userOtp)) {
+        if (userOtp == null || otpDetails.otp() != userOtp) {
             throw new AppException(InvalidErrorCode.INVALID_OTP);
         }
-        RegisterRequest request = pendingRegistrations.get(email);
-        if (request == null) {
-            throw new AppException(NotExistedErrorCode.PENDING_REGISTRATION_NOT_FOUND);
-        }
+        RegisterRequest request = otpStore.getPendingRegistration(email)
+                .orElseThrow(() -> new AppException(NotExistedErrorCode.PENDING_REGISTRATION_NOT_FOUND));
         Role role = roleRepository.findById("112")
                 .orElseThrow(() -> new RuntimeException("Role User not found"));
         User user = User.builder()
                 .firstName(request.getFirstName())
                 .lastName(request.getLastName())
                 .email(email)
-                .password(passwordEncoder.encode(request.getPassword()))
+                .password(request.getPassword()) // đã mã hóa lúc register
                 .block(false)
-                .otp(otpDetails.otp)  // Store OTP in DB
-                .otpCreatedAt(otpDetails.createdAt)
+                .otp(otpDetails.otp())  // Store OTP in DB
+                .otpCreatedAt(otpDetails.createdAt())
                 .role(role)
                 .build();
         User savedUser = userRepository.save(user);
-        pendingRegistrations.remove(email);
-        otpStorage.remove(email);
+        otpStore.removePendingRegistration(email);
+        otpStore.removeOtp(email);
         return userMapper.toUserResponse(savedUser);
     }
 
     @Override
     @Transactional
     public String resendOtp(String email) {
-        RegisterRequest request = pendingRegistrations.get(email);
-        if (request == null) {
-            throw new AppException(NotExistedErrorCode.PENDING_REGISTRATION_NOT_FOUND);
-        }
+        RegisterRequest request = otpStore.getPendingRegistration(email)
+                .orElseThrow(() -> new AppException(NotExistedErrorCode.PENDING_REGISTRATION_NOT_FOUND));
         return sendOtp(request);
     }
 
     private String sendOtp(RegisterRequest request) {
         String email = request.getEmail();
         Integer otp = otpUtils.generateOTP();
-        // Store registration details and OTP in memory
-        pendingRegistrations.put(email, request);
-        otpStorage.put(email, new OtpDetails(otp, new Date()));
+        // Store registration details and OTP
+        otpStore.putPendingRegistration(request);
+        otpStore.putOtp(email, new OtpStore.OtpEntry(otp, new Date()));
         try {
             emailService.sendSimpleMail(new EmailRequest(email, otp));
             return "OTP sent to " + email;
         } catch (Exception e) {
-            pendingRegistrations.remove(email);
-            otpStorage.remove(email);
+            otpStore.removePendingRegistration(email);
+            otpStore.removeOtp(email);
             throw new AppException(AuthErrorCode.SEND_MAIL_FAILD);
         }
     }
@@ -284,7 +272,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public UserResponse updateUser(String documentJson, MultipartFile file) {
         ObjectMapper objectMapper = new ObjectMapper();
-        UserRequest request = null;
+        UserRequest request;
         try {
             request = objectMapper.readValue(documentJson, UserRequest.class);
         } catch (JsonProcessingException e) {
@@ -292,26 +280,28 @@ public class UserServiceImpl implements UserService {
         }
         var context = SecurityContextHolder.getContext();
         String userId = context.getAuthentication().getName();
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new AppException(NotExistedErrorCode.USER_NOT_EXISTED));
+        // upload trước khi chạm DB để không giữ connection trong lúc chờ Cloudinary
+        ImageUploader.UploadedImage avatar = uploadAvatar(file);
         try {
-            if (file != null && !file.isEmpty()) {
-                Map<?, ?> uploadResult = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.emptyMap());
-                String url = uploadResult.get("secure_url").toString(); // hoặc "url"
-                user.setAvatar(url);
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Error uploading file to Cloudinary");
+            return transactionTemplate.execute(status -> {
+                User user = userRepository.findById(userId)
+                        .orElseThrow(() -> new AppException(NotExistedErrorCode.USER_NOT_EXISTED));
+                if (avatar != null) {
+                    user.setAvatar(avatar.url());
+                }
+                user.setFirstName(request.getFirstName() != null ? request.getFirstName() : user.getFirstName());
+                user.setLastName(request.getLastName() != null ? request.getLastName() : user.getLastName());
+                user.setEmail(request.getEmail() != null ? request.getEmail() : user.getEmail());
+                user.setPhone(request.getPhone() != null ? request.getPhone() : user.getPhone());
+                user.setDob(request.getDob() != null ? request.getDob() : user.getDob());
+//                user.setAvatar(request.getAvatar() != null ? request.getAvatar() : user.getAvatar());
+
+                return userMapper.toUserResponse(userRepository.save(user));
+            });
+        } catch (RuntimeException e) {
+            discardAvatar(avatar);
+            throw e;
         }
-        user.setFirstName(request.getFirstName() != null ? request.getFirstName() : user.getFirstName());
-        user.setLastName(request.getLastName() != null ? request.getLastName() : user.getLastName());
-        user.setEmail(request.getEmail() != null ? request.getEmail() : user.getEmail());
-        user.setPhone(request.getPhone() != null ? request.getPhone() : user.getPhone());
-        user.setDob(request.getDob() != null ? request.getDob() : user.getDob());
-//        user.setAvatar(request.getAvatar() != null ? request.getAvatar() : user.getAvatar());
-
-        user = userRepository.save(user);
-        return userMapper.toUserResponse(user);
     }
 
     @Override
@@ -357,43 +347,42 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @Transactional
     public UserResponse updateUserAdmin(String documentJson, String userId, MultipartFile file) {
         ObjectMapper objectMapper = new ObjectMapper();
-        UserRequest request = null;
+        UserRequest request;
         try {
             request = objectMapper.readValue(documentJson, UserRequest.class);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new AppException(NotExistedErrorCode.USER_NOT_EXISTED));
+        ImageUploader.UploadedImage avatar = uploadAvatar(file);
         try {
-            if (file != null && !file.isEmpty()) {
-                Map<?, ?> uploadResult = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.emptyMap());
-                String url = uploadResult.get("secure_url").toString(); // hoặc "url"
-                if(user.getAvatar() != null) {
-                    // Xóa ảnh cũ nếu có
-                    String publicKey = extractPublicIdFromUrl(user.getAvatar());
-                    deleteImageAsync(publicKey);
+            return transactionTemplate.execute(status -> {
+                User user = userRepository.findById(userId)
+                        .orElseThrow(() -> new AppException(NotExistedErrorCode.USER_NOT_EXISTED));
+                if (avatar != null) {
+                    if (user.getAvatar() != null) {
+                        // Xóa ảnh cũ nếu có, sau khi commit
+                        assetCleanupService.scheduleDeletion(List.of(extractPublicIdFromUrl(user.getAvatar())));
+                    }
+                    user.setAvatar(avatar.url());
                 }
-                user.setAvatar(url);
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Error uploading file to Cloudinary");
-        }
-
-        Role role = roleRepository.findById(request.getRoleId())
-                .orElseThrow(() -> new AppException(NotExistedErrorCode.ROLE_NOT_EXISTED));
-        user.setRole(role);
-        user.setFirstName(request.getFirstName() != null ? request.getFirstName() : user.getFirstName());
-        user.setLastName(request.getLastName() != null ? request.getLastName() : user.getLastName());
-        user.setEmail(request.getEmail() != null ? request.getEmail() : user.getEmail());
-        user.setPhone(request.getPhone() != null ? request.getPhone() : user.getPhone());
-        user.setDob(request.getDob() != null ? request.getDob() : user.getDob());
 
-        user = userRepository.save(user);
-        return userMapper.toUserResponse(user);
+                Role role = roleRepository.findById(request.getRoleId())
+                        .orElseThrow(() -> new AppException(NotExistedErrorCode.ROLE_NOT_EXISTED));
+                user.setRole(role);
+                user.setFirstName(request.getFirstName() != null ? request.getFirstName() : user.getFirstName());
+                user.setLastName(request.getLastName() != null ? request.getLastName() : user.getLastName());
+                user.setEmail(request.getEmail() != null ? request.getEmail() : user.getEmail());
+                user.setPhone(request.getPhone() != null ? request.getPhone() : user.getPhone());
+                user.setDob(request.getDob() != null ? request.getDob() : user.getDob());
+
+                return userMapper.toUserResponse(userRepository.save(user));
+            });
+        } catch (RuntimeException e) {
+            discardAvatar(avatar);
+            throw e;
+        }
     }
 
     @Override
@@ -408,14 +397,15 @@ public class UserServiceImpl implements UserService {
         return null;
     }
 
-    public void deleteImageAsync(String publicId) {
-        new Thread(() -> {
-            try {
-                cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
-            } catch (Exception e) {
-                System.err.println("Failed to delete image: " + publicId);
-            }
-        }).start();
+    private ImageUploader.UploadedImage uploadAvatar(MultipartFile file) {
+        if (file == null || file.isEmpty()) return null;
+        return imageUploader.uploadAll(List.of(file)).get(0);
+    }
+
+    private void discardAvatar(ImageUploader.UploadedImage avatar) {
+        if (avatar != null) {
+            imageUploader.discard(List.of(avatar));
+        }
     }
 
     public String extractPublicIdFromUrl(String url) {
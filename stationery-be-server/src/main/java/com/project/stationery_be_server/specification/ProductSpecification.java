@@ -9,11 +9,17 @@
     import org.springframework.data.jpa.domain.Specification;
 
     import java.util.ArrayList;
+    import java.util.Collection;
     import java.util.List;
 
     public class ProductSpecification {
         // Specification cho user (ẩn sản phẩm hidden)
         public static Specification<Product> filterProductsForUser(ProductFilterRequest filter) {
+            return filterProductsForUser(filter, null);
+        }
+
+        // matchedProductIds != null: từ khóa đã được tra trong ProductSearchIndex, chỉ lọc theo id thay cho LIKE
+        public static Specification<Product> filterProductsForUser(ProductFilterRequest filter, Collection<String> matchedProductIds) {
             return (root, query, criteriaBuilder) -> {
                 assert query != null;
                 query.distinct(true);
@@ -24,7 +30,7 @@
                 Predicate notHidden = criteriaBuilder.isFalse(root.get("hidden"));
                 predicates.add(notHidden);
 
-                addCommonFilters(filter, predicates, root, criteriaBuilder);
+                addCommonFilters(filter, matchedProductIds, predicates, root, criteriaBuilder);
 
                 return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
             };
@@ -32,6 +38,10 @@
 
         // Specification cho admin (hiển thị tất cả sản phẩm)
         public static Specification<Product> filterProductsForAdmin(ProductFilterRequest filter) {
+            return filterProductsForAdmin(filter, null);
+        }
+
+        public static Specification<Product> filterProductsForAdmin(ProductFilterRequest filter, Collection<String> matchedProductIds) {
             return (root, query, criteriaBuilder) -> {
                 assert query != null;
                 query.distinct(true);
@@ -39,14 +49,15 @@
                 List<Predicate> predicates = new ArrayList<>();
 
 
-                addCommonFilters(filter, predicates, root, criteriaBuilder);
+                addCommonFilters(filter, matchedProductIds, predicates, root, criteriaBuilder);
 
                 return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
             };
         }
 
         // Method chung để thêm các filter khác
-        private static void addCommonFilters(ProductFilterRequest filter, List<Predicate> predicates,
+        private static void addCommonFilters(ProductFilterRequest filter, Collection<String> matchedProductIds,
+                                             List<Predicate> predicates,
                                              jakarta.persistence.criteria.Root<Product> root,
                                              jakarta.persistence.criteria.CriteriaBuilder criteriaBuilder) {
 
@@ -69,7 +80,10 @@
                 predicates.add(criteriaBuilder.lessThanOrEqualTo(productDetailJoin.get("discountPrice"), filter.getMaxPrice()));
             }
 
-            if (filter.getSearch() != null && !filter.getSearch().isBlank()) {
+            if (matchedProductIds != null) {
+                predicates.add(root.get("productId").in(matchedProductIds));
+            } else if (filter.getSearch() != null && !filter.getSearch().isBlank()) {
+                // index tìm kiếm chưa sẵn sàng: quét LIKE trên DB
                 String searchKeyword = filter.getSearch().trim().toLowerCase();
                 List<Predicate> searchPredicates = new ArrayList<>();
 
@@ -9,8 +9,10 @@ import com.project.stationery_be_server.Error.AuthErrorCode;
 import com.project.stationery_be_server.Error.NotExistedErrorCode;
 import com.project.stationery_be_server.exception.AppException;
 import com.project.stationery_be_server.Error.BaseErrorCode;
-import com.project.stationery_be_server.repository.InvalidatedTokenRepository;
+import com.project.stationery_be_server.entity.Role;
 import com.project.stationery_be_server.repository.UserRepository;
+import com.project.stationery_be_server.security.TokenRevocationList;
+import jakarta.annotation.PostConstruct;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -21,6 +23,8 @@ import org.springframework.stereotype.Component;
 
 import java.text.ParseException;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
 import java.util.UUID;
@@ -32,7 +36,7 @@ import java.util.UUID;
 public class JwtUtils {
 
     UserRepository userRepository;
-    InvalidatedTokenRepository invalidatedTokenRepository;
+    TokenRevocationList tokenRevocationList;
     @Value("${jwt.signerKey}")
     @NonFinal
     String SIGNER_KEY;
@@ -45,26 +49,45 @@ public class JwtUtils {
     @NonFinal
     int REFRESHABLE_DURATION;
 
+    // Khởi tạo signer/verifier một lần (thread-safe), không tạo lại mỗi lần ký/kiểm tra
+    @NonFinal
+    MACSigner signer;
+    @NonFinal
+    MACVerifier verifier;
+
+    @PostConstruct
+    void init() throws JOSEException {
+        signer = new MACSigner(SIGNER_KEY.getBytes());
+        verifier = new MACVerifier(SIGNER_KEY);
+    }
+
     public String generateToken(String id) {
-        JWSHeader header = new JWSHeader.Builder(JWSAlgorithm.HS256).build();
         var user = userRepository
                 .findById(id)
                 .orElseThrow(() -> new AppException(NotExistedErrorCode.USER_NOT_EXISTED));
-        System.out.println("user: " + user.getEmail());
-        System.out.println("Role: " + user.getRole());
+        return generateToken(id, user.getRole());
+    }
+
+    // Đã có user trong tay (đăng nhập) thì truyền role vào, không đọc lại user từ DB
+    public String generateToken(String id, Role role) {
+        // user chưa được gán role thì không có scope để ký
+        if (role == null) {
+            throw new AppException(NotExistedErrorCode.ROLE_NOT_EXISTED);
+        }
+        JWSHeader header = new JWSHeader.Builder(JWSAlgorithm.HS256).build();
         JWTClaimsSet jwtClaimsSet = new JWTClaimsSet.Builder()
                 .subject(id)
                 .issuer("ltn.com")
                 .issueTime(new Date())
                 .jwtID(UUID.randomUUID().toString())
-                .claim("scope", user.getRole().getRoleName()) // scope sẻ đc tự động nhân trong getAuthorities
+                .claim("scope", role.getRoleName()) // scope sẻ đc tự động nhân trong getAuthorities
                 .expirationTime(new Date(
                         Instant.now().plus(VALID_DURATION, ChronoUnit.SECONDS).toEpochMilli()))
                 .build();
         Payload payload = new Payload(jwtClaimsSet.toJSONObject());
         JWSObject jwsObject = new JWSObject(header, payload);
         try {
-            jwsObject.sign(new MACSigner(SIGNER_KEY.getBytes()));
+            jwsObject.sign(signer);
             return jwsObject.serialize();
         } catch (JOSEException e) {
             log.error("Cannot sign JWT object", e);
@@ -76,15 +99,42 @@ public class JwtUtils {
         return verifyToken(token, false); // Mặc định isRefresh = false
     }
     public Boolean verifyToken(String token, boolean isRefresh) throws JOSEException, ParseException {
-        JWSVerifier verifier = new MACVerifier(SIGNER_KEY);
         SignedJWT signedJWT = SignedJWT.parse(token);
-        Date expiryTime = isRefresh ? new Date(signedJWT.getJWTClaimsSet().getIssueTime().toInstant().plus(REFRESHABLE_DURATION, ChronoUnit.SECONDS).toEpochMilli())
+        Date expiryTime = isRefresh ? refreshableUntil(signedJWT.getJWTClaimsSet())
                 : signedJWT.getJWTClaimsSet().getExpirationTime();
         String jid = signedJWT.getJWTClaimsSet().getJWTID();
         var verified = signedJWT.verify(verifier);
-        if (!(verified && expiryTime.after(new Date())) || invalidatedTokenRepository.existsById(jid))
+        if (!(verified && expiryTime.after(new Date())) || tokenRevocationList.isRevoked(jid))
             throw new AppException(AuthErrorCode.INVALID_TOKEN);
         return true;
     }
 
-}
\ No newline at end of file
+    // Thu hồi token khi logout, theo jti. Trả về false nếu token đã bị thu hồi trước đó
+    public boolean revokeToken(String token) {
+        try {
+            SignedJWT signedJWT = SignedJWT.parse(token);
+            if (!signedJWT.verify(verifier)) {
+                throw new AppException(AuthErrorCode.INVALID_TOKEN);
+            }
+            JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
+            // giữ bản ghi tới khi token hết cả hạn dùng lẫn hạn refresh
+            Date until = claims.getExpirationTime();
+            Date refreshableUntil = refreshableUntil(claims);
+            if (until == null || refreshableUntil.after(until)) {
+                until = refreshableUntil;
+            }
+            if (!until.after(new Date())) {
+                return true; // đã hết hạn, không cần ghi
+            }
+            return tokenRevocationList.revoke(claims.getJWTID(),
+                    LocalDateTime.ofInstant(until.toInstant(), ZoneId.systemDefault()));
+        } catch (ParseException | JOSEException e) {
+            throw new AppException(AuthErrorCode.INVALID_TOKEN);
+        }
+    }
+
+    private Date refreshableUntil(JWTClaimsSet claims) {
+        return new Date(claims.getIssueTime().toInstant().plus(REFRESHABLE_DURATION, ChronoUnit.SECONDS).toEpochMilli());
+    }
+
+}
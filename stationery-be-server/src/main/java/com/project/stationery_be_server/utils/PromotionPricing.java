@@ -0,0 +1,27 @@
+package com.project.stationery_be_server.utils;
+
+import com.project.stationery_be_server.entity.Promotion;
+
+// Quy tắc tính giảm giá dùng chung cho đặt hàng, sửa đơn và giỏ hàng
+public final class PromotionPricing {
+    private PromotionPricing() {
+    }
+
+    // Số tiền giảm trên đơn giá 1 sản phẩm: giảm % (không vượt maxValue) hoặc giảm theo giá trị
+    public static int lineDiscount(int price, Promotion promotion) {
+        if (promotion.getDiscountType() == Promotion.DiscountType.PERCENTAGE) {
+            int value = (price * promotion.getDiscountValue()) / 100;
+            return promotion.getMaxValue() != null && value > promotion.getMaxValue() ? promotion.getMaxValue() : value;
+        }
+        return promotion.getDiscountValue();
+    }
+
+    // Số tiền giảm trên tổng đơn (voucher của user), cùng quy tắc với lineDiscount
+    public static long orderDiscount(long total, Promotion promotion) {
+        if (promotion.getDiscountType() == Promotion.DiscountType.PERCENTAGE) {
+            long value = (total * promotion.getDiscountValue()) / 100;
+            return promotion.getMaxValue() != null && value > promotion.getMaxValue() ? promotion.getMaxValue() : value;
+        }
+        return promotion.getDiscountValue();
+    }
+}
@@ -0,0 +1,153 @@
+package com.project.stationery_be_server.asset;
+
+import com.project.stationery_be_server.repository.PendingAssetDeletionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AssetCleanupService chạy với LocalAssetStorage và bảng pending_asset_deletion giả trong bộ nhớ, không cần mạng/DB.
+ */
+class AssetCleanupServiceTests {
+    static final Duration BASE_BACKOFF = Duration.ofSeconds(30);
+
+    LocalAssetStorage storage;
+    InMemoryPendingDeletions pending;
+    AssetCleanupService service;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalAssetStorage(100);
+        pending = new InMemoryPendingDeletions();
+        // lượt dọn chạy ngay trên thread gọi để test xác định
+        service = new AssetCleanupService(storage, pending, Runnable::run, 3, BASE_BACKOFF, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void coalescesDeletionsIntoBatchCalls() {
+        List<String> publicIds = IntStream.range(0, 250)
+                .mapToObj(i -> storage.upload(new byte[]{1}).publicId())
+                .toList();
+
+        service.scheduleDeletion(publicIds);
+
+        assertThat(storage.deleteCalls()).isEqualTo(3);
+        assertThat(publicIds).noneMatch(storage::contains);
+        assertThat(pending.rows).isEmpty();
+        assertThat(service.stats().getDeleted()).isEqualTo(250);
+    }
+
+    @Test
+    void retriesFailedBatchWithBackoff() {
+        String publicId = storage.upload(new byte[]{1}).publicId();
+        storage.failNextDeletes(1);
+
+        service.scheduleDeletion(List.of(publicId));
+
+        assertThat(storage.contains(publicId)).isTrue();
+        Row row = pending.rows.get(publicId);
+        assertThat(row.attempts).isEqualTo(1);
+        assertThat(row.nextAttemptAt).isAfter(LocalDateTime.now());
+        assertThat(service.stats().getFailedAttempts()).isEqualTo(1);
+        assertThat(service.stats().getLastError()).contains("Simulated storage failure");
+
+        // chưa tới hạn thì không thử lại
+        service.drainDue(LocalDateTime.now());
+        assertThat(storage.deleteCalls()).isEqualTo(1);
+
+        service.drainDue(row.nextAttemptAt);
+        assertThat(storage.contains(publicId)).isFalse();
+        assertThat(pending.rows).isEmpty();
+    }
+
+    @Test
+    void stopsAfterMaxAttempts() {
+        String publicId = storage.upload(new byte[]{1}).publicId();
+        storage.failNextDeletes(10);
+
+        service.scheduleDeletion(List.of(publicId));
+        service.drainDue(LocalDateTime.now().plusDays(1));
+        service.drainDue(LocalDateTime.now().plusDays(2));
+        service.drainDue(LocalDateTime.now().plusDays(3));
+
+        assertThat(storage.deleteCalls()).isEqualTo(3);
+        assertThat(service.stats().getPending()).isZero();
+        assertThat(service.stats().getAbandoned()).isEqualTo(1);
+    }
+
+    @Test
+    void backoffGrowsExponentiallyUpToMax() {
+        assertThat(service.backoff(1)).isEqualTo(BASE_BACKOFF);
+        assertThat(service.backoff(3)).isEqualTo(BASE_BACKOFF.multipliedBy(4));
+        assertThat(service.backoff(40)).isEqualTo(Duration.ofMinutes(10));
+    }
+
+    static final class Row {
+        int attempts;
+        LocalDateTime nextAttemptAt;
+
+        Row(LocalDateTime nextAttemptAt) {
+            this.nextAttemptAt = nextAttemptAt;
+        }
+    }
+
+    static final class InMemoryPendingDeletions extends PendingAssetDeletionRepository {
+        final Map<String, Row> rows = new LinkedHashMap<>();
+
+        InMemoryPendingDeletions() {
+            super(null);
+        }
+
+        @Override
+        public void createTableIfMissing() {
+        }
+
+        @Override
+        public void enqueue(Collection<String> publicIds, LocalDateTime now) {
+            publicIds.forEach(id -> rows.putIfAbsent(id, new Row(now)));
+        }
+
+        @Override
+        public List<PendingDeletion> findDue(LocalDateTime now, int maxAttempts, int limit) {
+            return rows.entrySet().stream()
+                    .filter(e -> !e.getValue().nextAttemptAt.isAfter(now) && e.getValue().attempts < maxAttempts)
+                    .sorted(Comparator.comparing(e -> e.getValue().nextAttemptAt))
+                    .limit(limit)
+                    .map(e -> new PendingDeletion(e.getKey(), e.getValue().attempts))
+                    .toList();
+        }
+
+        @Override
+        public void deleteAll(Collection<String> publicIds) {
+            new ArrayList<>(publicIds).forEach(rows::remove);
+        }
+
+        @Override
+        public void recordFailure(String publicId, int attempts, LocalDateTime nextAttemptAt, String error) {
+            Row row = rows.get(publicId);
+            row.attempts = attempts;
+            row.nextAttemptAt = nextAttemptAt;
+        }
+
+        @Override
+        public long countPending(int maxAttempts) {
+            return rows.values().stream().filter(row -> row.attempts < maxAttempts).count();
+        }
+
+        @Override
+        public long countAbandoned(int maxAttempts) {
+            return rows.values().stream().filter(row -> row.attempts >= maxAttempts).count();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.project.stationery_be_server.repository;
+
+import com.project.stationery_be_server.dto.request.ProductFilterRequest;
+import com.project.stationery_be_server.dto.response.product.ProductResponse;
+import com.project.stationery_be_server.service.ProductService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Danh sách sản phẩm lấy màu và ảnh đại diện của cả trang bằng truy vấn gộp: số câu lệnh SQL của một trang
+ * không tăng theo kích thước trang. Chạy khi có DB (DBMS_URL) và đủ sản phẩm cho trang lớn.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@EnabledIfEnvironmentVariable(named = "DBMS_URL", matches = ".+")
+class CatalogStatementCountTests {
+    static final int SMALL_PAGE = 4;
+    static final int LARGE_PAGE = 40;
+
+    @Autowired
+    ProductService productService;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        assumeTrue(statistics.isStatisticsEnabled(), "needs hibernate.generate_statistics");
+        // nạp sẵn metadata / pool, không tính vào lần đo đầu
+        listProducts(SMALL_PAGE);
+    }
+
+    @Test
+    void userListingStatementCountDoesNotGrowWithPageSize() {
+        long small = statementsFor(SMALL_PAGE);
+        long large = statementsFor(LARGE_PAGE);
+
+        assertThat(large).isEqualTo(small);
+    }
+
+    private long statementsFor(int pageSize) {
+        statistics.clear();
+        Page<ProductResponse> page = listProducts(pageSize);
+        assumeTrue(page.getNumberOfElements() == pageSize, "needs at least " + pageSize + " listed products");
+        return statistics.getPrepareStatementCount();
+    }
+
+    // mỗi lần một persistence context mới, không dùng lại entity đã nạp ở lần trước
+    private Page<ProductResponse> listProducts(int pageSize) {
+        return transactionTemplate.execute(status ->
+                productService.getAllProducts(PageRequest.of(0, pageSize), new ProductFilterRequest()));
+    }
+}
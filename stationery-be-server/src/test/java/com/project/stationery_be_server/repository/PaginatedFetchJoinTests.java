@@ -0,0 +1,67 @@
+package com.project.stationery_be_server.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chặn tái xuất hiện cảnh báo HHH90003004 (firstResult/maxResults với collection fetch, Hibernate cắt trang trong bộ nhớ):
+ * không query phân trang nào được JOIN FETCH, và cấu hình phải biến cảnh báo đó thành lỗi.
+ */
+class PaginatedFetchJoinTests {
+
+    @Test
+    void paginatedQueriesDoNotFetchJoin() throws ClassNotFoundException {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                return beanDefinition.getMetadata().isInterface();
+            }
+        };
+        scanner.addIncludeFilter(new AssignableTypeFilter(Repository.class));
+
+        List<String> offenders = new ArrayList<>();
+        int scanned = 0;
+        for (BeanDefinition candidate : scanner.findCandidateComponents(getClass().getPackageName())) {
+            scanned++;
+            for (Method method : Class.forName(candidate.getBeanClassName()).getDeclaredMethods()) {
+                Query query = method.getAnnotation(Query.class);
+                boolean paginated = Arrays.asList(method.getParameterTypes()).contains(Pageable.class);
+                if (query != null && paginated && query.value().toUpperCase(Locale.ROOT).contains("FETCH")) {
+                    offenders.add(method.getDeclaringClass().getSimpleName() + "." + method.getName());
+                }
+            }
+        }
+
+        assertThat(scanned).isPositive();
+        assertThat(offenders)
+                .as("Paginated queries must page over ids and fetch collections in a second query")
+                .isEmpty();
+    }
+
+    @Test
+    void paginationOverCollectionFetchFailsFast() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yaml"));
+        Properties properties = yaml.getObject();
+
+        assertThat(properties.getProperty("spring.jpa.properties.hibernate.query.fail_on_pagination_over_collection_fetch"))
+                .isEqualTo("true");
+    }
+}
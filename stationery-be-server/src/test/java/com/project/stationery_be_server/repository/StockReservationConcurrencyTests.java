@@ -0,0 +1,140 @@
+package com.project.stationery_be_server.repository;
+
+import com.project.stationery_be_server.exception.AppException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Nhiều checkout song song cùng giữ hàng một SKU trên MySQL thật: không bán vượt tồn kho, không mất lượt trừ,
+ * và checkout lỗi sau khi đã giữ hàng thì trả lại hàng (rollback cả transaction).
+ * Chạy khi có DB (DBMS_URL); dùng một product_detail có sẵn và trả lại available_quantity sau mỗi test.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "DBMS_URL", matches = ".+")
+class StockReservationConcurrencyTests {
+    static final int STOCK = 50;
+    static final int CHECKOUTS = 200;
+    static final int THREADS = 32;
+
+    @Autowired
+    StockReservationRepository stockReservationRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    String productDetailId;
+    Integer originalAvailable;
+
+    @BeforeEach
+    void pickSku() {
+        productDetailId = jdbcTemplate.queryForList("SELECT product_detail_id FROM product_detail LIMIT 1", String.class)
+                .stream().findFirst().orElse(null);
+        assumeTrue(productDetailId != null, "needs at least one product_detail row");
+        originalAvailable = available();
+        jdbcTemplate.update("UPDATE product_detail SET available_quantity = ? WHERE product_detail_id = ?",
+                STOCK, productDetailId);
+    }
+
+    @AfterEach
+    void restore() {
+        if (productDetailId != null) {
+            jdbcTemplate.update("UPDATE product_detail SET available_quantity = ? WHERE product_detail_id = ?",
+                    originalAvailable, productDetailId);
+        }
+    }
+
+    @Test
+    void parallelCheckoutsNeverOversell() throws Exception {
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(() -> {
+            try {
+                stockReservationRepository.reserve(Map.of(productDetailId, 1));
+                reserved.incrementAndGet();
+            } catch (AppException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertThat(reserved.get()).isEqualTo(STOCK);
+        assertThat(rejected.get()).isEqualTo(CHECKOUTS - STOCK);
+        assertThat(available()).isZero();
+    }
+
+    @Test
+    void parallelCheckoutsLoseNoUpdate() throws Exception {
+        AtomicInteger reservedUnits = new AtomicInteger();
+
+        runConcurrently(() -> {
+            int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+            try {
+                stockReservationRepository.reserve(Map.of(productDetailId, quantity));
+                reservedUnits.addAndGet(quantity);
+            } catch (AppException ignored) {
+                // hết hàng cho số lượng này
+            }
+        });
+
+        assertThat(reservedUnits.get()).isLessThanOrEqualTo(STOCK);
+        assertThat(available()).isEqualTo(STOCK - reservedUnits.get());
+    }
+
+    @Test
+    void failedCheckoutReleasesReservedStock() {
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> {
+            stockReservationRepository.reserve(Map.of(productDetailId, 5));
+            // dòng sau / voucher lỗi sau khi đã giữ hàng
+            throw new IllegalStateException("voucher rejected");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(available()).isEqualTo(STOCK);
+    }
+
+    private void runConcurrently(Runnable checkout) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>(CHECKOUTS);
+            for (int i = 0; i < CHECKOUTS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    checkout.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Integer available() {
+        return jdbcTemplate.queryForObject("SELECT available_quantity FROM product_detail WHERE product_detail_id = ?",
+                Integer.class, productDetailId);
+    }
+}